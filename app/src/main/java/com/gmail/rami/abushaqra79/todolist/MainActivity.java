@@ -2,18 +2,19 @@ package com.gmail.rami.abushaqra79.todolist;
 
 import static androidx.recyclerview.widget.DividerItemDecoration.VERTICAL;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.text.Editable;
@@ -27,48 +28,181 @@ import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.TextView;
-
-import com.gmail.rami.abushaqra79.todolist.database.ReadWriteDB;
+import android.widget.Toast;
+
+import com.gmail.rami.abushaqra79.todolist.database.ConnectivityMonitor;
+import com.gmail.rami.abushaqra79.todolist.database.PendingWrite;
+import com.gmail.rami.abushaqra79.todolist.database.TaskCache;
+import com.gmail.rami.abushaqra79.todolist.database.TaskFileFormat;
+import com.gmail.rami.abushaqra79.todolist.database.TaskListIndex;
+import com.gmail.rami.abushaqra79.todolist.database.TaskFilter;
+import com.gmail.rami.abushaqra79.todolist.database.TaskPage;
+import com.gmail.rami.abushaqra79.todolist.database.TaskPager;
+import com.gmail.rami.abushaqra79.todolist.database.TaskRepository;
+import com.gmail.rami.abushaqra79.todolist.database.TaskSearchIndex;
+import com.gmail.rami.abushaqra79.todolist.database.TaskStore;
+import com.gmail.rami.abushaqra79.todolist.database.WriteBehindQueue;
 import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+import com.gmail.rami.abushaqra79.todolist.model.TaskList;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputLayout;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Main activity
  */
-public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemClickListener {
+public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemClickListener,
+        TaskRepository.Listener, TaskListViewModel.TransferListener {
 
     /**
      * Constant for logging
      */
     private static final String TAG = MainActivity.class.getSimpleName();
 
+    /**
+     * Number of archived tasks read per page
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Maximum number of pages kept in memory, the pages furthest from the shown part are dropped
+     */
+    private static final int MAX_RESIDENT_PAGES = 5;
+
+    /**
+     * Number of items from either end of the loaded part at which the next page is loaded
+     */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    /**
+     * Number of task holders kept for reuse, enough for a fast fling through a full screen
+     */
+    private static final int RECYCLED_VIEWS = 30;
+
+    /**
+     * Maximum number of tasks shown for a search
+     */
+    private static final int MAX_SEARCH_RESULTS = 200;
+
+    /**
+     * Number of tasks read per page when the selected tasks are looked up for deletion
+     */
+    private static final int SELECTION_PAGE_SIZE = 500;
+
+    /**
+     * Types of the files that can be imported, CSV files are often reported as plain text
+     */
+    private static final String[] IMPORT_MIME_TYPES = {"application/json", "text/*"};
+
+    /**
+     * Formats of an export, in the order of the options of the export dialog
+     */
+    private static final int[] EXPORT_FORMATS = {TaskFileFormat.FORMAT_JSON, TaskFileFormat.FORMAT_CSV};
+
+    /**
+     * Preference key of the id of the list that is shown
+     */
+    private static final String KEY_CURRENT_LIST = "current_list";
+
+    /**
+     * Key of the saved state of the activity that holds the filter. The selection is kept by the
+     * view model instead, since it may hold the keys of thousands of tasks.
+     */
+    private static final String KEY_FILTER_INDEX = "filter_index";
+
+    /**
+     * Filters of the list, in the order of the options of the filter dialog
+     */
+    private static final TaskFilter[] FILTERS = {
+            TaskFilter.ALL,
+            TaskFilter.SORTED_BY_PRIORITY,
+            TaskFilter.withPriority(1),
+            TaskFilter.withPriority(2),
+            TaskFilter.withPriority(3)
+    };
+
     /**
      * Member variable for the RecyclerView
      */
     private RecyclerView mRecyclerView;
 
+    /**
+     * Member variable for the layout manager of the RecyclerView
+     */
+    private LinearLayoutManager mLayoutManager;
+
     /**
      * Member variables for the adapter
      */
     private TaskAdapter mAdapter;
 
     /**
-     * ArrayList to store the generated keys for tasks
+     * Member variable for the view type of the tasks, which follows the language the user selected
+     */
+    private int mTaskViewType;
+
+    /**
+     * Member variable for the state of the shown list, which is kept across rotations
      */
-    private ArrayList<String> mKeysList;
+    private TaskListViewModel mViewModel;
 
     /**
-     * ArrayList to store the keys of tasks that need to be deleted
+     * Member variable for the repository of the shown list
      */
-    private ArrayList<String> mDeletedKeys;
+    private TaskRepository mRepository;
+
+    /**
+     * In-memory store of the tasks, kept in sync with the database by the repository
+     */
+    private TaskCache mTaskCache;
+
+    /**
+     * Member variable for showing the changes of the cache
+     */
+    private final TaskCache.Listener mCacheListener = new TaskCache.Listener() {
+        @Override
+        public void onTaskInserted(int position, TaskEntry task) {
+            submitTasks();
+        }
+
+        @Override
+        public void onTaskChanged(int position, TaskEntry task) {
+            submitTasks();
+        }
+
+        @Override
+        public void onTaskRemoved(int position, TaskEntry task) {
+            submitTasks();
+        }
+
+        @Override
+        public void onTaskMoved(int fromPosition, int toPosition, TaskEntry task) {
+            submitTasks();
+        }
+    };
+
+    /**
+     * Member variable for the index of the words of all the tasks, not only the loaded ones
+     */
+    private TaskSearchIndex mSearchIndex;
+
+    /**
+     * Member variable for the text of the search, null if the list is not searched
+     */
+    private String mSearchQuery;
+
+    /**
+     * Member variable for the tasks that are ticked for deletion, kept by the view model
+     */
+    private SelectionModel mSelection;
+
+    /**
+     * Member variable for the button that deletes the ticked tasks
+     */
+    private FloatingActionButton mDeleteButton;
 
     /**
      * TextView that is displayed when the list is empty
@@ -81,15 +215,61 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
     private ProgressBar mProgressBar;
 
     /**
-     * Member variable for reading from and writing to database
+     * Member variable for the store the tasks are read from and written to, which only holds
+     * the tasks of the shown list
+     */
+    private TaskStore mTaskStore;
+
+    /**
+     * Member variable for the id of the shown list
      */
-    private ReadWriteDB mReadWriteDB;
+    private String mListId;
+
+    /**
+     * Member variable for the lists of the index, the default list first
+     */
+    private List<TaskList> mLists = new ArrayList<>();
+
+    /**
+     * Member variable for the queue that writes the changes to the database
+     */
+    private WriteBehindQueue mWriteQueue;
+
+    /**
+     * Member variable for the position of the current filter in FILTERS
+     */
+    private int mFilterIndex;
 
     /**
      * A key for specific task
      */
     private String mKey;
 
+    /**
+     * True while a new list is waiting to be handed to the adapter
+     */
+    private boolean mSubmitPending;
+
+    /**
+     * Member variable for opening the file to be imported
+     */
+    private ActivityResultLauncher<String[]> mImportLauncher;
+
+    /**
+     * Member variable for creating the file of an export
+     */
+    private ActivityResultLauncher<String> mExportLauncher;
+
+    /**
+     * Member variable for the dialog that shows the progress of an import or export
+     */
+    private AlertDialog mTransferDialog;
+
+    /**
+     * Member variable for the message that offers to undo a removal, null if none was shown
+     */
+    private Snackbar mRemovalSnackbar;
+
     /**
      * Initialize the contents of the Activity's standard options menu.
      */
@@ -97,14 +277,77 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater menuInflater = getMenuInflater();
         menuInflater.inflate(R.menu.settings_menu, menu);
+
+        // The list shows the matching tasks while the search is open, as the user types
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                searchTasks(query);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                searchTasks("");
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                searchTasks(null);
+                return true;
+            }
+        });
         return true;
     }
 
     /**
-     * This method is called whenever the Settings item in the menu is selected.
+     * This method is called whenever the Filter or Settings item in the menu is selected.
      */
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_filter) {
+            createFilterDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_select_all) {
+            selectAllTasks();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_invert_selection) {
+            invertSelection();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_complete) {
+            removeSelectedTasks(true);
+            return true;
+        }
+        if (item.getItemId() == R.id.action_archive) {
+            createArchiveDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_lists) {
+            createListsDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_import) {
+            mImportLauncher.launch(IMPORT_MIME_TYPES);
+            return true;
+        }
+        if (item.getItemId() == R.id.action_export) {
+            createExportDialog();
+            return true;
+        }
         if (item.getItemId() == R.id.action_settings) {
             Intent settingsIntent = new Intent(this, SettingsActivity.class);
             startActivity(settingsIntent);
@@ -122,80 +365,79 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
         // Get the selected language by user from sharedPreferences
         String language = sharedPreferences.getString(getString(R.string.settings_select_language_key), getString(R.string.settings_select_language_default));
 
-        // Set the content view based on the language selected
+        // Set the content view based on the language selected, the tasks use the same language
         if (language.equals(getString(R.string.settings_english_value))) {
             setContentView(R.layout.activity_main);
+            mTaskViewType = TaskAdapter.VIEW_TYPE_ENGLISH;
         } else {
             setContentView(R.layout.activity_main_arabic);
+            mTaskViewType = TaskAdapter.VIEW_TYPE_ARABIC;
         }
 
         // Initialize the views
         mEmptyStateTextView = findViewById(R.id.empty_view);
         mProgressBar = findViewById(R.id.loading_spinner);
 
-        // Initialize the database object
-        mReadWriteDB = new ReadWriteDB();
-
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        // Get details on the currently active default data network
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-
-        // If there is a network connection, fetch data, otherwise display a message to notify
-        // the user that there is no connection.
-        if (activeNetwork != null && activeNetwork.isConnected()) {
-            // Retrieve data from database
-            retrieveTasks();
-        } else {
-            mProgressBar.setVisibility(View.GONE);
-            mEmptyStateTextView.setVisibility(View.VISIBLE);
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        // Only the shown list is read and synced, the others are only known by their names. The
+        // list is kept by the view model across rotations, and synced while the activity is started
+        mListId = sharedPreferences.getString(KEY_CURRENT_LIST, TaskListIndex.DEFAULT_LIST_ID);
+        if (savedInstanceState != null) {
+            mFilterIndex = savedInstanceState.getInt(KEY_FILTER_INDEX);
         }
+        mViewModel = new ViewModelProvider(this).get(TaskListViewModel.class);
+        bindRepository();
+        getLifecycle().addObserver(mViewModel);
 
-        // Initialize the lists
-        mKeysList = new ArrayList<>();
-        mDeletedKeys = new ArrayList<>();
+        // Files are picked by the user for importing and exporting the whole list, which the
+        // view model does so a rotation does not stop it
+        mImportLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(),
+                mViewModel::importTasks);
+        mExportLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument(),
+                mViewModel::exportTasks);
 
         // Initialize the floating action button for deleting tasks
-        FloatingActionButton fabDeleteButton = findViewById(R.id.fab_delete);
+        mDeleteButton = findViewById(R.id.fab_delete);
+        updateDeleteButton();
 
         // Set the RecyclerView to its corresponding view
         mRecyclerView = findViewById(R.id.recyclerViewTasks);
 
         // Set the layout for the RecyclerView to be a linear layout, which measures and
         // positions items within a RecyclerView into a linear list
-        mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        mLayoutManager = new LinearLayoutManager(this);
+        mRecyclerView.setLayoutManager(mLayoutManager);
 
         // Initialize the adapter and attach it to the RecyclerView
-        mAdapter = new TaskAdapter(this, this);
+        mAdapter = new TaskAdapter(this, this, mTaskViewType, mSelection);
         mRecyclerView.setAdapter(mAdapter);
+        mRecyclerView.getRecycledViewPool().setMaxRecycledViews(mTaskViewType, RECYCLED_VIEWS);
 
         // Divider decoration for list in RecyclerView
         DividerItemDecoration decoration = new DividerItemDecoration(getApplicationContext(), VERTICAL);
         mRecyclerView.addItemDecoration(decoration);
 
-        // Attach the adapter to a listener interface so it can detect if any task is selected
-        // for deletion so the delete FAB is set to visible.
-        mAdapter.setTickForDeleteListener((checkBox, position) -> {
-            if (checkBox.isChecked()) {
-                fabDeleteButton.setVisibility(View.VISIBLE);
-                mDeletedKeys.add(mKeysList.get(position));
-            } else {
-                fabDeleteButton.setVisibility(View.INVISIBLE);
-                mDeletedKeys.remove(mKeysList.get(position));
+        // Load the next page when the list is scrolled close to either end of the loaded part
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadPagesNearEdges();
             }
         });
 
+        // Show the tasks that are loaded already, the repository tells about the rest
+        mTaskCache.addListener(mCacheListener);
+        mRepository.setListener(this);
+        mViewModel.setListsListener(this::onListsChanged);
+        mViewModel.setTransferListener(this);
+        mProgressBar.setVisibility(mRepository.isLoading() ? View.VISIBLE : View.INVISIBLE);
+        submitTasks();
+
+        // The adapter ticks the tasks in the selection, and the delete FAB is visible while
+        // any task is ticked
+        mAdapter.setTickForDeleteListener((key, ticked) -> updateDeleteButton());
+
         // Attach click listener to the deletion FAB
-        fabDeleteButton.setOnClickListener(view -> {
-            mReadWriteDB.deleteSelectedTasks(mDeletedKeys);
-
-            // Refresh the screen so the changes can take effect
-            Intent intent = getIntent();
-            finish();
-            startActivity(intent);
-            overridePendingTransition(0, 0);
-        });
+        mDeleteButton.setOnClickListener(view -> removeSelectedTasks(false));
 
         /*
          Set the Floating Action Button (FAB) to its corresponding View.
@@ -205,6 +447,40 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
         FloatingActionButton fabAddButton = findViewById(R.id.fab_add);
         fabAddButton.setOnClickListener(view ->
                 createAddUpdateDialog(getString(R.string.add_task_header), getString(R.string.add_positive_button), -1));
+
+        // The undo of a removal goes on after a rotation, for the time that is left
+        if (mViewModel.getPendingRemoval() != null) {
+            showRemoval(mViewModel.getPendingRemoval());
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(KEY_FILTER_INDEX, mFilterIndex);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The app may be closed in the background, so the held changes are saved now. A removal
+        // that can still be undone is written by the view model once its time is over.
+        mWriteQueue.flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The list outlives the activity, so it must not hold on to it
+        mTaskCache.removeListener(mCacheListener);
+        mRepository.setListener(null);
+        mViewModel.setListsListener(null);
+        mViewModel.setTransferListener(null);
+
+        // A running import or export goes on, the new activity shows its progress again
+        if (mTransferDialog != null) {
+            mTransferDialog.dismiss();
+        }
     }
 
     @Override
@@ -231,39 +507,368 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
     }
 
     /**
-     * This method is called to retrieve the data from the database.
+     * Hides the loading spinner once the list is loaded or synced, and shows the loaded tasks.
+     */
+    @Override
+    public void onLoadStateChanged() {
+        if (!mRepository.isLoading()) {
+            mProgressBar.setVisibility(View.INVISIBLE);
+        }
+        submitTasks();
+    }
+
+    @Override
+    public void onSearchIndexChanged() {
+        refreshSearch();
+    }
+
+    /**
+     * Drops a task that was deleted on another device from the selection.
      */
-    private void retrieveTasks() {
-        List<TaskEntry> entries = new ArrayList<>();
+    @Override
+    public void onTaskDeleted(String key) {
+        mSelection.forget(key);
+        refreshSearch();
+    }
 
-        mReadWriteDB.readExistingTasks(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (snapshot.exists()) {
-                    for (DataSnapshot child : snapshot.getChildren()) {
-                        String description = Objects.requireNonNull(child.child("description")
-                                .getValue()).toString();
-                        int priority = Integer.parseInt(Objects.requireNonNull(child.child("priority")
-                                        .getValue()).toString());
-
-                        TaskEntry task = new TaskEntry(description, priority);
-                        entries.add(task);
-                        mKeysList.add(child.getKey());
+    /**
+     * Loads the next or previous page if the shown part of the list is close to either end of
+     * the loaded part.
+     */
+    private void loadPagesNearEdges() {
+        if (isSearching()) {
+            return;
+        }
+
+        int first = mLayoutManager.findFirstVisibleItemPosition();
+        int last = mLayoutManager.findLastVisibleItemPosition();
+        if (last >= mAdapter.getItemCount() - PREFETCH_DISTANCE) {
+            mRepository.loadNextPage();
+        } else if (first != RecyclerView.NO_POSITION && first < PREFETCH_DISTANCE) {
+            mRepository.loadPreviousPage();
+        }
+    }
+
+    /**
+     * This method is called when the network of the device changes. Without a network the saved
+     * tasks are still shown, and the empty state tells the user that there is no connection.
+     * When the network comes back, a page that failed meanwhile is loaded again.
+     *
+     * @param state One of the ConnectivityMonitor.NETWORK_ constants.
+     */
+    @Override
+    public void onNetworkChanged(int state) {
+        if (state == ConnectivityMonitor.NETWORK_NONE) {
+            mEmptyStateTextView.setText(R.string.no_internet_connection);
+            mProgressBar.setVisibility(View.INVISIBLE);
+            return;
+        }
+
+        mEmptyStateTextView.setText(R.string.empty_list);
+        if (!mRepository.isInitialSyncComplete() && mTaskCache.size() == 0) {
+            mProgressBar.setVisibility(View.VISIBLE);
+        }
+        // Reads the first page again if it failed, or the pages near the shown part
+        if (mTaskCache.size() == 0) {
+            mRepository.loadNextPage();
+        } else {
+            loadPagesNearEdges();
+        }
+    }
+
+    /**
+     * Hands the current tasks to the adapter, or the matching tasks while the list is searched.
+     * Changes that arrive together, like the children of the first load, are collected into a
+     * single list so they are diffed only once.
+     */
+    private void submitTasks() {
+        if (mSubmitPending) {
+            return;
+        }
+
+        mSubmitPending = true;
+        mRecyclerView.post(() -> {
+            mSubmitPending = false;
+            List<TaskEntry> tasks = isSearching()
+                    ? mSearchIndex.search(mSearchQuery, MAX_SEARCH_RESULTS) : mTaskCache.getTasks();
+            mAdapter.submitList(tasks, () -> mRecyclerView.post(this::loadPagesNearEdges));
+            updateEmptyState(tasks.size());
+        });
+    }
+
+    /**
+     * This method is called when the text of the search changes. The search index is loaded
+     * the first time the list is searched, and the results are shown as it fills up.
+     *
+     * @param query The text of the search, empty to show the whole list, or null once the
+     *              search is closed.
+     */
+    private void searchTasks(String query) {
+        mSearchQuery = query;
+        if (query != null) {
+            mRepository.loadSearchIndex();
+        }
+        submitTasks();
+    }
+
+    /**
+     * Helper method to show the new results after the search index changed.
+     */
+    private void refreshSearch() {
+        if (isSearching()) {
+            submitTasks();
+        }
+    }
+
+    /**
+     * Returns true while the list shows the results of a search.
+     */
+    private boolean isSearching() {
+        return mSearchQuery != null && !mSearchQuery.trim().isEmpty();
+    }
+
+    /**
+     * Helper method to show the empty state message when there are no tasks.
+     *
+     * @param count The number of shown tasks.
+     */
+    private void updateEmptyState(int count) {
+        if (count == 0) {
+            mRecyclerView.setVisibility(View.GONE);
+            mEmptyStateTextView.setVisibility(View.VISIBLE);
+        } else {
+            mRecyclerView.setVisibility(View.VISIBLE);
+            mEmptyStateTextView.setVisibility(View.INVISIBLE);
+        }
+    }
+
+    /**
+     * Helper method to fill in the dialog fields with the values of a task.
+     *
+     * @param task The task that is edited.
+     * @param taskTitle The description field.
+     * @param priorityHigh The high priority CheckBox.
+     * @param priorityMedium The medium priority CheckBox.
+     * @param priorityLow The low priority CheckBox.
+     */
+    private void showTask(TaskEntry task, EditText taskTitle, CheckBox priorityHigh,
+                          CheckBox priorityMedium, CheckBox priorityLow) {
+        taskTitle.setText(task.getDescription());
+        switch (task.getPriority()) {
+            case 1:
+                priorityHigh.setChecked(true);
+                break;
+            case 2:
+                priorityMedium.setChecked(true);
+                break;
+            case 3:
+                priorityLow.setChecked(true);
+                break;
+        }
+    }
+
+    /**
+     * This method is called to create a dialog for choosing which tasks are shown, and in which
+     * order. Only the matching tasks are read again, by an indexed query.
+     */
+    private void createFilterDialog() {
+        new AlertDialog.Builder(MainActivity.this)
+                .setTitle(R.string.filter_title)
+                .setSingleChoiceItems(R.array.filter_options, mFilterIndex, (dialog, which) -> {
+                    dialog.dismiss();
+                    if (which != mFilterIndex) {
+                        // Selecting all depends on the filter, so the selection starts over
+                        mFilterIndex = which;
+                        clearSelection();
+                        mRepository.setFilter(FILTERS[which]);
+                        submitTasks();
                     }
-                    mAdapter.setTasks(entries);
-                } else {
-                    mRecyclerView.setVisibility(View.GONE);
-                    mEmptyStateTextView.setVisibility(View.VISIBLE);
-                }
-                mProgressBar.setVisibility(View.INVISIBLE);
+                })
+                .show();
+    }
+
+    /**
+     * This method is called to create a dialog for choosing the list that is shown, or creating
+     * a new one.
+     */
+    private void createListsDialog() {
+        String[] names = new String[mLists.size() + 1];
+        int checked = -1;
+        for (int i = 0; i < mLists.size(); i++) {
+            names[i] = listName(mLists.get(i));
+            if (mLists.get(i).getId().equals(mListId)) {
+                checked = i;
             }
+        }
+        names[mLists.size()] = getString(R.string.new_list_option);
+
+        new AlertDialog.Builder(MainActivity.this)
+                .setTitle(R.string.lists_title)
+                .setSingleChoiceItems(names, checked, (dialog, which) -> {
+                    dialog.dismiss();
+                    if (which == mLists.size()) {
+                        createNewListDialog();
+                    } else {
+                        showList(mLists.get(which).getId());
+                    }
+                })
+                .show();
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                // Failed to read value
-                Log.e(TAG, "Failed to read data", error.toException());
+    /**
+     * This method is called to create a dialog for naming a new list. The new list is shown
+     * right away, while it is added to the index.
+     */
+    private void createNewListDialog() {
+        View dialogView = getLayoutInflater().inflate(R.layout.new_list_dialog, null);
+        EditText nameEditText = dialogView.findViewById(R.id.list_name);
+
+        new AlertDialog.Builder(MainActivity.this)
+                .setTitle(R.string.new_list_header)
+                .setView(dialogView)
+                .setPositiveButton(R.string.create_list_button, (dialog, which) -> {
+                    String name = nameEditText.getText().toString().trim();
+                    if (name.isEmpty()) {
+                        return;
+                    }
+
+                    TaskList list = new TaskList(mViewModel.getListIndex().newListId(), name);
+                    mViewModel.getListIndex().addList(list, new TaskStore.WriteListener() {
+                        @Override
+                        public void onWriteComplete() {
+                        }
+
+                        @Override
+                        public void onWriteFailed(Exception exception) {
+                            Toast.makeText(MainActivity.this, R.string.list_failed, Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                    showList(list.getId());
+                })
+                .show();
+    }
+
+    /**
+     * Helper method to show another list. The activity is created again for it, and the view
+     * model replaces the repository of the list shown now, with its store, local copy and sync.
+     *
+     * @param listId The id of the list.
+     */
+    private void showList(String listId) {
+        if (listId.equals(mListId)) {
+            return;
+        }
+        PreferenceManager.getDefaultSharedPreferences(this).edit()
+                .putString(KEY_CURRENT_LIST, listId)
+                .apply();
+
+        // An import or export and the undo of a removal belong to the list they were made in
+        mViewModel.cancelTransfer();
+        if (mRemovalSnackbar != null) {
+            mRemovalSnackbar.dismiss();
+        }
+
+        // The view model replaces the repository, the views and the adapter show the new list
+        mTaskCache.removeListener(mCacheListener);
+        mRepository.setListener(null);
+        mListId = listId;
+        bindRepository();
+        mTaskCache.addListener(mCacheListener);
+        mRepository.setListener(this);
+        mAdapter.setSelection(mSelection);
+        if (mSearchQuery != null) {
+            mRepository.loadSearchIndex();
+        }
+
+        mLayoutManager.scrollToPosition(0);
+        mProgressBar.setVisibility(mRepository.isLoading() ? View.VISIBLE : View.INVISIBLE);
+        updateDeleteButton();
+        updateTitle();
+        submitTasks();
+    }
+
+    /**
+     * Helper method to get the shown list from the view model, with the parts of it the activity
+     * uses.
+     */
+    private void bindRepository() {
+        mRepository = mViewModel.getRepository(mListId, FILTERS[mFilterIndex]);
+        mTaskStore = mRepository.getTaskStore();
+        mTaskCache = mRepository.getTaskCache();
+        mSearchIndex = mRepository.getSearchIndex();
+        mWriteQueue = mRepository.getWriteQueue();
+        mSelection = mViewModel.getSelection();
+    }
+
+    /**
+     * Helper method to keep the lists of the index, and show the name of the shown list. The
+     * default list has the name of the app.
+     */
+    private void onListsChanged(List<TaskList> lists) {
+        mLists = lists;
+        updateTitle();
+    }
+
+    /**
+     * Helper method to show the name of the shown list as the title, or the name of the app for
+     * the default list.
+     */
+    private void updateTitle() {
+        if (mListId.equals(TaskListIndex.DEFAULT_LIST_ID)) {
+            setTitle(R.string.app_name);
+            return;
+        }
+        for (TaskList list : mLists) {
+            if (list.getId().equals(mListId)) {
+                setTitle(list.getName());
             }
-        });
+        }
+    }
+
+    /**
+     * Helper method to return the name of a list as it is shown.
+     */
+    private String listName(TaskList list) {
+        return list.getId().equals(TaskListIndex.DEFAULT_LIST_ID)
+                ? getString(R.string.default_list_name) : list.getName();
+    }
+
+    /**
+     * This method is called to create a dialog for choosing the format of an export, then the
+     * file it is written to.
+     */
+    private void createExportDialog() {
+        new AlertDialog.Builder(MainActivity.this)
+                .setTitle(R.string.export_format_title)
+                .setItems(R.array.export_format_options, (dialog, which) -> {
+                    mViewModel.setExportFormat(EXPORT_FORMATS[which]);
+                    mExportLauncher.launch(TaskFileFormat.fileName(EXPORT_FORMATS[which]));
+                })
+                .show();
+    }
+
+    @Override
+    public void onTransferProgress(String message) {
+        // The dialog is shown with the first progress of an import or export
+        if (mTransferDialog == null) {
+            mTransferDialog = new AlertDialog.Builder(MainActivity.this)
+                    .setTitle(mViewModel.getTransferTitle())
+                    .setMessage(message)
+                    .setCancelable(false)
+                    .setNegativeButton(R.string.transfer_cancel, (dialog, which) -> mViewModel.cancelTransfer())
+                    .show();
+        } else {
+            mTransferDialog.setMessage(message);
+        }
+    }
+
+    @Override
+    public void onTransferEnded(String message) {
+        if (mTransferDialog != null) {
+            mTransferDialog.dismiss();
+            mTransferDialog = null;
+        }
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
     }
 
     /**
@@ -288,39 +893,37 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
         CheckBox priorityMedium = dialogView.findViewById(R.id.priority_medium);
         CheckBox priorityLow = dialogView.findViewById(R.id.priority_low);
 
+        // The task as it was when the dialog was opened, the update is based on its version
+        TaskEntry baseTask = index >= 0 ? mAdapter.getTaskAt(index) : null;
+
         if (index >= 0) {
-            mKey = mKeysList.get(index);
-
-            mReadWriteDB.readSelectedTask(mKey, new ValueEventListener() {
-                @Override
-                public void onDataChange(@NonNull DataSnapshot snapshot) {
-                    if (snapshot.exists()) {
-                        String savedDescription = Objects.requireNonNull(snapshot.child("description")
-                                .getValue()).toString();
-                        int savedPriority = Integer.parseInt(Objects.requireNonNull(snapshot.child("priority")
-                                .getValue()).toString());
-
-                        taskTitle.setText(savedDescription);
-                        switch (savedPriority) {
-                            case 1:
-                                priorityHigh.setChecked(true);
-                                break;
-                            case 2:
-                                priorityMedium.setChecked(true);
-                                break;
-                            case 3:
-                                priorityLow.setChecked(true);
-                                break;
+            mKey = baseTask.getKey();
+
+            // The cache holds the values the list shows, so the dialog is filled in right away.
+            // Only a task that is missing or was not confirmed by the sync yet is read again.
+            TaskEntry cachedTask = mTaskCache.get(mKey);
+            if (cachedTask != null && !mTaskCache.isStale(mKey)) {
+                showTask(cachedTask, taskTitle, priorityHigh, priorityMedium, priorityLow);
+            } else {
+                showTask(baseTask, taskTitle, priorityHigh, priorityMedium, priorityLow);
+                mTaskStore.readSelectedTask(mKey, new TaskStore.TaskListener() {
+                    @Override
+                    public void onTaskRead(TaskEntry task) {
+                        if (task == null) {
+                            return;
                         }
+                        if (mTaskCache.get(task.getKey()) != null) {
+                            mTaskCache.put(task);
+                        }
+                        showTask(task, taskTitle, priorityHigh, priorityMedium, priorityLow);
                     }
-                }
 
-                @Override
-                public void onCancelled(@NonNull DatabaseError error) {
-                    // Failed to read value
-                    Log.e(TAG, "Failed to read data", error.toException());
-                }
-            });
+                    @Override
+                    public void onReadFailed(Exception exception) {
+                        // The values of the list are shown, which is the best that is known
+                    }
+                });
+            }
         }
 
         // Text change listener for the EditText field (task description)
@@ -389,19 +992,11 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
                         priorityMedium.isChecked(), priorityLow.isChecked());
 
                 if (label.equals(getString(R.string.add_positive_button))) {
-                    TaskEntry taskEntry = new TaskEntry(title, priority);
-
-                    int size = mKeysList.size();
-                    if (size == 0) {
-                        mReadWriteDB.addTask(taskEntry, size);
-                    } else {
-                        int lastID = Integer.parseInt(mKeysList.get(size - 1));
-                        mReadWriteDB.addTask(taskEntry, lastID);
-                    }
+                    addTask(new TaskEntry(title, priority));
                 }
 
                 if (label.equals(getString(R.string.update_positive_button))) {
-                    mReadWriteDB.updateSelectedTask(mKey, title, priority);
+                    updateTask(baseTask, new TaskEntry(mKey, title, priority, baseTask.getVersion()));
                 }
 
                 wantToCloseDialog = true;
@@ -416,13 +1011,352 @@ public class MainActivity extends AppCompatActivity implements TaskAdapter.ItemC
 
             if (wantToCloseDialog) {
                 alertDialog.dismiss();
+            }
+        });
+    }
+
+    /**
+     * Adds a new task to the list right away and queues it to be written to the database.
+     *
+     * @param task The new task, without a key.
+     */
+    private void addTask(TaskEntry task) {
+        TaskEntry newTask = new TaskEntry(mTaskStore.newTaskKey(), task.getDescription(), task.getPriority());
+        mTaskCache.put(newTask);
+        mSearchIndex.put(newTask);
+        // A new task is not ticked, even while all the tasks are selected
+        mSelection.setSelected(newTask.getKey(), false);
+        refreshSearch();
+        mWriteQueue.add(newTask);
+    }
+
+    /**
+     * Shows the new values of a task right away and queues them to be written to the database.
+     *
+     * @param base The task as it was when the dialog was opened.
+     * @param task The new values of the task.
+     */
+    private void updateTask(TaskEntry base, TaskEntry task) {
+        mTaskCache.update(task);
+        mSearchIndex.put(task);
+        refreshSearch();
+        mWriteQueue.update(base, task);
+    }
 
-                // Refresh the screen so the changes can take effect
-                Intent intent = getIntent();
-                finish();
-                startActivity(intent);
-                overridePendingTransition(0, 0);
+    /**
+     * Ticks every task of the list, or every result while the list is searched.
+     */
+    private void selectAllTasks() {
+        if (isSearching()) {
+            for (TaskEntry task : mAdapter.getCurrentList()) {
+                mSelection.setSelected(task.getKey(), true);
+            }
+        } else {
+            mSelection.selectAll();
+        }
+        onSelectionChanged();
+    }
+
+    /**
+     * Ticks the tasks that are not ticked and unticks the others, in the whole list, or in the
+     * results while the list is searched.
+     */
+    private void invertSelection() {
+        if (isSearching()) {
+            for (TaskEntry task : mAdapter.getCurrentList()) {
+                mSelection.toggle(task.getKey());
+            }
+        } else {
+            mSelection.invert();
+        }
+        onSelectionChanged();
+    }
+
+    /**
+     * Helper method to untick every task.
+     */
+    private void clearSelection() {
+        mSelection.clear();
+        onSelectionChanged();
+    }
+
+    /**
+     * Helper method to show the ticks after the selection changed as a whole.
+     */
+    private void onSelectionChanged() {
+        mAdapter.notifySelectionChanged();
+        updateDeleteButton();
+    }
+
+    /**
+     * Helper method to show the delete FAB while any task is ticked.
+     */
+    private void updateDeleteButton() {
+        mDeleteButton.setVisibility(mSelection.isEmpty() ? View.INVISIBLE : View.VISIBLE);
+    }
+
+    /**
+     * Deletes or completes the ticked tasks. When they are all in the list or the search index
+     * this is done right away. Otherwise, like when all the tasks are selected or the ticked ones
+     * were scrolled out of memory, the list is read a page at a time to find them first.
+     *
+     * @param complete True to complete the tasks, which moves them to the archive of the list,
+     *                 false to delete them.
+     */
+    private void removeSelectedTasks(boolean complete) {
+        SelectionModel selection = mSelection.drain();
+        onSelectionChanged();
+
+        if (!selection.isAllSelected()) {
+            // Ticked tasks that were scrolled out of the list are read one by one
+            List<TaskEntry> tasks = new ArrayList<>();
+            List<String> missingKeys = new ArrayList<>();
+            for (String key : selection.getKeys()) {
+                TaskEntry task = findTask(key);
+                if (task == null) {
+                    missingKeys.add(key);
+                } else {
+                    tasks.add(task);
+                }
+            }
+            readSelectedTasks(missingKeys, 0, tasks, complete);
+            return;
+        }
+
+        // Selecting all applies to the tasks the filter shows, which are read a page at a time
+        findSelectedTasks(mRepository.pages(mTaskCache.getFilter()), null, selection, new ArrayList<>(),
+                complete);
+    }
+
+    /**
+     * Helper method to read the selected tasks from the given index on, one at a time, and
+     * delete or complete them all once the last one is read. Tasks that no longer exist are
+     * left out.
+     */
+    private void readSelectedTasks(List<String> keys, int index, List<TaskEntry> tasks, boolean complete) {
+        if (index == keys.size()) {
+            removeTasks(tasks, complete);
+            return;
+        }
+
+        mTaskStore.readSelectedTask(keys.get(index), new TaskStore.TaskListener() {
+            @Override
+            public void onTaskRead(TaskEntry task) {
+                if (task != null) {
+                    tasks.add(task);
+                }
+                readSelectedTasks(keys, index + 1, tasks, complete);
+            }
+
+            @Override
+            public void onReadFailed(Exception exception) {
+                Log.e(TAG, "Failed to read the selected tasks", exception);
+                showWriteFailed();
+            }
+        });
+    }
+
+    /**
+     * Helper method to collect the selected tasks after the given page, a page at a time, and
+     * delete or complete them all once the last page is read.
+     */
+    private void findSelectedTasks(TaskPager.PageSource source, TaskPage previousPage,
+                                   SelectionModel selection, List<TaskEntry> tasks, boolean complete) {
+        source.loadPageAfter(previousPage, SELECTION_PAGE_SIZE, new TaskPager.PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                for (TaskEntry task : page.getTasks()) {
+                    if (selection.isSelected(task.getKey())) {
+                        tasks.add(task);
+                    }
+                }
+                if (page.isLast() || page.isEmpty()) {
+                    removeTasks(tasks, complete);
+                } else {
+                    findSelectedTasks(source, page, selection, tasks, complete);
+                }
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                Log.e(TAG, "Failed to read the selected tasks", exception);
+                showWriteFailed();
+            }
+        });
+    }
+
+    /**
+     * Helper method to return the task with the given key from the list or the search index, or
+     * null if neither holds it. Tasks picked from search results may not be loaded in the list.
+     */
+    private TaskEntry findTask(String key) {
+        TaskEntry task = mTaskCache.get(key);
+        return task != null ? task : mSearchIndex.get(key);
+    }
+
+    /**
+     * Removes the given tasks from the list right away, and offers to undo it for a few seconds.
+     * Only then are they queued to be deleted, or moved to the archive, in a single write, so an
+     * undone change is never written. A new removal ends the undo of the one before.
+     *
+     * @param tasks The tasks to be removed.
+     * @param complete True if the tasks are completed, false if they are deleted.
+     */
+    private void removeTasks(List<TaskEntry> tasks, boolean complete) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        TaskListViewModel.PendingRemoval removal = new TaskListViewModel.PendingRemoval(tasks, complete);
+        for (TaskEntry task : tasks) {
+            if (mTaskCache.get(task.getKey()) != null) {
+                removal.mShownTasks.add(task);
+                mTaskCache.remove(task.getKey());
+            }
+            if (mSearchIndex.get(task.getKey()) != null) {
+                removal.mIndexedTasks.add(task);
+                mSearchIndex.remove(task.getKey());
+            }
+        }
+        refreshSearch();
+
+        mViewModel.startRemoval(removal);
+        showRemoval(removal);
+    }
+
+    /**
+     * Helper method to show the message that offers to undo a removal, for the time that is left.
+     * Once the message times out or is swiped away the removal is written right away.
+     */
+    private void showRemoval(TaskListViewModel.PendingRemoval removal) {
+        String message = getString(removal.mComplete ? R.string.tasks_completed : R.string.tasks_deleted,
+                removal.mTasks.size());
+        // A duration of 0 would be the long default, so at least a millisecond is left
+        int duration = (int) Math.max(1, removal.remainingMillis());
+        mRemovalSnackbar = Snackbar.make(mRecyclerView, message, duration)
+                .setAction(R.string.undo_button, view -> undoRemoval(removal))
+                .addCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onDismissed(Snackbar snackbar, int event) {
+                        if ((event == DISMISS_EVENT_TIMEOUT || event == DISMISS_EVENT_SWIPE)
+                                && mViewModel.getPendingRemoval() == removal) {
+                            mViewModel.commitRemoval();
+                        }
+                    }
+                });
+        mRemovalSnackbar.show();
+    }
+
+    /**
+     * Helper method to put the tasks of a removal back where they were shown.
+     */
+    private void undoRemoval(TaskListViewModel.PendingRemoval removal) {
+        if (mViewModel.undoRemoval(removal)) {
+            refreshSearch();
+        }
+    }
+
+    /**
+     * This method is called to create a dialog that shows the completed tasks of the list. The
+     * archive is not synced with the list, so it is only read while the dialog is open, a page
+     * at a time as the user scrolls.
+     */
+    private void createArchiveDialog() {
+        View dialogView = getLayoutInflater().inflate(R.layout.archive_dialog, null);
+        RecyclerView recyclerView = dialogView.findViewById(R.id.archived_tasks);
+        TextView emptyView = dialogView.findViewById(R.id.archive_empty_view);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+
+        // Every archived task is completed, so they are all shown ticked, and nothing is edited
+        SelectionModel completed = new SelectionModel();
+        completed.selectAll();
+        TaskAdapter adapter = new TaskAdapter(this, position -> {
+        }, mTaskViewType, completed);
+        recyclerView.setAdapter(adapter);
+
+        TaskCache archive = new TaskCache();
+        TaskPager pager = new TaskPager(mTaskStore.archivedPages(), PAGE_SIZE, MAX_RESIDENT_PAGES,
+                new TaskPager.Listener() {
+                    @Override
+                    public void onPageLoaded(TaskPage page) {
+                        for (TaskEntry task : page.getTasks()) {
+                            archive.put(task);
+                        }
+                        showArchive();
+                    }
+
+                    @Override
+                    public void onPageDropped(TaskPage page, boolean fromStart) {
+                        List<TaskEntry> tasks = page.getTasks();
+                        if (tasks.isEmpty()) {
+                            return;
+                        }
+
+                        if (fromStart) {
+                            archive.evict(null, tasks.get(tasks.size() - 1));
+                        } else {
+                            archive.evict(tasks.get(0), null);
+                        }
+                        showArchive();
+                    }
+
+                    @Override
+                    public void onPageFailed(Exception exception) {
+                        Log.e(TAG, "Failed to read the archive", exception);
+                        emptyView.setText(R.string.archive_failed);
+                        emptyView.setVisibility(archive.size() == 0 ? View.VISIBLE : View.INVISIBLE);
+                    }
+
+                    /**
+                     * Helper method to show the archived tasks that are loaded.
+                     */
+                    private void showArchive() {
+                        adapter.submitList(archive.getTasks());
+                        emptyView.setVisibility(archive.size() == 0 ? View.VISIBLE : View.INVISIBLE);
+                    }
+                });
+
+        // Load the next page when the archive is scrolled close to either end of the loaded part
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (last >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    pager.loadNextPage();
+                } else if (first != RecyclerView.NO_POSITION && first < PREFETCH_DISTANCE) {
+                    pager.loadPreviousPage();
+                }
             }
         });
+        pager.loadNextPage();
+
+        new AlertDialog.Builder(MainActivity.this)
+                .setTitle(R.string.archive_title)
+                .setView(dialogView)
+                .setPositiveButton(R.string.close_button, null)
+                .setOnDismissListener(dialog -> pager.cancel())
+                .show();
+    }
+
+    /**
+     * Called when the database refuses a queued change, which the repository already undid in
+     * the list.
+     *
+     * @param write The refused change.
+     * @param exception The reason it was refused.
+     */
+    @Override
+    public void onWriteRejected(PendingWrite write, Exception exception) {
+        refreshSearch();
+        showWriteFailed();
+    }
+
+    /**
+     * Helper method to tell the user that a change could not be saved.
+     */
+    private void showWriteFailed() {
+        Toast.makeText(this, R.string.write_failed, Toast.LENGTH_SHORT).show();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package com.gmail.rami.abushaqra79.todolist;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The tasks that are ticked for deletion, kept by their keys so the selection does not depend on
+ * the positions of the tasks in the list, which change as pages are loaded and tasks arrive.
+ *
+ * Selecting all the tasks does not go through the list, which may not be loaded: the selection
+ * switches to holding the keys of the tasks that are not selected instead. So ticking a task,
+ * selecting all and inverting the selection all take constant time, whatever the size of the list.
+ */
+public class SelectionModel {
+
+    /**
+     * Member variable for the keys of the selected tasks, or of the tasks that are not selected
+     * while all are selected
+     */
+    private Set<String> mKeys = new HashSet<>();
+
+    /**
+     * True if every task is selected, except the ones in mKeys
+     */
+    private boolean mAllSelected;
+
+    /**
+     * Returns true if the task with the given key is selected.
+     */
+    public boolean isSelected(String key) {
+        return mAllSelected != mKeys.contains(key);
+    }
+
+    /**
+     * Selects the task if it was not selected, and the other way round.
+     *
+     * @param key The key of the task.
+     * @return True if the task is selected now.
+     */
+    public boolean toggle(String key) {
+        if (!mKeys.remove(key)) {
+            mKeys.add(key);
+        }
+        return isSelected(key);
+    }
+
+    /**
+     * Selects or unselects a task.
+     *
+     * @param key The key of the task.
+     * @param selected True to select the task.
+     */
+    public void setSelected(String key, boolean selected) {
+        if (selected != mAllSelected) {
+            mKeys.add(key);
+        } else {
+            mKeys.remove(key);
+        }
+    }
+
+    /**
+     * Selects every task of the list, including the ones that are not loaded.
+     */
+    public void selectAll() {
+        mAllSelected = true;
+        mKeys = new HashSet<>();
+    }
+
+    /**
+     * Selects the tasks that were not selected, and unselects the others.
+     */
+    public void invert() {
+        mAllSelected = !mAllSelected;
+    }
+
+    /**
+     * Unselects every task.
+     */
+    public void clear() {
+        mAllSelected = false;
+        mKeys = new HashSet<>();
+    }
+
+    /**
+     * Drops the key of a task that was deleted, so it is not kept in the selection.
+     */
+    public void forget(String key) {
+        mKeys.remove(key);
+    }
+
+    /**
+     * Returns true if no task is selected. While all are selected, the selection is only empty
+     * once it is cleared or inverted, since the number of tasks is not known.
+     */
+    public boolean isEmpty() {
+        return !mAllSelected && mKeys.isEmpty();
+    }
+
+    /**
+     * Returns true if every task is selected, except the ones returned by {@link #getKeys()}.
+     */
+    public boolean isAllSelected() {
+        return mAllSelected;
+    }
+
+    /**
+     * Returns the keys of the selected tasks, or of the tasks that are not selected if
+     * {@link #isAllSelected()} is true.
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(mKeys);
+    }
+
+    /**
+     * Moves the selection into a new model and clears this one, without copying the keys.
+     *
+     * @return The selection as it was.
+     */
+    public SelectionModel drain() {
+        SelectionModel drained = new SelectionModel();
+        drained.mKeys = mKeys;
+        drained.mAllSelected = mAllSelected;
+        clear();
+        return drained;
+    }
+}
@@ -1,11 +1,8 @@
 package com.gmail.rami.abushaqra79.todolist;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.res.ColorStateList;
 import android.graphics.Paint;
-import android.preference.PreferenceManager;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -14,17 +11,63 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * This TaskAdapter creates and binds ViewHolders, that hold the description and priority of a task,
- * to a RecyclerView to efficiently display data.
+ * to a RecyclerView to efficiently display data. New lists are diffed against the current one on a
+ * background thread, so only the items that really changed are rebound. Binding a holder does not
+ * allocate: the colors are resolved once, and each holder reuses one click listener. The ticked
+ * state of every task comes from a {@link SelectionModel}, so a reused holder never shows the tick
+ * of the task it held before.
  */
-public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder> {
+public class TaskAdapter extends ListAdapter<TaskEntry, TaskAdapter.TaskViewHolder> {
+
+    /**
+     * View type of the holders that use the English task layout
+     */
+    public static final int VIEW_TYPE_ENGLISH = 0;
+
+    /**
+     * View type of the holders that use the Arabic task layout
+     */
+    public static final int VIEW_TYPE_ARABIC = 1;
+
+    /**
+     * Compares tasks by their database key, and then by the values that are displayed
+     */
+    private static final DiffUtil.ItemCallback<TaskEntry> DIFF_CALLBACK = new DiffUtil.ItemCallback<TaskEntry>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull TaskEntry oldTask, @NonNull TaskEntry newTask) {
+            return Objects.equals(oldTask.getKey(), newTask.getKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TaskEntry oldTask, @NonNull TaskEntry newTask) {
+            return oldTask.getPriority() == newTask.getPriority()
+                    && Objects.equals(oldTask.getDescription(), newTask.getDescription());
+        }
+    };
+
+    /**
+     * Payload of a change that only rebinds the ticked state of the tasks
+     */
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    /**
+     * Background executor that computes the list diffs off the main thread
+     */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
 
     /**
      * Member variable to handle item clicks
@@ -37,24 +80,72 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
     private TickForDeleteListener mDeleteListener;
 
     /**
-     * Member variable for the List that holds tasks data
+     * Member variable for the tasks that are ticked for deletion
      */
-    private List<TaskEntry> mTaskEntries;
+    private SelectionModel mSelection;
 
     /**
      * Member variable for the context
      */
     private final Context mContext;
 
+    /**
+     * Member variable for the view type of every holder, which selects the task layout
+     */
+    private final int mViewType;
+
+    /**
+     * Member variable for the checkbox tint of each priority, indexed by priority
+     */
+    private final ColorStateList[] mPriorityTints;
+
+    /**
+     * Member variable for the text color of a task that is ticked for deletion
+     */
+    private final int mTickedTextColor;
+
+    /**
+     * Member variable for the text color of a task that is not ticked
+     */
+    private final int mTextColor;
+
     /**
      * Constructor for the TaskAdapter that initializes the Context.
      *
      * @param context  The current Context
      * @param listener The ItemClickListener
+     * @param viewType VIEW_TYPE_ENGLISH or VIEW_TYPE_ARABIC, for the language the user selected
+     * @param selection The tasks that are ticked for deletion, ticking a task changes it
      */
-    public TaskAdapter(Context context, ItemClickListener listener) {
+    public TaskAdapter(Context context, ItemClickListener listener, int viewType,
+                       SelectionModel selection) {
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                .setBackgroundThreadExecutor(DIFF_EXECUTOR)
+                .build());
         mContext = context;
         mItemClickListener = listener;
+        mViewType = viewType;
+        mSelection = selection;
+
+        // P1 = red, P2 = blue, P3 = green, any other value gets no tint
+        mPriorityTints = new ColorStateList[] {
+                ColorStateList.valueOf(0),
+                ColorStateList.valueOf(ContextCompat.getColor(context, R.color.materialRed)),
+                ColorStateList.valueOf(ContextCompat.getColor(context, R.color.materialBlue)),
+                ColorStateList.valueOf(ContextCompat.getColor(context, R.color.materialGreen))
+        };
+        mTickedTextColor = ContextCompat.getColor(context, R.color.light_gray);
+        mTextColor = ContextCompat.getColor(context, R.color.black);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Returns the view type of the holder at the given position, which is the same for every
+     * position because the layout only depends on the language.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return mViewType;
     }
 
     /**
@@ -65,18 +156,9 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
     @NonNull
     @Override
     public TaskViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view;
-
-        // Get a reference to the sharedPreferences
-        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
-        String language = sharedPreferences.getString(mContext.getString(R.string.settings_select_language_key), mContext.getString(R.string.settings_select_language_default));
-
-        // Inflate the task_layout to a view
-        if (language.equals(mContext.getString(R.string.settings_english_value))) {
-            view = LayoutInflater.from(mContext).inflate(R.layout.task_layout, parent, false);
-        } else {
-            view = LayoutInflater.from(mContext).inflate(R.layout.task_layout_arabic, parent, false);
-        }
+        // Inflate the task_layout of the view type to a view
+        int layout = viewType == VIEW_TYPE_ENGLISH ? R.layout.task_layout : R.layout.task_layout_arabic;
+        View view = LayoutInflater.from(mContext).inflate(layout, parent, false);
 
         return new TaskViewHolder(view);
     }
@@ -90,75 +172,68 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
     @Override
     public void onBindViewHolder(TaskViewHolder holder, int position) {
         // Determine the values of the wanted data
-        TaskEntry taskEntry = mTaskEntries.get(position);
-        String description = taskEntry.getDescription();
-        int priority = taskEntry.getPriority();
+        TaskEntry taskEntry = getItem(position);
 
         //Set values
-        holder.taskDescriptionView.setText(description);
-
-        // Get the appropriate color based on the priority
-        int priorityColor = getPriorityColor(priority);
-        holder.priorityView.setButtonTintList(ColorStateList.valueOf(priorityColor));
-        // Attach a click listener to the priority CheckBox
-        holder.priorityView.setOnClickListener(view -> {
-            if (mDeleteListener != null) {
-                mDeleteListener.tickForDelete(holder.priorityView, holder.getBindingAdapterPosition());
-            }
+        holder.taskDescriptionView.setText(taskEntry.getDescription());
 
-            if (holder.priorityView.isChecked()) {
-                holder.taskDescriptionView.setPaintFlags(holder.taskDescriptionView.getPaintFlags()
-                        | Paint.STRIKE_THRU_TEXT_FLAG);
-                holder.taskDescriptionView.setTextColor(ContextCompat.getColor(mContext, R.color.light_gray));
-            } else {
-                holder.taskDescriptionView.setPaintFlags(0);
-                holder.taskDescriptionView.setTextColor(ContextCompat.getColor(mContext, R.color.black));
-            }
-        });
+        // Use the precomputed color of the priority
+        holder.priorityView.setButtonTintList(getPriorityTint(taskEntry.getPriority()));
+        holder.bindTicked(mSelection.isSelected(taskEntry.getKey()));
+    }
+
+    /**
+     * Called by the RecyclerView to display data at a specified position in the list, when only
+     * the given parts of it changed.
+     *
+     * @param holder   The ViewHolder to bind data to.
+     * @param position The position of the data in the list.
+     * @param payloads The parts that changed, or empty to bind everything.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull TaskViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // The selection is the only partial change, others rebind everything without a payload
+        if (payloads.contains(PAYLOAD_SELECTION)) {
+            holder.bindTicked(mSelection.isSelected(getItem(position).getKey()));
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    /**
+     * Rebinds the ticked state of the shown tasks after the selection changed as a whole, like
+     * when all tasks are selected. The other values of the tasks are not bound again.
+     */
+    public void notifySelectionChanged() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
     }
 
     /**
      * Helper method for selecting the correct priority checkbox color.
      *     P1 = red, P2 = blue, P3 = green
      */
-    private int getPriorityColor(int priority) {
-        int priorityColor = 0;
-
-        switch (priority) {
-            case 1:
-                priorityColor = ContextCompat.getColor(mContext, R.color.materialRed);
-                break;
-            case 2:
-                priorityColor = ContextCompat.getColor(mContext, R.color.materialBlue);
-                break;
-            case 3:
-                priorityColor = ContextCompat.getColor(mContext, R.color.materialGreen);
-                break;
-            default:
-                break;
+    private ColorStateList getPriorityTint(int priority) {
+        if (priority < 1 || priority >= mPriorityTints.length) {
+            return mPriorityTints[0];
         }
-        return priorityColor;
+        return mPriorityTints[priority];
     }
 
     /**
-     * Returns the number of items to display.
+     * Returns a stable ID for the task at the given position, derived from its database key, so
+     * the RecyclerView can keep the same holder for the same task across list updates. The ID is
+     * kept on the task, so nothing is remembered for the tasks that left the list.
      */
     @Override
-    public int getItemCount() {
-        if (mTaskEntries == null) {
-            return 0;
-        }
-        return mTaskEntries.size();
+    public long getItemId(int position) {
+        return getItem(position).getStableId();
     }
 
     /**
-     * When data changes, this method updates the list of taskEntries
-     * and notifies the adapter to use the new values on it
+     * Returns the task that is displayed at the given position.
      */
-    @SuppressLint("NotifyDataSetChanged")
-    public void setTasks(List<TaskEntry> taskEntries) {
-        mTaskEntries = taskEntries;
-        notifyDataSetChanged();
+    public TaskEntry getTaskAt(int position) {
+        return getItem(position);
     }
 
     /**
@@ -172,7 +247,7 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
      * Interface to handle CheckBox checking for deletion
      */
     public interface TickForDeleteListener{
-        void tickForDelete(CheckBox checkBox, int position);
+        void tickForDelete(String key, boolean ticked);
     }
 
     // Initialize the deletion listener
@@ -180,6 +255,16 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         mDeleteListener = deleteListener;
     }
 
+    /**
+     * Replaces the selection the tasks are ticked in, when another list is shown. The tasks of
+     * the new list are bound again once they are submitted.
+     *
+     * @param selection The selection of the shown list.
+     */
+    public void setSelection(SelectionModel selection) {
+        mSelection = selection;
+    }
+
     /**
      * Inner class for creating ViewHolders.
      */
@@ -207,13 +292,58 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
             taskDescriptionView = itemView.findViewById(R.id.taskDescription);
             priorityView = itemView.findViewById(R.id.priorityCheckBox);
 
+            // The holder is the listener of both views, so nothing is attached when it is bound
             itemView.setOnClickListener(this);
+            priorityView.setOnClickListener(this);
         }
 
         @Override
         public void onClick(View view) {
-            int clickedPosition = getLayoutPosition();
-            mItemClickListener.onItemClickListener(clickedPosition);
+            if (view == priorityView) {
+                onPriorityClick();
+                return;
+            }
+
+            int clickedPosition = getBindingAdapterPosition();
+            if (clickedPosition != RecyclerView.NO_POSITION) {
+                mItemClickListener.onItemClickListener(clickedPosition);
+            }
+        }
+
+        /**
+         * Helper method to tick or untick the task for deletion when its CheckBox is clicked.
+         */
+        private void onPriorityClick() {
+            int position = getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+
+            String key = getItem(position).getKey();
+            if (mDeleteListener == null) {
+                // The list does not tick its tasks, like the archive, so the click is undone
+                bindTicked(mSelection.isSelected(key));
+                return;
+            }
+
+            boolean ticked = mSelection.toggle(key);
+            bindTicked(ticked);
+            mDeleteListener.tickForDelete(key, ticked);
+        }
+
+        /**
+         * Helper method to show whether the task is ticked for deletion.
+         */
+        void bindTicked(boolean ticked) {
+            priorityView.setChecked(ticked);
+            if (ticked) {
+                taskDescriptionView.setPaintFlags(taskDescriptionView.getPaintFlags()
+                        | Paint.STRIKE_THRU_TEXT_FLAG);
+                taskDescriptionView.setTextColor(mTickedTextColor);
+            } else {
+                taskDescriptionView.setPaintFlags(0);
+                taskDescriptionView.setTextColor(mTextColor);
+            }
         }
     }
 }
\ No newline at end of file
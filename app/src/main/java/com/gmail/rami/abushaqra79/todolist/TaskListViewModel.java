@@ -0,0 +1,646 @@
+package com.gmail.rami.abushaqra79.todolist;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.gmail.rami.abushaqra79.todolist.database.TaskExport;
+import com.gmail.rami.abushaqra79.todolist.database.TaskFilter;
+import com.gmail.rami.abushaqra79.todolist.database.TaskImport;
+import com.gmail.rami.abushaqra79.todolist.database.TaskListIndex;
+import com.gmail.rami.abushaqra79.todolist.database.TaskRepository;
+import com.gmail.rami.abushaqra79.todolist.database.TaskStore;
+import com.gmail.rami.abushaqra79.todolist.database.TaskStores;
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+import com.gmail.rami.abushaqra79.todolist.model.TaskList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the repository of the shown list, its selection and the lists of the index across
+ * rotations, so an activity that is created again shows them without reading anything.
+ *
+ * The database listeners are attached while any observer is started, and detached a few seconds
+ * after the last one stopped. During a rotation the new activity starts before the delay is over,
+ * so the listeners are kept, while in the background nothing is downloaded.
+ *
+ * Imports and exports also run here, so a rotation does not stop them, and the new activity
+ * shows their progress again. They are only stopped by the user, or once the view model is
+ * cleared.
+ */
+public class TaskListViewModel extends AndroidViewModel implements DefaultLifecycleObserver {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = TaskListViewModel.class.getSimpleName();
+
+    /**
+     * Name of the preferences file that holds the position of the last import
+     */
+    private static final String IMPORT_PREFERENCES = "import";
+
+    /**
+     * Preference keys of the list and file of the last import and the number of its tasks that
+     * were imported, so the import can be resumed from there
+     */
+    private static final String KEY_IMPORT_URI = "import_uri";
+    private static final String KEY_IMPORT_POSITION = "import_position";
+
+    /**
+     * Time the listeners are kept after the last observer stopped
+     */
+    private static final long DETACH_DELAY_MILLIS = 5000;
+
+    /**
+     * Time a delete or completion can be undone before it is written
+     */
+    private static final long UNDO_REMOVAL_MILLIS = 5000;
+
+    /**
+     * Member variable for the delayed detach
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for detaching the listeners once the delay is over
+     */
+    private final Runnable mDetach = this::detach;
+
+    /**
+     * Member variable for writing the pending removal once it can no longer be undone
+     */
+    private final Runnable mCommitRemoval = this::commitRemoval;
+
+    /**
+     * Member variable for the number of started observers
+     */
+    private int mStartCount;
+
+    /**
+     * True while the listeners are attached
+     */
+    private boolean mAttached;
+
+    /**
+     * Member variable for the index of all the lists
+     */
+    private final TaskListIndex mListIndex;
+
+    /**
+     * Member variable for observing the index of the lists, null while detached
+     */
+    private TaskStore.Registration mListsRegistration;
+
+    /**
+     * Member variable for the lists of the index, the default list first
+     */
+    private List<TaskList> mLists = new ArrayList<>();
+
+    /**
+     * Member variable for the listener of the lists, null while no list is shown
+     */
+    private TaskListIndex.ListsListener mListsListener;
+
+    /**
+     * Member variable for the repository of the shown list, null until it is first asked for
+     */
+    private TaskRepository mRepository;
+
+    /**
+     * Member variable for the tasks of the shown list that are ticked for deletion
+     */
+    private SelectionModel mSelection = new SelectionModel();
+
+    /**
+     * Member variable for the last delete or completion, while it can still be undone, null if
+     * there is none
+     */
+    private PendingRemoval mPendingRemoval;
+
+    /**
+     * Member variable for the preferences that hold the position of the last import
+     */
+    private final SharedPreferences mImportPreferences;
+
+    /**
+     * Member variable for the format of the export the file is created for
+     */
+    private int mExportFormat;
+
+    /**
+     * Member variable for the file of the running export
+     */
+    private Uri mExportUri;
+
+    /**
+     * Member variable for the running import, null if there is none
+     */
+    private TaskImport mImport;
+
+    /**
+     * Member variable for the running export, null if there is none
+     */
+    private TaskExport mExport;
+
+    /**
+     * Member variable for the title of the running import or export, 0 if there is none
+     */
+    private int mTransferTitle;
+
+    /**
+     * Member variable for the last progress message of the running import or export
+     */
+    private String mTransferMessage;
+
+    /**
+     * Member variable for the listener of the import or export, null while no list is shown
+     */
+    private TransferListener mTransferListener;
+
+    /**
+     * Constructor for the view model, called by the ViewModelProvider.
+     *
+     * @param application The application.
+     */
+    public TaskListViewModel(@NonNull Application application) {
+        super(application);
+        mListIndex = TaskStores.createListIndex(application);
+        mImportPreferences = application.getSharedPreferences(IMPORT_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the repository of the given list. The repository of another list is closed and
+     * replaced, since only one list is shown at a time.
+     *
+     * @param listId The id of the list.
+     * @param filter The filter of the list, only used if the repository is created now.
+     * @return The repository of the list.
+     */
+    public TaskRepository getRepository(String listId, TaskFilter filter) {
+        if (mRepository != null && mRepository.getListId().equals(listId)) {
+            return mRepository;
+        }
+
+        if (mRepository != null) {
+            // A removal or a transfer belongs to the list it was made in
+            commitRemoval();
+            stopTransfer();
+            mRepository.close();
+        }
+        mRepository = new TaskRepository(getApplication(), listId, filter);
+        mSelection = new SelectionModel();
+        if (mAttached) {
+            mRepository.attach();
+        }
+        return mRepository;
+    }
+
+    /**
+     * Returns the ticked tasks of the shown list, which start over when another list is shown.
+     * The selection is only kept in memory, so it survives a rotation without being copied.
+     */
+    public SelectionModel getSelection() {
+        return mSelection;
+    }
+
+    /**
+     * Returns the index of all the lists.
+     */
+    public TaskListIndex getListIndex() {
+        return mListIndex;
+    }
+
+    /**
+     * Returns the lists of the index that are known so far, the default list first.
+     */
+    public List<TaskList> getLists() {
+        return mLists;
+    }
+
+    /**
+     * Sets the listener of the lists, which receives the known lists right away.
+     *
+     * @param listener The listener, or null to clear it.
+     */
+    public void setListsListener(TaskListIndex.ListsListener listener) {
+        mListsListener = listener;
+        if (listener != null && !mLists.isEmpty()) {
+            listener.onListsChanged(mLists);
+        }
+    }
+
+    /**
+     * Starts a removal that can be undone for a few seconds, and is only queued to be written
+     * then, so an undone removal is never written. The removal before it is written right away.
+     * The timer runs in the view model, so neither a rotation nor a trip to the background ends
+     * the undo early.
+     *
+     * @param removal The removal, whose tasks were already taken out of the list.
+     */
+    public void startRemoval(PendingRemoval removal) {
+        commitRemoval();
+        removal.mDeadline = SystemClock.uptimeMillis() + UNDO_REMOVAL_MILLIS;
+        mPendingRemoval = removal;
+        mHandler.postDelayed(mCommitRemoval, UNDO_REMOVAL_MILLIS);
+    }
+
+    /**
+     * Returns the removal that can still be undone, or null if there is none.
+     */
+    public PendingRemoval getPendingRemoval() {
+        return mPendingRemoval;
+    }
+
+    /**
+     * Queues the pending removal to be written, it can no longer be undone.
+     */
+    public void commitRemoval() {
+        mHandler.removeCallbacks(mCommitRemoval);
+        PendingRemoval removal = mPendingRemoval;
+        if (removal == null) {
+            return;
+        }
+        mPendingRemoval = null;
+        if (removal.mComplete) {
+            mRepository.getWriteQueue().complete(removal.mTasks);
+        } else {
+            mRepository.getWriteQueue().delete(removal.mTasks);
+        }
+    }
+
+    /**
+     * Puts the tasks of a removal back where they were shown, unless it was written already.
+     *
+     * @param removal The removal to be undone.
+     * @return True if the removal was undone.
+     */
+    public boolean undoRemoval(PendingRemoval removal) {
+        if (mPendingRemoval != removal) {
+            return false;
+        }
+        mHandler.removeCallbacks(mCommitRemoval);
+        mPendingRemoval = null;
+        for (TaskEntry task : removal.mShownTasks) {
+            mRepository.getTaskCache().put(task);
+        }
+        for (TaskEntry task : removal.mIndexedTasks) {
+            mRepository.getSearchIndex().put(task);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the listener of the import or export, which receives the progress of a running one
+     * right away.
+     *
+     * @param listener The listener, or null to clear it.
+     */
+    public void setTransferListener(TransferListener listener) {
+        mTransferListener = listener;
+        if (listener != null && mTransferTitle != 0) {
+            listener.onTransferProgress(mTransferMessage);
+        }
+    }
+
+    /**
+     * Returns the title of the running import or export, 0 if there is none.
+     */
+    public int getTransferTitle() {
+        return mTransferTitle;
+    }
+
+    /**
+     * Sets the format of the next export, which is chosen before its file is created.
+     *
+     * @param format One of the TaskFileFormat.FORMAT_ constants.
+     */
+    public void setExportFormat(int format) {
+        mExportFormat = format;
+    }
+
+    /**
+     * Imports the tasks of a file the user picked into the shown list. If the last import of the
+     * same file did not finish, the import goes on after the tasks that were written then.
+     *
+     * @param uri The file, or null if the user did not pick one.
+     */
+    public void importTasks(Uri uri) {
+        if (uri == null || mTransferTitle != 0) {
+            return;
+        }
+
+        // An import is only resumed into the list it was started in
+        String importId = mRepository.getListId() + " " + uri;
+        long position = 0;
+        if (importId.equals(mImportPreferences.getString(KEY_IMPORT_URI, null))) {
+            position = mImportPreferences.getLong(KEY_IMPORT_POSITION, 0);
+        }
+        mImportPreferences.edit()
+                .putString(KEY_IMPORT_URI, importId)
+                .putLong(KEY_IMPORT_POSITION, position)
+                .apply();
+
+        AssetFileDescriptor file;
+        InputStream in;
+        try {
+            file = getApplication().getContentResolver().openAssetFileDescriptor(uri, "r");
+            in = file == null ? null : file.createInputStream();
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening the imported file", e);
+            in = null;
+            file = null;
+        }
+        if (in == null) {
+            endTransfer(getString(R.string.import_failed));
+            return;
+        }
+
+        // The length is not known for every file, the progress is then shown without a percentage
+        mImport = new TaskImport(mRepository.getTaskStore(), in, file.getLength(), position,
+                new TaskImport.Listener() {
+                    @Override
+                    public void onImportProgress(long position, int percent) {
+                        mImportPreferences.edit().putLong(KEY_IMPORT_POSITION, position).apply();
+                        showProgress(percent == -1
+                                ? getString(R.string.import_progress, position)
+                                : getString(R.string.import_progress_percent, position, percent));
+                    }
+
+                    @Override
+                    public void onImportComplete(int imported, int skipped) {
+                        mImportPreferences.edit().clear().apply();
+                        endTransfer(getString(R.string.import_complete, imported, skipped));
+                    }
+
+                    @Override
+                    public void onImportFailed(Exception exception) {
+                        endTransfer(getString(R.string.import_failed));
+                    }
+                });
+
+        mTransferTitle = R.string.import_title;
+        showProgress(position > 0 ? getString(R.string.import_resumed, position)
+                : getString(R.string.transfer_started));
+        mImport.start();
+    }
+
+    /**
+     * Exports all the tasks of the shown list to a file the user created, in the format chosen
+     * before.
+     *
+     * @param uri The file, or null if the user did not create one.
+     */
+    public void exportTasks(Uri uri) {
+        if (uri == null || mTransferTitle != 0) {
+            return;
+        }
+
+        OutputStream out;
+        try {
+            // The file is truncated in case the user picked an existing one
+            out = getApplication().getContentResolver().openOutputStream(uri, "wt");
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening the exported file", e);
+            endTransfer(getString(R.string.export_failed));
+            return;
+        }
+
+        mExportUri = uri;
+        mExport = new TaskExport(mRepository.getTaskStore(), out, mExportFormat, new TaskExport.Listener() {
+            @Override
+            public void onExportProgress(int exported) {
+                showProgress(getString(R.string.export_progress, exported));
+            }
+
+            @Override
+            public void onExportComplete(int exported) {
+                endTransfer(getString(R.string.export_complete, exported));
+            }
+
+            @Override
+            public void onExportFailed(Exception exception) {
+                deleteDocument(uri);
+                endTransfer(getString(R.string.export_failed));
+            }
+        });
+
+        mTransferTitle = R.string.export_title;
+        showProgress(getString(R.string.transfer_started));
+        mExport.start();
+    }
+
+    /**
+     * Stops the running import or export when the user cancels it. The position of an import is
+     * saved, so it can be resumed by picking the same file, the file of an export is deleted.
+     */
+    public void cancelTransfer() {
+        int title = mTransferTitle;
+        if (title == 0) {
+            return;
+        }
+        stopTransfer();
+        endTransfer(getString(title == R.string.import_title
+                ? R.string.import_cancelled : R.string.export_cancelled));
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        mHandler.removeCallbacks(mDetach);
+        if (mStartCount++ == 0) {
+            attach();
+        }
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        if (--mStartCount == 0) {
+            mHandler.postDelayed(mDetach, DETACH_DELAY_MILLIS);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        mHandler.removeCallbacks(mDetach);
+        detach();
+        if (mRepository != null) {
+            commitRemoval();
+            stopTransfer();
+            mRepository.close();
+        }
+        mListsListener = null;
+        mTransferListener = null;
+    }
+
+    /**
+     * Helper method to start observing the lists and syncing the shown list.
+     */
+    private void attach() {
+        if (mAttached) {
+            return;
+        }
+        mAttached = true;
+
+        mListsRegistration = mListIndex.observeLists(this::onListsChanged);
+        if (mRepository != null) {
+            mRepository.attach();
+        }
+    }
+
+    /**
+     * Helper method to stop observing the lists and syncing the shown list.
+     */
+    private void detach() {
+        if (!mAttached) {
+            return;
+        }
+        mAttached = false;
+
+        mListsRegistration.remove();
+        mListsRegistration = null;
+        if (mRepository != null) {
+            mRepository.detach();
+        }
+    }
+
+    /**
+     * Helper method to stop the running import or export without telling anyone, the file of an
+     * export is deleted.
+     */
+    private void stopTransfer() {
+        if (mImport != null) {
+            mImport.cancel();
+        }
+        if (mExport != null) {
+            mExport.cancel();
+            deleteDocument(mExportUri);
+        }
+        mImport = null;
+        mExport = null;
+        mTransferTitle = 0;
+    }
+
+    /**
+     * Helper method to keep the progress of the import or export and pass it on.
+     */
+    private void showProgress(String message) {
+        mTransferMessage = message;
+        if (mTransferListener != null) {
+            mTransferListener.onTransferProgress(message);
+        }
+    }
+
+    /**
+     * Helper method to tell the user how the import or export ended. Without a list shown, like
+     * while the app is in the background, the message is shown as a toast.
+     */
+    private void endTransfer(String message) {
+        mImport = null;
+        mExport = null;
+        mTransferTitle = 0;
+        mTransferMessage = null;
+        if (mTransferListener != null) {
+            mTransferListener.onTransferEnded(message);
+        } else {
+            Toast.makeText(getApplication(), message, Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Helper method to delete the file of an export that did not finish.
+     */
+    private void deleteDocument(Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(getApplication().getContentResolver(), uri);
+        } catch (Exception e) {
+            // The partial file is left, the user can delete it
+            Log.e(TAG, "Error deleting the exported file", e);
+        }
+    }
+
+    /**
+     * Helper method to return a string of the app.
+     */
+    private String getString(int resId, Object... args) {
+        return getApplication().getString(resId, args);
+    }
+
+    /**
+     * Helper method to keep the lists of the index and pass them on.
+     */
+    private void onListsChanged(List<TaskList> lists) {
+        mLists = lists;
+        if (mListsListener != null) {
+            mListsListener.onListsChanged(lists);
+        }
+    }
+
+    /**
+     * Interface to show the progress of an import or export, and how it ended
+     */
+    public interface TransferListener {
+        void onTransferProgress(String message);
+
+        void onTransferEnded(String message);
+    }
+
+    /**
+     * A delete or completion that can still be undone.
+     */
+    static class PendingRemoval {
+
+        /**
+         * The removed tasks
+         */
+        final List<TaskEntry> mTasks;
+
+        /**
+         * True if the tasks are completed, false if they are deleted
+         */
+        final boolean mComplete;
+
+        /**
+         * The removed tasks that were in the list, only these are put back by an undo
+         */
+        final List<TaskEntry> mShownTasks = new ArrayList<>();
+
+        /**
+         * The removed tasks that were in the search index
+         */
+        final List<TaskEntry> mIndexedTasks = new ArrayList<>();
+
+        /**
+         * The uptime at which the removal is written
+         */
+        long mDeadline;
+
+        PendingRemoval(List<TaskEntry> tasks, boolean complete) {
+            mTasks = tasks;
+            mComplete = complete;
+        }
+
+        /**
+         * Returns the time left to undo the removal.
+         */
+        long remainingMillis() {
+            return Math.max(0, mDeadline - SystemClock.uptimeMillis());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the changes combined by a {@link WriteCoalescer} before they are written.
+ */
+public class CoalescingStats {
+
+    /**
+     * Member variable for the number of changes made in the app
+     */
+    private final AtomicLong mReceived = new AtomicLong();
+
+    /**
+     * Member variable for the number of changes left to be written after combining them
+     */
+    private final AtomicLong mWritten = new AtomicLong();
+
+    /**
+     * Member variable for the number of times the combined changes were handed on
+     */
+    private final AtomicLong mFlushes = new AtomicLong();
+
+    void recordReceived() {
+        mReceived.incrementAndGet();
+    }
+
+    void recordFlush(int written) {
+        mWritten.addAndGet(written);
+        mFlushes.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of changes made in the app.
+     */
+    public long getReceived() {
+        return mReceived.get();
+    }
+
+    /**
+     * Returns the number of changes that were written after combining them.
+     */
+    public long getWritten() {
+        return mWritten.get();
+    }
+
+    /**
+     * Returns the number of times the combined changes were handed on.
+     */
+    public long getFlushes() {
+        return mFlushes.get();
+    }
+
+    /**
+     * Returns the number of writes that were saved, because a later change of the same task
+     * replaced them or a delete cancelled them. Changes that are still waiting are not counted.
+     */
+    public long getSaved() {
+        return mReceived.get() - mWritten.get();
+    }
+}
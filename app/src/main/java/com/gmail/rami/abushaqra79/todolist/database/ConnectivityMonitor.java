@@ -0,0 +1,201 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Watches the network of the device, so the app can react when it goes offline or comes back,
+ * instead of checking once at startup. The state is reported on the main thread, once when the
+ * monitor is started and then on every change.
+ */
+public class ConnectivityMonitor {
+
+    /**
+     * State when there is no network
+     */
+    public static final int NETWORK_NONE = 0;
+
+    /**
+     * State when the network is metered, slow, or not confirmed to reach the internet
+     */
+    public static final int NETWORK_CONSTRAINED = 1;
+
+    /**
+     * State when the network is unmetered and working
+     */
+    public static final int NETWORK_UNCONSTRAINED = 2;
+
+    /**
+     * Download bandwidth below which a network is treated as poor
+     */
+    private static final int POOR_BANDWIDTH_KBPS = 150;
+
+    /**
+     * Member variable for the system service that reports the networks
+     */
+    private final ConnectivityManager mConnectivityManager;
+
+    /**
+     * Member variable for the listener of the network state
+     */
+    private final Listener mListener;
+
+    /**
+     * Member variable for delivering the state on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for the callback of the system, called on a background thread
+     */
+    private final ConnectivityManager.NetworkCallback mCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            // Older versions do not always report the capabilities of a new network
+            post(stateOf(network));
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            // Before the default network could be watched, the change may be of another network
+            post(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? stateOf(capabilities)
+                    : stateOf(mConnectivityManager.getActiveNetwork()));
+        }
+
+        @Override
+        public void onLost(Network network) {
+            // Another network may have taken over already
+            Network active = mConnectivityManager.getActiveNetwork();
+            post(network.equals(active) ? NETWORK_NONE : stateOf(active));
+        }
+    };
+
+    /**
+     * Member variable for the last reported state, only used on the main thread
+     */
+    private int mState = -1;
+
+    /**
+     * True while the callback is registered
+     */
+    private boolean mStarted;
+
+    /**
+     * Constructor for the monitor.
+     *
+     * @param context The current Context
+     * @param listener The listener of the network state.
+     */
+    public ConnectivityMonitor(Context context, Listener listener) {
+        mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mListener = listener;
+    }
+
+    /**
+     * Starts watching the network, and reports the current state right away.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+
+        deliver(stateOf(mConnectivityManager.getActiveNetwork()));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mConnectivityManager.registerDefaultNetworkCallback(mCallback);
+        } else {
+            mConnectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build(), mCallback);
+        }
+    }
+
+    /**
+     * Stops watching the network, when the app is not visible.
+     */
+    public void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+
+        mConnectivityManager.unregisterNetworkCallback(mCallback);
+        mMainHandler.removeCallbacksAndMessages(null);
+        // The network may change meanwhile, so the state is reported again on the next start
+        mState = -1;
+    }
+
+    /**
+     * Returns the last reported state, one of the NETWORK_ constants.
+     */
+    public int getState() {
+        return mState == -1 ? NETWORK_NONE : mState;
+    }
+
+    /**
+     * Helper method to find the state of a network.
+     *
+     * @param network The network, or null if there is no network.
+     */
+    private int stateOf(Network network) {
+        return network == null ? NETWORK_NONE : stateOf(mConnectivityManager.getNetworkCapabilities(network));
+    }
+
+    /**
+     * Helper method to find the state of a network from its capabilities.
+     *
+     * @param capabilities The capabilities of the network, or null if there is no network.
+     */
+    private static int stateOf(NetworkCapabilities capabilities) {
+        if (capabilities == null
+                || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+            return NETWORK_NONE;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                && !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_SUSPENDED)) {
+            return NETWORK_NONE;
+        }
+
+        boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        // A bandwidth of 0 means that it is not known
+        int bandwidth = capabilities.getLinkDownstreamBandwidthKbps();
+        boolean poor = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)
+                || (bandwidth > 0 && bandwidth < POOR_BANDWIDTH_KBPS);
+        return metered || poor ? NETWORK_CONSTRAINED : NETWORK_UNCONSTRAINED;
+    }
+
+    /**
+     * Helper method to deliver a state from the callback thread on the main thread.
+     */
+    private void post(int state) {
+        mMainHandler.post(() -> {
+            if (mStarted) {
+                deliver(state);
+            }
+        });
+    }
+
+    /**
+     * Helper method to tell the listener about a state that differs from the last one.
+     */
+    private void deliver(int state) {
+        if (state == mState) {
+            return;
+        }
+        mState = state;
+        mListener.onNetworkChanged(state);
+    }
+
+    /**
+     * Interface to get notified when the state of the network changes
+     */
+    public interface Listener {
+        void onNetworkChanged(int state);
+    }
+}
@@ -0,0 +1,372 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A {@link TaskStore} that only keeps the tasks in memory, for tests and benchmarks that run on a
+ * plain JVM. The tasks are indexed by key and by priority, so pages are read the same way the
+ * indexed queries of the other stores read them. Every method completes before it returns, and
+ * calls its listener on the calling thread.
+ */
+public class InMemoryTaskStore implements TaskStore {
+
+    /**
+     * Member variable for the source of the change times
+     */
+    private final TaskIdGenerator.Clock mClock;
+
+    /**
+     * Member variable for the generator of the keys of new tasks
+     */
+    private final TaskIdGenerator mIdGenerator;
+
+    /**
+     * Member variable for the tasks in key order
+     */
+    private final NavigableMap<String, TaskEntry> mTasksByKey = new TreeMap<>(TaskCache::compareKeys);
+
+    /**
+     * Member variable for the tasks in priority order, then key order
+     */
+    private final NavigableSet<TaskEntry> mTasksByPriority = new TreeSet<>(TaskFilter.SORTED_BY_PRIORITY);
+
+    /**
+     * Member variable for the completed tasks in key order
+     */
+    private final NavigableMap<String, TaskEntry> mArchive = new TreeMap<>(TaskCache::compareKeys);
+
+    /**
+     * Member variable for the syncs that receive every change
+     */
+    private final List<Sync> mSyncs = new ArrayList<>();
+
+    /**
+     * Member variable for the change time of the last change
+     */
+    private long mLastChangeTime;
+
+    /**
+     * Member variable for the counters of the versioned updates
+     */
+    private final TransactionStats mTransactionStats = new TransactionStats();
+
+    /**
+     * Constructor for a store that uses the system time.
+     */
+    public InMemoryTaskStore() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for a store with the given source of time.
+     *
+     * @param clock The source of the change times and of the times in the keys.
+     */
+    public InMemoryTaskStore(TaskIdGenerator.Clock clock) {
+        mClock = clock;
+        mIdGenerator = new TaskIdGenerator(clock, new SecureRandom());
+    }
+
+    /**
+     * The tasks are only in this process.
+     */
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public String newTaskKey() {
+        return mIdGenerator.nextKey();
+    }
+
+    @Override
+    public void addTask(TaskEntry task, WriteListener listener) {
+        store(task);
+        listener.onWriteComplete();
+    }
+
+    @Override
+    public void updateSelectedTask(TaskEntry base, TaskEntry edited, WriteListener listener) {
+        TaskEntry current = mTasksByKey.get(edited.getKey());
+        if (current == null) {
+            listener.onWriteFailed(new TaskConflictException("Task was deleted"));
+            return;
+        }
+
+        TaskEntry merged = edited;
+        if (current.getVersion() != base.getVersion()) {
+            mTransactionStats.recordConflict();
+            merged = TaskMerge.mergeChanges(base, edited, current);
+            if (merged == null) {
+                mTransactionStats.recordRejected();
+                listener.onWriteFailed(new TaskConflictException("Task was changed on another device"));
+                return;
+            }
+        }
+
+        store(new TaskEntry(current.getKey(), merged.getDescription(), merged.getPriority(),
+                current.getVersion() + 1));
+        listener.onWriteComplete();
+    }
+
+    @Override
+    public TransactionStats getTransactionStats() {
+        return mTransactionStats;
+    }
+
+    @Override
+    public void commitBatch(TaskBatch batch, WriteListener listener) {
+        batch.accept(new TaskBatch.Visitor() {
+            @Override
+            public void onDelete(String key) {
+                delete(key);
+            }
+
+            @Override
+            public void onComplete(String key, Map<String, Object> archived) {
+                mArchive.put(key, TaskBatch.toTask(key, archived));
+                delete(key);
+            }
+
+            @Override
+            public void onReplace(String key, Map<String, Object> values) {
+                store(TaskBatch.toTask(key, values));
+            }
+        });
+        listener.onWriteComplete();
+    }
+
+    @Override
+    public void readSelectedTask(String key, TaskListener listener) {
+        listener.onTaskRead(mTasksByKey.get(key));
+    }
+
+    @Override
+    public TaskPager.PageSource pages(TaskFilter filter) {
+        return new TaskPager.PageSource() {
+            @Override
+            public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+                Iterator<TaskEntry> tasks;
+                if (!filter.isSortedByPriority()) {
+                    tasks = (previousPage == null ? mTasksByKey
+                            : mTasksByKey.tailMap(previousPage.getLastKey(), false)).values().iterator();
+                } else if (previousPage == null) {
+                    tasks = mTasksByPriority.tailSet(firstOfPriority(filter), true).iterator();
+                } else {
+                    tasks = mTasksByPriority.tailSet(cursor(previousPage.getLastKey(),
+                            previousPage.getLastPriority()), false).iterator();
+                }
+                callback.onPageLoaded(readPage(tasks, filter, pageSize, false));
+            }
+
+            @Override
+            public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+                Iterator<TaskEntry> tasks;
+                if (!filter.isSortedByPriority()) {
+                    tasks = mTasksByKey.headMap(nextPage.getFirstKey(), false).descendingMap()
+                            .values().iterator();
+                } else {
+                    tasks = mTasksByPriority.headSet(cursor(nextPage.getFirstKey(),
+                            nextPage.getFirstPriority()), false).descendingIterator();
+                }
+                callback.onPageLoaded(readPage(tasks, filter, pageSize, true));
+            }
+        };
+    }
+
+    @Override
+    public TaskPager.PageSource archivedPages() {
+        return new TaskPager.PageSource() {
+            @Override
+            public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+                Iterator<TaskEntry> tasks = (previousPage == null ? mArchive
+                        : mArchive.tailMap(previousPage.getLastKey(), false)).values().iterator();
+                callback.onPageLoaded(readPage(tasks, TaskFilter.ALL, pageSize, false));
+            }
+
+            @Override
+            public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+                Iterator<TaskEntry> tasks = mArchive.headMap(nextPage.getFirstKey(), false)
+                        .descendingMap().values().iterator();
+                callback.onPageLoaded(readPage(tasks, TaskFilter.ALL, pageSize, true));
+            }
+        };
+    }
+
+    /**
+     * Applies the tasks that changed after the sync mark to the cache, then every change made
+     * from now on. Deleted tasks leave nothing behind in memory, so only deletes made while the
+     * sync is running reach the cache.
+     */
+    @Override
+    public Registration syncTasks(TaskCache cache, long syncMark, SyncListener listener) {
+        for (TaskEntry task : mTasksByKey.values()) {
+            if (task.getUpdatedAt() > syncMark) {
+                cache.put(task);
+                listener.onTaskChanged(task);
+            }
+        }
+        listener.onInitialSyncComplete();
+        if (mLastChangeTime > syncMark) {
+            listener.onSyncMarkChanged(mLastChangeTime);
+        }
+
+        Sync sync = new Sync(cache, listener);
+        mSyncs.add(sync);
+        return () -> mSyncs.remove(sync);
+    }
+
+    /**
+     * The store is always available.
+     */
+    @Override
+    public Registration observeConnection(ConnectionListener listener) {
+        listener.onConnectionChanged(true);
+        return () -> {
+        };
+    }
+
+    @Override
+    public void readServerTime(ServerTimeListener listener) {
+        listener.onServerTime(mClock.currentTimeMillis());
+    }
+
+    /**
+     * Returns the number of stored tasks.
+     */
+    public int size() {
+        return mTasksByKey.size();
+    }
+
+    /**
+     * Helper method to store a task with a new change time and tell the syncs about it.
+     */
+    private void store(TaskEntry task) {
+        long changeTime = nextChangeTime();
+        TaskEntry stored = new TaskEntry(task.getKey(), task.getDescription(), task.getPriority(),
+                task.getVersion(), changeTime);
+
+        TaskEntry previous = mTasksByKey.put(stored.getKey(), stored);
+        if (previous != null) {
+            mTasksByPriority.remove(previous);
+        }
+        mTasksByPriority.add(stored);
+
+        for (Sync sync : new ArrayList<>(mSyncs)) {
+            sync.mCache.put(stored);
+            sync.mListener.onTaskChanged(stored);
+            sync.mListener.onSyncMarkChanged(changeTime);
+        }
+    }
+
+    /**
+     * Helper method to delete a task and tell the syncs about it.
+     */
+    private void delete(String key) {
+        TaskEntry previous = mTasksByKey.remove(key);
+        if (previous == null) {
+            return;
+        }
+        mTasksByPriority.remove(previous);
+
+        long changeTime = nextChangeTime();
+        for (Sync sync : new ArrayList<>(mSyncs)) {
+            sync.mCache.remove(key);
+            sync.mListener.onTaskDeleted(key);
+            sync.mListener.onSyncMarkChanged(changeTime);
+        }
+    }
+
+    /**
+     * Helper method to return a change time that is later than every earlier one, even when the
+     * clock did not move.
+     */
+    private long nextChangeTime() {
+        mLastChangeTime = Math.max(mLastChangeTime + 1, mClock.currentTimeMillis());
+        return mLastChangeTime;
+    }
+
+    /**
+     * Helper method to read a page from tasks in the order of the filter.
+     *
+     * @param tasks The tasks from the cursor on, in the direction the page is read.
+     * @param reversed True if the page is read backwards, it is then delivered in list order.
+     */
+    private static TaskPage readPage(Iterator<TaskEntry> tasks, TaskFilter filter, int pageSize,
+                                     boolean reversed) {
+        List<TaskEntry> page = new ArrayList<>(pageSize);
+        boolean last = true;
+        while (tasks.hasNext()) {
+            TaskEntry task = tasks.next();
+            if (!filter.matches(task)) {
+                // The tasks of one priority are next to each other, so the rest do not match
+                break;
+            }
+            if (page.size() == pageSize) {
+                last = false;
+                break;
+            }
+            page.add(task);
+        }
+
+        if (page.isEmpty()) {
+            return new TaskPage(page, null, null, true);
+        }
+        if (reversed) {
+            Collections.reverse(page);
+        }
+        TaskEntry first = page.get(0);
+        TaskEntry end = page.get(page.size() - 1);
+        return new TaskPage(page, first.getKey(), end.getKey(), first.getPriority(),
+                end.getPriority(), last);
+    }
+
+    /**
+     * Helper method to build the position of a page end in the priority order.
+     */
+    private static TaskEntry cursor(String key, int priority) {
+        return new TaskEntry(key, "", priority);
+    }
+
+    /**
+     * Helper method to build the position before the first task the filter shows. Key "0" sorts
+     * before every other key.
+     */
+    private static TaskEntry firstOfPriority(TaskFilter filter) {
+        int priority = filter.getPriority() == TaskFilter.ANY_PRIORITY ? Integer.MIN_VALUE : filter.getPriority();
+        return cursor("0", priority);
+    }
+
+    /**
+     * A sync that receives every change of the store.
+     */
+    private static class Sync {
+
+        /**
+         * Member variable for the cache that receives the changes
+         */
+        private final TaskCache mCache;
+
+        /**
+         * Member variable for the listener of the sync
+         */
+        private final SyncListener mListener;
+
+        Sync(TaskCache cache, SyncListener listener) {
+            mCache = cache;
+            mListener = listener;
+        }
+    }
+}
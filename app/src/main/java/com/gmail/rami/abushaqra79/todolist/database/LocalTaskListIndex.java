@@ -0,0 +1,84 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@link TaskListIndex} of the stores that keep the tasks on this device. The names of the
+ * lists are kept in a preferences file, keyed by their ids.
+ */
+public class LocalTaskListIndex implements TaskListIndex {
+
+    /**
+     * Name of the preferences file that holds the lists
+     */
+    private static final String LISTS_PREFERENCES = "lists";
+
+    /**
+     * Generator of the ids of new lists
+     */
+    private static final TaskIdGenerator ID_GENERATOR = new TaskIdGenerator();
+
+    /**
+     * Member variable for the preferences that hold the lists
+     */
+    private final SharedPreferences mPreferences;
+
+    /**
+     * Member variable for the listeners of the lists, only used on the main thread
+     */
+    private final List<ListsListener> mListeners = new ArrayList<>();
+
+    /**
+     * Constructor for the index.
+     *
+     * @param context The current Context
+     */
+    public LocalTaskListIndex(Context context) {
+        mPreferences = context.getApplicationContext()
+                .getSharedPreferences(LISTS_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public String newListId() {
+        return ID_GENERATOR.nextKey();
+    }
+
+    @Override
+    public void addList(TaskList list, TaskStore.WriteListener listener) {
+        mPreferences.edit().putString(list.getId(), list.getName()).apply();
+        listener.onWriteComplete();
+
+        List<TaskList> lists = readLists();
+        for (ListsListener listsListener : new ArrayList<>(mListeners)) {
+            listsListener.onListsChanged(lists);
+        }
+    }
+
+    @Override
+    public TaskStore.Registration observeLists(ListsListener listener) {
+        mListeners.add(listener);
+        listener.onListsChanged(readLists());
+        return () -> mListeners.remove(listener);
+    }
+
+    /**
+     * Helper method to read the lists in the order of their ids, which is the order they were
+     * added in.
+     */
+    private List<TaskList> readLists() {
+        List<TaskList> lists = new ArrayList<>();
+        lists.add(new TaskList(DEFAULT_LIST_ID, ""));
+        for (Map.Entry<String, ?> entry : new TreeMap<>(mPreferences.getAll()).entrySet()) {
+            lists.add(new TaskList(entry.getKey(), String.valueOf(entry.getValue())));
+        }
+        return lists;
+    }
+}
@@ -0,0 +1,509 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.gmail.rami.abushaqra79.todolist.database.TaskContract.PendingWrites;
+import com.gmail.rami.abushaqra79.todolist.database.TaskContract.Tasks;
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A local SQLite copy of the tasks and the queue of changes that are not written to the remote
+ * database yet. The saved tasks are read in pages of key order. All disk work runs on a single
+ * background thread, in the order it was asked for, and results are delivered on the main thread.
+ */
+public class LocalTaskStore {
+
+    /**
+     * Background thread for all the disk work, shared so there is only one writer
+     */
+    static final Executor DISK_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Name of the preferences file that holds the state of the sync
+     */
+    private static final String SYNC_PREFERENCES = "sync";
+
+    /**
+     * Preference key of the newest change time that is saved in the local copy
+     */
+    private static final String KEY_SYNC_MARK = "sync_mark";
+
+    /**
+     * Preference key of the last key copied into a local copy that is not complete yet, in key
+     * order. There is none once every task was copied.
+     */
+    private static final String KEY_COPIED_KEY = "copied_key";
+
+    /**
+     * Member variable for the database helper
+     */
+    private final TaskDbHelper mDbHelper;
+
+    /**
+     * Member variable for the preferences that hold the state of the sync
+     */
+    private final SharedPreferences mSyncPreferences;
+
+    /**
+     * Member variable for delivering results on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for the task changes that are not saved yet, a null value is a delete.
+     * Guarded by itself.
+     */
+    private final Map<String, TaskEntry> mUnsavedTasks = new LinkedHashMap<>();
+
+    /**
+     * Constructor for the store of a list. Every list has its own database and sync mark, the
+     * default list keeps the ones that were used before there were several lists.
+     *
+     * @param context The current Context
+     * @param listId The id of the list, see {@link TaskListIndex}.
+     */
+    public LocalTaskStore(Context context, String listId) {
+        boolean defaultList = listId.equals(TaskListIndex.DEFAULT_LIST_ID);
+        mDbHelper = defaultList ? new TaskDbHelper(context)
+                : new TaskDbHelper(context, "tasks_" + listId + ".db");
+        mSyncPreferences = context.getApplicationContext().getSharedPreferences(
+                defaultList ? SYNC_PREFERENCES : SYNC_PREFERENCES + "_" + listId, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns a source that reads the saved tasks that match the filter, a page at a time in
+     * the order of the filter.
+     *
+     * @param filter The filter of the list.
+     * @return The source of the pages.
+     */
+    public TaskPager.PageSource pages(TaskFilter filter) {
+        return pages(mDbHelper, mMainHandler, filter);
+    }
+
+    /**
+     * Returns a source that reads the tasks of a database that match the filter, a page at a
+     * time in the order of the filter.
+     *
+     * @param dbHelper The helper of the database.
+     * @param mainHandler The handler the pages are delivered on.
+     * @param filter The filter of the list.
+     * @return The source of the pages.
+     */
+    static TaskPager.PageSource pages(TaskDbHelper dbHelper, Handler mainHandler, TaskFilter filter) {
+        return pages(dbHelper, mainHandler, Tasks.TABLE_NAME, filter);
+    }
+
+    /**
+     * Returns a source that reads the tasks of a table with the columns of {@link Tasks} that
+     * match the filter, a page at a time in the order of the filter.
+     *
+     * @param dbHelper The helper of the database.
+     * @param mainHandler The handler the pages are delivered on.
+     * @param table The name of the table.
+     * @param filter The filter of the list.
+     * @return The source of the pages.
+     */
+    static TaskPager.PageSource pages(TaskDbHelper dbHelper, Handler mainHandler, String table,
+                                      TaskFilter filter) {
+        String orderColumns = filter.isSortedByPriority()
+                ? Tasks.COLUMN_PRIORITY + " %1$s, " + Tasks.COLUMN_KEY + " %1$s"
+                : Tasks.COLUMN_KEY + " %1$s";
+
+        return new TaskPager.PageSource() {
+            @Override
+            public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+                List<String> args = new ArrayList<>();
+                String selection = selection(filter, previousPage == null ? null : ">",
+                        previousPage == null ? null : previousPage.getLastKey(),
+                        previousPage == null ? 0 : previousPage.getLastPriority(), args);
+                loadPage(dbHelper, mainHandler, table, selection, args.toArray(new String[0]),
+                        String.format(orderColumns, "ASC"), pageSize, false, callback);
+            }
+
+            @Override
+            public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+                List<String> args = new ArrayList<>();
+                String selection = selection(filter, "<", nextPage.getFirstKey(), nextPage.getFirstPriority(), args);
+                loadPage(dbHelper, mainHandler, table, selection, args.toArray(new String[0]),
+                        String.format(orderColumns, "DESC"), pageSize, true, callback);
+            }
+        };
+    }
+
+    /**
+     * Deletes all the saved tasks, when the local copy is too old to be synced and is read again
+     * from the remote database. Pending writes are kept.
+     */
+    public void clearTasks() {
+        DISK_EXECUTOR.execute(() -> mDbHelper.getWritableDatabase().delete(Tasks.TABLE_NAME, null, null));
+    }
+
+    /**
+     * Loads the newest change time that is saved in the local copy.
+     *
+     * @param callback Receives the sync mark on the main thread, 0 if nothing was synced yet.
+     */
+    public void loadSyncMark(Callback<Long> callback) {
+        DISK_EXECUTOR.execute(() -> {
+            long syncMark = mSyncPreferences.getLong(KEY_SYNC_MARK, 0);
+            mMainHandler.post(() -> callback.onResult(syncMark));
+        });
+    }
+
+    /**
+     * Saves the newest change time that is in the local copy. It is written after the task
+     * changes that were made before it, so the mark never gets ahead of the saved tasks.
+     *
+     * @param syncMark The newest change time.
+     */
+    public void saveSyncMark(long syncMark) {
+        DISK_EXECUTOR.execute(() -> mSyncPreferences.edit().putLong(KEY_SYNC_MARK, syncMark).commit());
+    }
+
+    /**
+     * Loads how far the local copy was read from the remote database.
+     *
+     * @param callback Receives on the main thread the last key copied, an empty string if none
+     *                 was copied yet, or null if the local copy is complete.
+     */
+    public void loadCopiedKey(Callback<String> callback) {
+        DISK_EXECUTOR.execute(() -> {
+            String copiedKey = mSyncPreferences.getString(KEY_COPIED_KEY, null);
+            mMainHandler.post(() -> callback.onResult(copiedKey));
+        });
+    }
+
+    /**
+     * Saves how far the local copy was read from the remote database. Like the sync mark, it is
+     * written after the tasks that were saved before it.
+     *
+     * @param copiedKey The last key copied, an empty string if none was copied yet, or null once
+     *                  the local copy is complete.
+     */
+    public void saveCopiedKey(String copiedKey) {
+        DISK_EXECUTOR.execute(() -> {
+            if (copiedKey == null) {
+                mSyncPreferences.edit().remove(KEY_COPIED_KEY).commit();
+            } else {
+                mSyncPreferences.edit().putString(KEY_COPIED_KEY, copiedKey).commit();
+            }
+        });
+    }
+
+    /**
+     * Saves every task that is added to or changed in the given cache from now on.
+     *
+     * @param cache The cache to be copied.
+     */
+    public void mirror(TaskCache cache) {
+        cache.addListener(new TaskCache.Listener() {
+            @Override
+            public void onTaskInserted(int position, TaskEntry task) {
+                saveTask(task);
+            }
+
+            @Override
+            public void onTaskChanged(int position, TaskEntry task) {
+                saveTask(task);
+            }
+
+            @Override
+            public void onTaskRemoved(int position, TaskEntry task) {
+                // A task also leaves the cache when it stops matching the filter, so deletes
+                // are saved by the write queue and the sync instead
+            }
+
+            @Override
+            public void onTaskMoved(int fromPosition, int toPosition, TaskEntry task) {
+                saveTask(task);
+            }
+        });
+    }
+
+    /**
+     * Saves a task. Changes made close together are written in a single transaction.
+     *
+     * @param task The task to be saved.
+     */
+    public void saveTask(TaskEntry task) {
+        scheduleSave(task.getKey(), task);
+    }
+
+    /**
+     * Deletes a saved task. Changes made close together are written in a single transaction.
+     *
+     * @param key The key of the task to be deleted.
+     */
+    public void deleteTask(String key) {
+        scheduleSave(key, null);
+    }
+
+    /**
+     * Adds changes to the end of the queue of pending writes.
+     *
+     * @param writes The changes, in the order they were made.
+     * @param onSaved Runs on the main thread once the changes are saved.
+     */
+    public void enqueue(List<PendingWrite> writes, Runnable onSaved) {
+        DISK_EXECUTOR.execute(() -> {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (PendingWrite write : writes) {
+                    db.insert(PendingWrites.TABLE_NAME, null, toValues(write));
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            mMainHandler.post(onSaved);
+        });
+    }
+
+    /**
+     * Loads the oldest pending writes.
+     *
+     * @param limit The maximum number of writes to load.
+     * @param callback Receives the writes on the main thread, oldest first.
+     */
+    public void loadPendingWrites(int limit, Callback<List<PendingWrite>> callback) {
+        DISK_EXECUTOR.execute(() -> {
+            List<PendingWrite> writes = new ArrayList<>();
+            SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+            try (Cursor cursor = db.query(PendingWrites.TABLE_NAME, null, null, null, null, null,
+                    PendingWrites._ID, String.valueOf(limit))) {
+                while (cursor.moveToNext()) {
+                    writes.add(readPendingWrite(cursor));
+                }
+            }
+
+            mMainHandler.post(() -> callback.onResult(writes));
+        });
+    }
+
+    /**
+     * Removes pending writes that were written to the remote database, or dropped.
+     *
+     * @param writes The writes to be removed.
+     * @param onRemoved Runs on the main thread once the writes are removed.
+     */
+    public void removePendingWrites(List<PendingWrite> writes, Runnable onRemoved) {
+        DISK_EXECUTOR.execute(() -> {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (PendingWrite write : writes) {
+                    db.delete(PendingWrites.TABLE_NAME, PendingWrites._ID + " = ?",
+                            new String[]{String.valueOf(write.getId())});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            mMainHandler.post(onRemoved);
+        });
+    }
+
+    /**
+     * Helper method to build the selection of the tasks that match the filter and come before
+     * or after the given cursor in the order of the filter.
+     *
+     * @param comparison The SQL operator that compares a task with the cursor, or null for no cursor.
+     */
+    private static String selection(TaskFilter filter, String comparison, String key, int priority,
+                                    List<String> args) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.getPriority() != TaskFilter.ANY_PRIORITY) {
+            conditions.add(Tasks.COLUMN_PRIORITY + " = ?");
+            args.add(String.valueOf(filter.getPriority()));
+        }
+
+        if (comparison != null && filter.isSortedByPriority()) {
+            conditions.add("(" + Tasks.COLUMN_PRIORITY + " " + comparison + " ? OR ("
+                    + Tasks.COLUMN_PRIORITY + " = ? AND " + Tasks.COLUMN_KEY + " " + comparison + " ?))");
+            args.add(String.valueOf(priority));
+            args.add(String.valueOf(priority));
+            args.add(key);
+        } else if (comparison != null) {
+            conditions.add(Tasks.COLUMN_KEY + " " + comparison + " ?");
+            args.add(key);
+        }
+        return conditions.isEmpty() ? null : TextUtils.join(" AND ", conditions);
+    }
+
+    /**
+     * Helper method to read a page of saved tasks, which are always delivered in list order.
+     */
+    private static void loadPage(TaskDbHelper dbHelper, Handler mainHandler, String table,
+                                 String selection, String[] selectionArgs, String orderBy, int pageSize,
+                                 boolean reversed, TaskPager.PageCallback callback) {
+        DISK_EXECUTOR.execute(() -> {
+            List<TaskEntry> tasks = new ArrayList<>(pageSize);
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+            try (Cursor cursor = db.query(table, null, selection, selectionArgs, null, null, orderBy,
+                    String.valueOf(pageSize))) {
+                while (cursor.moveToNext()) {
+                    tasks.add(readTask(cursor));
+                }
+            }
+
+            if (reversed) {
+                Collections.reverse(tasks);
+            }
+            TaskPage page;
+            if (tasks.isEmpty()) {
+                page = new TaskPage(tasks, null, null, true);
+            } else {
+                TaskEntry first = tasks.get(0);
+                TaskEntry last = tasks.get(tasks.size() - 1);
+                page = new TaskPage(tasks, first.getKey(), last.getKey(), first.getPriority(),
+                        last.getPriority(), tasks.size() < pageSize);
+            }
+            mainHandler.post(() -> callback.onPageLoaded(page));
+        });
+    }
+
+    /**
+     * Helper method to read the task at the current row of a cursor over the tasks table.
+     */
+    static TaskEntry readTask(Cursor cursor) {
+        return new TaskEntry(cursor.getString(cursor.getColumnIndexOrThrow(Tasks.COLUMN_KEY)),
+                cursor.getString(cursor.getColumnIndexOrThrow(Tasks.COLUMN_DESCRIPTION)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(Tasks.COLUMN_PRIORITY)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(Tasks.COLUMN_VERSION)));
+    }
+
+    /**
+     * Helper method to convert a task to the values of its row in the tasks table.
+     */
+    static ContentValues toValues(TaskEntry task) {
+        ContentValues values = new ContentValues();
+        values.put(Tasks.COLUMN_KEY, task.getKey());
+        values.put(Tasks.COLUMN_DESCRIPTION, task.getDescription());
+        values.put(Tasks.COLUMN_PRIORITY, task.getPriority());
+        values.put(Tasks.COLUMN_VERSION, task.getVersion());
+        return values;
+    }
+
+    /**
+     * Helper method to collect a task change and schedule a single write for all the changes
+     * collected until the disk thread gets to it.
+     */
+    private void scheduleSave(String key, TaskEntry task) {
+        boolean schedule;
+        synchronized (mUnsavedTasks) {
+            schedule = mUnsavedTasks.isEmpty();
+            mUnsavedTasks.put(key, task);
+        }
+
+        if (schedule) {
+            DISK_EXECUTOR.execute(this::saveUnsavedTasks);
+        }
+    }
+
+    /**
+     * Helper method to write all the collected task changes in one transaction.
+     */
+    private void saveUnsavedTasks() {
+        Map<String, TaskEntry> tasks;
+        synchronized (mUnsavedTasks) {
+            tasks = new LinkedHashMap<>(mUnsavedTasks);
+            mUnsavedTasks.clear();
+        }
+
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, TaskEntry> entry : tasks.entrySet()) {
+                TaskEntry task = entry.getValue();
+                if (task == null) {
+                    db.delete(Tasks.TABLE_NAME, Tasks.COLUMN_KEY + " = ?", new String[]{entry.getKey()});
+                } else {
+                    db.insertWithOnConflict(Tasks.TABLE_NAME, null, toValues(task),
+                            SQLiteDatabase.CONFLICT_REPLACE);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Helper method to convert a pending write to the values of its row.
+     */
+    private static ContentValues toValues(PendingWrite write) {
+        ContentValues values = new ContentValues();
+        values.put(PendingWrites.COLUMN_TYPE, write.getType());
+        values.put(PendingWrites.COLUMN_KEY, write.getKey());
+
+        TaskEntry task = write.getTask();
+        if (task != null) {
+            values.put(PendingWrites.COLUMN_DESCRIPTION, task.getDescription());
+            values.put(PendingWrites.COLUMN_PRIORITY, task.getPriority());
+            values.put(PendingWrites.COLUMN_VERSION, task.getVersion());
+        }
+
+        TaskEntry base = write.getBase();
+        if (base != null) {
+            values.put(PendingWrites.COLUMN_BASE_DESCRIPTION, base.getDescription());
+            values.put(PendingWrites.COLUMN_BASE_PRIORITY, base.getPriority());
+            values.put(PendingWrites.COLUMN_BASE_VERSION, base.getVersion());
+        }
+        return values;
+    }
+
+    /**
+     * Helper method to read the pending write at the current row of the cursor.
+     */
+    private static PendingWrite readPendingWrite(Cursor cursor) {
+        long id = cursor.getLong(cursor.getColumnIndexOrThrow(PendingWrites._ID));
+        int type = cursor.getInt(cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_TYPE));
+        String key = cursor.getString(cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_KEY));
+
+        TaskEntry task = null;
+        int descriptionColumn = cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_DESCRIPTION);
+        if (!cursor.isNull(descriptionColumn)) {
+            task = new TaskEntry(key, cursor.getString(descriptionColumn),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_PRIORITY)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_VERSION)));
+        }
+
+        TaskEntry base = null;
+        int baseDescriptionColumn = cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_BASE_DESCRIPTION);
+        if (!cursor.isNull(baseDescriptionColumn)) {
+            base = new TaskEntry(key, cursor.getString(baseDescriptionColumn),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_BASE_PRIORITY)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(PendingWrites.COLUMN_BASE_VERSION)));
+        }
+
+        return new PendingWrite(id, type, key, task, base);
+    }
+
+    /**
+     * Interface to receive the result of a read
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+}
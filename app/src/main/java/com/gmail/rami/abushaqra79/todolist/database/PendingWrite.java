@@ -0,0 +1,122 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+/**
+ * A change of a task that is saved locally and not written to the remote database yet.
+ */
+public class PendingWrite {
+
+    /**
+     * Type of a new task
+     */
+    public static final int TYPE_ADD = 1;
+
+    /**
+     * Type of an update of an existing task
+     */
+    public static final int TYPE_UPDATE = 2;
+
+    /**
+     * Type of a deleted task
+     */
+    public static final int TYPE_DELETE = 3;
+
+    /**
+     * Type of a completed task, which is moved to the archive of its list
+     */
+    public static final int TYPE_COMPLETE = 4;
+
+    /**
+     * Member variable for the row ID in the local database, 0 if not saved yet
+     */
+    private final long mId;
+
+    /**
+     * Member variable for the type of the change
+     */
+    private final int mType;
+
+    /**
+     * Member variable for the key of the changed task
+     */
+    private final String mKey;
+
+    /**
+     * Member variable for the new values of the task, or the removed values for a delete or a
+     * completion
+     */
+    private final TaskEntry mTask;
+
+    /**
+     * Member variable for the values of the task before an update, null for other types
+     */
+    private final TaskEntry mBase;
+
+    /**
+     * Constructor that initialize the fields.
+     *
+     * @param id The row ID in the local database, 0 if not saved yet.
+     * @param type One of the TYPE_ constants.
+     * @param key The key of the changed task.
+     * @param task The new values of the task, or the removed values for a delete or a completion.
+     * @param base The values of the task before an update, null for other types.
+     */
+    public PendingWrite(long id, int type, String key, TaskEntry task, TaskEntry base) {
+        mId = id;
+        mType = type;
+        mKey = key;
+        mTask = task;
+        mBase = base;
+    }
+
+    /**
+     * Creates the change for a new task.
+     */
+    public static PendingWrite add(TaskEntry task) {
+        return new PendingWrite(0, TYPE_ADD, task.getKey(), task, null);
+    }
+
+    /**
+     * Creates the change for an update of a task.
+     */
+    public static PendingWrite update(TaskEntry base, TaskEntry task) {
+        return new PendingWrite(0, TYPE_UPDATE, task.getKey(), task, base);
+    }
+
+    /**
+     * Creates the change for a deleted task. The deleted values are kept, so the task can be
+     * put back if the remote database refuses the delete.
+     */
+    public static PendingWrite delete(TaskEntry task) {
+        return new PendingWrite(0, TYPE_DELETE, task.getKey(), task, null);
+    }
+
+    /**
+     * Creates the change for a completed task. The task is archived with these values, and put
+     * back in the list if the remote database refuses the change.
+     */
+    public static PendingWrite complete(TaskEntry task) {
+        return new PendingWrite(0, TYPE_COMPLETE, task.getKey(), task, null);
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public String getKey() {
+        return mKey;
+    }
+
+    public TaskEntry getTask() {
+        return mTask;
+    }
+
+    public TaskEntry getBase() {
+        return mBase;
+    }
+}
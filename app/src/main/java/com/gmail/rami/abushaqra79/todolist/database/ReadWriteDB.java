@@ -1,16 +1,102 @@
 package com.gmail.rami.abushaqra79.todolist.database;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
- * A class for reading from and writing to database.
+ * A class for reading from and writing to database. This is the {@link TaskStore} backed by the
+ * remote Firebase database, which is shared by all the devices of the user.
+ *
+ * The tasks of every list are kept in their own shard under the 'ListTasks' node, and an object
+ * of this class only reads, syncs and writes the shard of one list. A client only downloads the
+ * list it shows, and the writes of different lists do not meet on a single node. Tasks are stored
+ * in the compact format of {@link TaskCodec}, and tasks in the first format are read as well until
+ * {@link #migrateWireFormat(WriteListener)} has rewritten them. Completed tasks are moved out of
+ * the shard to the archive of the list under the 'ArchivedTasks' node, which is only read when
+ * the user browses it.
  */
-public class ReadWriteDB {
+public class ReadWriteDB implements TaskStore {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = ReadWriteDB.class.getSimpleName();
+
+    /**
+     * How far back a sync starts before the last sync mark. Change times are set by the server
+     * when a write is applied, so a write that started earlier may still land with a time just
+     * before the newest change that was seen.
+     */
+    private static final long SYNC_OVERLAP_MILLIS = 60 * 1000;
+
+    /**
+     * Node of the index of the task lists
+     */
+    static final String LISTS_NODE = "Lists";
+
+    /**
+     * Node that holds the shard of tasks of every list, keyed by the id of the list
+     */
+    static final String LIST_TASKS_NODE = "ListTasks";
+
+    /**
+     * Node that holds the archive of completed tasks of every list, keyed by the id of the list.
+     * It is never synced, only read a page at a time when the user browses it.
+     */
+    static final String ARCHIVED_TASKS_NODE = "ArchivedTasks";
+
+    /**
+     * Node that held the tasks of all the lists before they were split into shards
+     */
+    private static final String LEGACY_TASKS_NODE = "Tasks";
+
+    /**
+     * Maximum number of paths sent in a single multi-path write
+     */
+    static final int MAX_BATCH_PATHS = 500;
+
+    /**
+     * Maximum number of attempts of a versioned update that fails on a network error
+     */
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+
+    /**
+     * Delay before the first new attempt of a failed update, doubled on every attempt
+     */
+    private static final long UPDATE_BACKOFF_MILLIS = 250;
+
+    /**
+     * Generator of the keys of new tasks, shared so keys made in this process are ordered
+     */
+    private static final TaskIdGenerator ID_GENERATOR = new TaskIdGenerator();
+
+    /**
+     * Background executor that decodes pages of tasks off the main thread
+     */
+    private static final Executor DECODE_EXECUTOR = Executors.newSingleThreadExecutor();
 
     /**
      * Member variable for the database reference
@@ -18,63 +104,1019 @@ public class ReadWriteDB {
     private final DatabaseReference databaseReference;
 
     /**
-     * Constructor to initialize the database reference
+     * Member variable for the reference of the archive of the list
+     */
+    private final DatabaseReference mArchiveReference;
+
+    /**
+     * Member variable for the path of the shard from the root, for writes that also reach the
+     * archive
+     */
+    private final String mTasksPath;
+
+    /**
+     * Member variable for the path of the archive from the root
+     */
+    private final String mArchivePath;
+
+    /**
+     * Member variable for scheduling new attempts of failed updates on the main thread
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for the counters of versioned updates
+     */
+    private final TransactionStats mTransactionStats = new TransactionStats();
+
+    /**
+     * Constructor to initialize the database reference of the shard of a list
+     *
+     * @param listId The id of the list, see {@link TaskListIndex}.
+     */
+    public ReadWriteDB(String listId) {
+        databaseReference = FirebaseDatabase.getInstance().getReference(LIST_TASKS_NODE).child(listId);
+        mArchiveReference = FirebaseDatabase.getInstance().getReference(ARCHIVED_TASKS_NODE).child(listId);
+        mTasksPath = LIST_TASKS_NODE + "/" + listId + "/";
+        mArchivePath = ARCHIVED_TASKS_NODE + "/" + listId + "/";
+    }
+
+    /**
+     * The remote database is shared by all the devices of the user.
      */
-    public ReadWriteDB() {
-        databaseReference = FirebaseDatabase.getInstance().getReference("Tasks");
+    @Override
+    public boolean isRemote() {
+        return true;
     }
 
     /**
-     * Creates new task under 'Tasks' node, and adds it after the last added task.
+     * Generates the key of a new task locally from the current time, so it sorts after the tasks
+     * added before it and never overwrites a task added at the same moment on another device.
      *
-     * @param task Task object to be added to the list.
-     * @param lastID The ID of the last added task.
+     * @return The key for the new task.
      */
-    public void addTask(TaskEntry task, int lastID) {
-        String id = lastID + 1 + "";
-        databaseReference.child(id).setValue(task);
+    @Override
+    public String newTaskKey() {
+        return ID_GENERATOR.nextKey();
     }
 
     /**
-     * Reads the existing list of tasks from the database.
+     * Creates new task in the shard of the list.
      *
-     * @param listener A listener that detects any changes in the tasks list in the database.
+     * @param task Task object to be added to the list, with a key from {@link #newTaskKey()}.
+     * @param listener A listener that is notified when the write is completed or failed.
      */
-    public void readExistingTasks(ValueEventListener listener) {
-        databaseReference.addValueEventListener(listener);
+    @Override
+    public void addTask(TaskEntry task, WriteListener listener) {
+        databaseReference.child(task.getKey()).setValue(toStoredValues(task), completionOf(listener));
     }
 
     /**
-     * Reads a specific task from the database when it is clicked.
+     * Moves the tasks of the old 'Tasks' node, which held every task in one place, to the shard
+     * of the default list. The stored values are moved as they are, with their versions, change
+     * times and tombstones, so the local copy and its sync mark stay valid. Every chunk is one
+     * multi-path write that copies its tasks and removes them from the old node, so the migration
+     * can stop at any point and go on at the next launch, and reads nothing once it is done. Two
+     * devices that migrate at the same time write the same values.
      *
-     * @param key The generated key of the clicked task.
-     * @param listener A listener that detects any changes in the tasks list in the database.
+     * @param listener A listener that is notified when the migration is completed or failed.
+     */
+    public static void migrateLegacyTasks(WriteListener listener) {
+        moveLegacyChunk(FirebaseDatabase.getInstance().getReference(), listener);
+    }
+
+    /**
+     * Helper method to move the first chunk of the old node, and the next ones once it is
+     * written.
+     */
+    private static void moveLegacyChunk(DatabaseReference root, WriteListener listener) {
+        // Every task takes two paths, the copy and the removal
+        root.child(LEGACY_TASKS_NODE).orderByKey().limitToFirst(MAX_BATCH_PATHS / 2)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (!snapshot.hasChildren()) {
+                            listener.onWriteComplete();
+                            return;
+                        }
+
+                        String shard = LIST_TASKS_NODE + "/" + TaskListIndex.DEFAULT_LIST_ID + "/";
+                        Map<String, Object> move = new HashMap<>();
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            move.put(shard + child.getKey(), child.getValue());
+                            move.put(LEGACY_TASKS_NODE + "/" + child.getKey(), null);
+                        }
+                        root.updateChildren(move, completionOf(new WriteListener() {
+                            @Override
+                            public void onWriteComplete() {
+                                moveLegacyChunk(root, listener);
+                            }
+
+                            @Override
+                            public void onWriteFailed(Exception exception) {
+                                listener.onWriteFailed(exception);
+                            }
+                        }));
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        // Failed to read value
+                        Log.e(TAG, "Failed to read tasks to be moved", error.toException());
+                        listener.onWriteFailed(error.toException());
+                    }
+                });
+    }
+
+    /**
+     * Moves the tasks that still have old numeric keys to time-ordered keys, keeping their order,
+     * a chunk at a time, and every chunk is committed before the next one is read. Numeric keys
+     * sort before all other keys, so the query only downloads the numeric keys. The old keys are
+     * left as tombstones, so other devices sync the move, and those small tombstones are read
+     * again at every launch until {@link #purgeTombstones(long, WriteListener)} removes them. The
+     * new keys are the same on every device, so running it on two devices at once is harmless.
+     *
+     * @param listener A listener that is notified when the migration is completed or failed.
+     */
+    public void migrateNumericKeys(WriteListener listener) {
+        moveNumericChunk(null, listener);
+    }
+
+    /**
+     * Helper method to move the chunk of numeric keys after the given key, and the next ones once
+     * it is committed.
+     */
+    private void moveNumericChunk(String afterKey, WriteListener listener) {
+        Query query = databaseReference.orderByKey();
+        if (afterKey != null) {
+            query = query.startAfter(afterKey);
+        }
+        // Every task takes two paths, the tombstone and the task under its new key
+        query.endAt(String.valueOf(Integer.MAX_VALUE)).limitToFirst(MAX_BATCH_PATHS / 2)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (!snapshot.hasChildren()) {
+                            listener.onWriteComplete();
+                            return;
+                        }
+
+                        boolean last = snapshot.getChildrenCount() < MAX_BATCH_PATHS / 2;
+                        DECODE_EXECUTOR.execute(() -> {
+                            TaskBatch batch = new TaskBatch();
+                            String lastKey = null;
+                            for (DataSnapshot child : snapshot.getChildren()) {
+                                String key = child.getKey();
+                                lastKey = key;
+                                if (key == null || !TaskIdGenerator.isNumericKey(key)
+                                        || isTombstone(child)) {
+                                    continue;
+                                }
+
+                                TaskEntry task;
+                                try {
+                                    task = decode(child);
+                                } catch (IllegalArgumentException e) {
+                                    // The node is left under its old key, the other tasks still move
+                                    Log.e(TAG, "Failed to migrate task " + key, e);
+                                    continue;
+                                }
+                                batch.delete(key);
+                                batch.update(new TaskEntry(TaskIdGenerator.migratedKey(Long.parseLong(key)),
+                                        task.getDescription(), task.getPriority(), task.getVersion()));
+                            }
+
+                            String nextKey = lastKey;
+                            WriteListener next = new WriteListener() {
+                                @Override
+                                public void onWriteComplete() {
+                                    if (last) {
+                                        listener.onWriteComplete();
+                                    } else {
+                                        moveNumericChunk(nextKey, listener);
+                                    }
+                                }
+
+                                @Override
+                                public void onWriteFailed(Exception exception) {
+                                    listener.onWriteFailed(exception);
+                                }
+                            };
+                            mHandler.post(() -> {
+                                if (batch.isEmpty()) {
+                                    next.onWriteComplete();
+                                } else {
+                                    commitBatch(batch, next);
+                                }
+                            });
+                        });
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        // Failed to read value
+                        Log.e(TAG, "Failed to read numeric keys", error.toException());
+                        listener.onWriteFailed(error.toException());
+                    }
+                });
+    }
+
+    /**
+     * Rewrites the tasks of the shard that are still stored in the first format, with long names,
+     * in the compact format, a chunk of {@link #MAX_BATCH_PATHS} tasks per multi-path write.
+     * Tasks without a schema sort before all others by schema, so the query only downloads the
+     * tasks that need to be rewritten, and nothing once the migration is done. The versions and
+     * change times are kept, so a device that already has a task does not download it again.
+     *
+     * @param listener A listener that is notified when the migration is completed or failed.
+     */
+    public void migrateWireFormat(WriteListener listener) {
+        databaseReference.orderByChild(TaskCodec.FIELD_SCHEMA).endAt(TaskCodec.SCHEMA_COMPACT - 1)
+                .limitToFirst(MAX_BATCH_PATHS)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (!snapshot.hasChildren()) {
+                            listener.onWriteComplete();
+                            return;
+                        }
+
+                        DECODE_EXECUTOR.execute(() -> {
+                            Map<String, Object> rewrite = new HashMap<>();
+                            for (DataSnapshot child : snapshot.getChildren()) {
+                                Map<String, Object> values;
+                                try {
+                                    values = isTombstone(child) ? TaskCodec.tombstone()
+                                            : TaskCodec.encode(decode(child));
+                                } catch (IllegalArgumentException e) {
+                                    Log.e(TAG, "Failed to migrate task " + child.getKey(), e);
+                                    continue;
+                                }
+                                values.put(TaskCodec.COMPACT_UPDATED_AT, decodeUpdatedAt(child));
+                                rewrite.put(child.getKey(), values);
+                            }
+                            mHandler.post(() -> writeMigratedChunk(rewrite, listener));
+                        });
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        // Failed to read value
+                        Log.e(TAG, "Failed to read tasks to be migrated", error.toException());
+                        listener.onWriteFailed(error.toException());
+                    }
+                });
+    }
+
+    /**
+     * Helper method to write a rewritten chunk, and migrate the next one once it is written.
+     * A chunk with nothing to write only held tasks that cannot be decoded, so the migration
+     * stops there.
+     */
+    private void writeMigratedChunk(Map<String, Object> rewrite, WriteListener listener) {
+        if (rewrite.isEmpty()) {
+            listener.onWriteComplete();
+            return;
+        }
+
+        databaseReference.updateChildren(rewrite, completionOf(new WriteListener() {
+            @Override
+            public void onWriteComplete() {
+                migrateWireFormat(listener);
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                listener.onWriteFailed(exception);
+            }
+        }));
+    }
+
+    /**
+     * Removes the tombstones of the tasks that were deleted before the given time, so deleted
+     * tasks do not stay in the shard for good. Tombstones have the lowest packed value, so they
+     * are read by an indexed query without the tasks, a chunk at a time, and the old ones of a
+     * chunk are removed in one multi-path write before the next chunk is read. Tombstones must be
+     * kept long enough for every device to sync them, a device whose sync mark is older has to
+     * read the whole list again.
+     *
+     * @param deletedBefore The server time before which tombstones are removed.
+     * @param listener A listener that is notified when the purge is completed or failed.
+     */
+    public void purgeTombstones(long deletedBefore, WriteListener listener) {
+        purgeChunk(null, deletedBefore, listener);
+    }
+
+    /**
+     * Helper method to purge the chunk of tombstones after the given key, and the next ones once
+     * it is written.
+     */
+    private void purgeChunk(String afterKey, long deletedBefore, WriteListener listener) {
+        Query query = databaseReference.orderByChild(TaskCodec.COMPACT_FLAGS);
+        query = afterKey == null ? query.startAt(TaskCodec.FLAG_DELETED)
+                : query.startAfter(TaskCodec.FLAG_DELETED, afterKey);
+        query.endAt(TaskCodec.FLAG_DELETED).limitToFirst(MAX_BATCH_PATHS)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Map<String, Object> purge = new HashMap<>();
+                        String lastKey = null;
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            lastKey = child.getKey();
+                            if (decodeUpdatedAt(child) < deletedBefore) {
+                                purge.put(lastKey, null);
+                            }
+                        }
+
+                        boolean last = snapshot.getChildrenCount() < MAX_BATCH_PATHS;
+                        String nextKey = lastKey;
+                        WriteListener next = new WriteListener() {
+                            @Override
+                            public void onWriteComplete() {
+                                if (last) {
+                                    listener.onWriteComplete();
+                                } else {
+                                    purgeChunk(nextKey, deletedBefore, listener);
+                                }
+                            }
+
+                            @Override
+                            public void onWriteFailed(Exception exception) {
+                                listener.onWriteFailed(exception);
+                            }
+                        };
+                        if (purge.isEmpty()) {
+                            next.onWriteComplete();
+                        } else {
+                            databaseReference.updateChildren(purge, completionOf(next));
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        // Failed to read value
+                        Log.e(TAG, "Failed to read tombstones", error.toException());
+                        listener.onWriteFailed(error.toException());
+                    }
+                });
+    }
+
+    /**
+     * Keeps the given cache in sync with the tasks list in the database. Only the tasks that
+     * changed since the given sync mark are downloaded, ordered by their change time, so the
+     * cost of a launch depends on the number of changes instead of the size of the list.
+     * Deleted tasks arrive as tombstones and are removed from the cache. Changed tasks are put
+     * in the cache if they match its filter. Both are also reported to the listener, since the
+     * cache may not hold them. With a sync mark of 0
+     * all the tasks are downloaded, including the ones saved before change times were added.
+     *
+     * @param cache The cache that receives the changes.
+     * @param syncMark The newest change time that is already in the cache, or 0 for a full sync.
+     * @param listener A listener that is notified once the changes are loaded, and whenever the
+     *                 sync mark moves forward.
+     * @return The registration of the sync, to stop it.
+     */
+    @Override
+    public Registration syncTasks(TaskCache cache, long syncMark, SyncListener listener) {
+        Query query = databaseReference.orderByChild(TaskCodec.COMPACT_UPDATED_AT);
+        if (syncMark > 0) {
+            query = query.startAt(Math.max(0, syncMark - SYNC_OVERLAP_MILLIS));
+        }
+
+        DeltaSync sync = new DeltaSync(query, cache, syncMark, listener);
+        query.addChildEventListener(sync);
+
+        // Value events are raised after the child events of the same data, so this tells when
+        // the initial children are all in the cache. It is served from the data that the child
+        // listener already downloads.
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                sync.completeInitialSync();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Failed to read value, already reported by the child listener
+            }
+        });
+
+        return () -> sync.mQuery.removeEventListener(sync);
+    }
+
+    /**
+     * Returns a source that reads the tasks that match the filter, a page at a time in the order
+     * of the filter. Pages are read with cursors on indexed queries, ordered by key or by the
+     * packed priority, so only the matching tasks of the page are downloaded. Tasks have no flags
+     * yet, so the packed value of a page end is found from its priority.
+     *
+     * @param filter The filter of the list.
+     * @return The source of the pages.
+     */
+    @Override
+    public TaskPager.PageSource pages(TaskFilter filter) {
+        int priority = filter.getPriority();
+
+        return new TaskPager.PageSource() {
+            @Override
+            public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+                Query query;
+                if (!filter.isSortedByPriority()) {
+                    query = databaseReference.orderByKey();
+                    if (previousPage != null) {
+                        query = query.startAfter(previousPage.getLastKey());
+                    }
+                } else {
+                    // Deleted tasks have no priority, so starting at priority 0 leaves them out
+                    query = databaseReference.orderByChild(TaskCodec.COMPACT_FLAGS);
+                    query = previousPage == null
+                            ? query.startAt(TaskCodec.pack(firstPriority(priority), 0))
+                            : query.startAfter(TaskCodec.pack(previousPage.getLastPriority(), 0),
+                            previousPage.getLastKey());
+                    if (priority != TaskFilter.ANY_PRIORITY) {
+                        query = query.endAt(TaskCodec.packLast(priority));
+                    }
+                }
+                readPage(query.limitToFirst(pageSize), pageSize, callback);
+            }
+
+            @Override
+            public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+                Query query;
+                if (!filter.isSortedByPriority()) {
+                    query = databaseReference.orderByKey().endBefore(nextPage.getFirstKey());
+                } else {
+                    query = databaseReference.orderByChild(TaskCodec.COMPACT_FLAGS)
+                            .startAt(TaskCodec.pack(firstPriority(priority), 0))
+                            .endBefore(TaskCodec.pack(nextPage.getFirstPriority(), 0),
+                                    nextPage.getFirstKey());
+                }
+                readPage(query.limitToLast(pageSize), pageSize, callback);
+            }
+        };
+    }
+
+    /**
+     * Returns a source that reads the archive of the list, a page at a time in key order, which
+     * is the order the tasks were added in. The archive is not synced, so completed tasks are
+     * only downloaded while the user browses them.
+     *
+     * @return The source of the pages.
+     */
+    @Override
+    public TaskPager.PageSource archivedPages() {
+        return new TaskPager.PageSource() {
+            @Override
+            public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+                Query query = mArchiveReference.orderByKey();
+                if (previousPage != null) {
+                    query = query.startAfter(previousPage.getLastKey());
+                }
+                readPage(query.limitToFirst(pageSize), pageSize, callback);
+            }
+
+            @Override
+            public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+                readPage(mArchiveReference.orderByKey().endBefore(nextPage.getFirstKey())
+                        .limitToLast(pageSize), pageSize, callback);
+            }
+        };
+    }
+
+    /**
+     * Helper method to return the lowest priority shown by a filter.
+     */
+    private static int firstPriority(int priority) {
+        return priority == TaskFilter.ANY_PRIORITY ? 0 : priority;
+    }
+
+    /**
+     * Estimates the current time of the server from the offset the database client measured.
+     *
+     * @param listener A listener that receives the time in milliseconds.
      */
-    public void readSelectedTask(String key, ValueEventListener listener) {
-        databaseReference.child(key).addListenerForSingleValueEvent(listener);
+    @Override
+    public void readServerTime(ServerTimeListener listener) {
+        databaseReference.getRoot().child(".info/serverTimeOffset")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Double offset = snapshot.getValue(Double.class);
+                        listener.onServerTime(System.currentTimeMillis() + (offset == null ? 0 : offset.longValue()));
+                    }
 
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Failed to read server time offset", error.toException());
+                        listener.onServerTime(System.currentTimeMillis());
+                    }
+                });
     }
 
     /**
-     * Updates the information of a specific task when it is clicked.
+     * Helper method to read a page of tasks with a limited query. The page is decoded on a
+     * background thread and handed to the callback on the main thread in one step.
+     */
+    private void readPage(Query query, int pageSize, TaskPager.PageCallback callback) {
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                DECODE_EXECUTOR.execute(() -> {
+                    TaskPage page = decodePage(snapshot, pageSize);
+                    mHandler.post(() -> callback.onPageLoaded(page));
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Failed to read value
+                Log.e(TAG, "Failed to read page", error.toException());
+                callback.onPageFailed(error.toException());
+            }
+        });
+    }
+
+    /**
+     * Reads a specific task from the database when it is clicked and its values in memory may be
+     * out of date.
      *
      * @param key The generated key of the clicked task.
-     * @param description The description of the To-do task.
-     * @param priority The priority of the To-do task.
+     * @param listener A listener that receives the task, or null if it no longer exists.
+     */
+    @Override
+    public void readSelectedTask(String key, TaskListener listener) {
+        databaseReference.child(key).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (!snapshot.exists() || isTombstone(snapshot)) {
+                    listener.onTaskRead(null);
+                } else {
+                    listener.onTaskRead(decode(snapshot));
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Failed to read value
+                Log.e(TAG, "Failed to read data", error.toException());
+                listener.onReadFailed(error.toException());
+            }
+        });
+    }
+
+    /**
+     * Updates the information of a specific task when it is clicked. The whole task is written
+     * in one transaction that only succeeds if the stored version is still the version of the
+     * edited task. If another device saved a newer version, the changes of both are merged when
+     * they touch different values, and the update is rejected with a {@link TaskConflictException}
+     * when they don't. Network failures are attempted again a few times with a growing delay.
+     *
+     * @param base The task as it was before it was edited.
+     * @param edited The new values of the task.
+     * @param listener A listener that is notified when the write is completed or failed.
+     */
+    @Override
+    public void updateSelectedTask(TaskEntry base, TaskEntry edited, WriteListener listener) {
+        runUpdate(base, edited, listener, 1);
+    }
+
+    @Override
+    public TransactionStats getTransactionStats() {
+        return mTransactionStats;
+    }
+
+    /**
+     * Helper method to run a single attempt of a versioned update.
+     */
+    private void runUpdate(TaskEntry base, TaskEntry edited, WriteListener listener, int attempt) {
+        String key = edited.getKey();
+
+        databaseReference.child(key).runTransaction(new Transaction.Handler() {
+            /**
+             * True once the transaction function ran, later runs are retries by the database client
+             */
+            private boolean mStarted;
+
+            /**
+             * True if the last run found a newer version that could not be merged
+             */
+            private boolean mRejected;
+
+            /**
+             * True if the last run found the tombstone of the task
+             */
+            private boolean mDeleted;
+
+            /**
+             * True if any run found a newer version
+             */
+            private boolean mConflicted;
+
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                if (mStarted) {
+                    mTransactionStats.recordRetry();
+                }
+                mStarted = true;
+                mRejected = false;
+                mDeleted = false;
+
+                if (currentData.getValue() == null) {
+                    // Nothing is known locally yet, so the database client runs this again with
+                    // the stored task. If the task was deleted, nothing is written.
+                    return Transaction.success(currentData);
+                }
+
+                if (isTombstone(currentData)) {
+                    // The task was deleted, and only its tombstone is left
+                    mDeleted = true;
+                    return Transaction.abort();
+                }
+
+                TaskEntry current = decode(key, currentData);
+
+                TaskEntry merged = edited;
+                if (current.getVersion() != base.getVersion()) {
+                    mConflicted = true;
+                    merged = TaskMerge.mergeChanges(base, edited, current);
+                    if (merged == null) {
+                        mRejected = true;
+                        return Transaction.abort();
+                    }
+                }
+
+                currentData.setValue(toStoredValues(new TaskEntry(key, merged.getDescription(),
+                        merged.getPriority(), current.getVersion() + 1)));
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed,
+                                   @Nullable DataSnapshot currentData) {
+                if (mConflicted) {
+                    mTransactionStats.recordConflict();
+                }
+
+                if (error == null && committed && currentData != null && currentData.exists()) {
+                    listener.onWriteComplete();
+                } else if (error == null && (committed || mDeleted)) {
+                    listener.onWriteFailed(new TaskConflictException("Task was deleted"));
+                } else if (error == null && mRejected) {
+                    mTransactionStats.recordRejected();
+                    listener.onWriteFailed(new TaskConflictException("Task was changed on another device"));
+                } else if (error != null && attempt < MAX_UPDATE_ATTEMPTS && isTransient(error)) {
+                    mTransactionStats.recordRetry();
+                    mHandler.postDelayed(() -> runUpdate(base, edited, listener, attempt + 1),
+                            UPDATE_BACKOFF_MILLIS << (attempt - 1));
+                } else {
+                    Exception exception = error == null
+                            ? new TaskConflictException("Task update was aborted")
+                            : toWriteException(error);
+                    Log.e(TAG, "Failed to update task", exception);
+                    listener.onWriteFailed(exception);
+                }
+            }
+        }, false);
+    }
+
+    /**
+     * Helper method to tell if a failed write may succeed when it is attempted again.
      */
-    public void updateSelectedTask(String key, String description, int priority) {
-        databaseReference.child(key).child("description").setValue(description);
-        databaseReference.child(key).child("priority").setValue(priority);
+    private static boolean isTransient(DatabaseError error) {
+        int code = error.getCode();
+        return code == DatabaseError.DISCONNECTED
+                || code == DatabaseError.NETWORK_ERROR
+                || code == DatabaseError.MAX_RETRIES
+                || code == DatabaseError.UNAVAILABLE;
     }
 
     /**
-     * Deletes specific task(s).
+     * Helper method to turn a write error into the exception reported to the listener, a
+     * {@link TransientWriteException} if the write may succeed when it is sent again.
+     */
+    private static Exception toWriteException(DatabaseError error) {
+        return isTransient(error) ? new TransientWriteException(error.toException()) : error.toException();
+    }
+
+    /**
+     * Deletes specific task(s) in a single write, leaving a tombstone for each one.
      *
      * @param keys A list of keys of the task(s) to be deleted.
+     * @param listener A listener that is notified when the write is completed or failed.
      */
-    public void deleteSelectedTasks(ArrayList<String> keys) {
+    public void deleteSelectedTasks(ArrayList<String> keys, WriteListener listener) {
+        TaskBatch batch = new TaskBatch();
         for (int i = 0; i < keys.size(); i++) {
-            databaseReference.child(keys.get(i)).removeValue();
+            batch.delete(keys.get(i));
+        }
+        commitBatch(batch, listener);
+    }
+
+    /**
+     * Commits all the deletes, completions and updates of a batch as one multi-path write from
+     * the root, so a completed task leaves the shard and enters the archive together. Very large
+     * batches are split into writes of at most {@link #MAX_BATCH_PATHS} paths, which are all sent
+     * at once and applied in order. The listener is notified once, after the last write
+     * completes, or on the first write that fails.
+     *
+     * @param batch The changes to be written.
+     * @param listener A listener that is notified when the batch is completed or failed.
+     */
+    @Override
+    public void commitBatch(TaskBatch batch, WriteListener listener) {
+        List<Map<String, Object>> chunks = batch.chunks(MAX_BATCH_PATHS, serverTime(), mTasksPath,
+                mArchivePath);
+        if (chunks.isEmpty()) {
+            listener.onWriteComplete();
+            return;
+        }
+
+        DatabaseReference root = databaseReference.getRoot();
+        BatchResult result = new BatchResult(chunks.size(), listener);
+        for (Map<String, Object> chunk : chunks) {
+            root.updateChildren(chunk, completionOf(result));
+        }
+    }
+
+    /**
+     * Observes whether the client is connected to the remote database.
+     *
+     * @param listener A listener that is notified on every change of the connection.
+     * @return The registration of the listener, to stop observing.
+     */
+    @Override
+    public Registration observeConnection(ConnectionListener listener) {
+        DatabaseReference connected = databaseReference.getRoot().child(".info/connected");
+        ValueEventListener valueListener = connected.addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                listener.onConnectionChanged(Boolean.TRUE.equals(snapshot.getValue(Boolean.class)));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Failed to observe connection", error.toException());
+            }
+        });
+        return () -> connected.removeEventListener(valueListener);
+    }
+
+    /**
+     * Returns the compact values stored for a task, with the change time set by the server.
+     *
+     * @param task The task to be stored.
+     * @return The stored values of the task.
+     */
+    static Map<String, Object> toStoredValues(TaskEntry task) {
+        Map<String, Object> values = TaskCodec.encode(task);
+        values.put(TaskCodec.COMPACT_UPDATED_AT, serverTime());
+        return values;
+    }
+
+    /**
+     * Returns the placeholder that the server replaces with its own time when a write is applied.
+     */
+    static Object serverTime() {
+        return ServerValue.TIMESTAMP;
+    }
+
+    /**
+     * Helper method to decode a page of tasks from the snapshot of a limited query. Nodes that
+     * cannot be decoded are logged and left out.
+     *
+     * @param snapshot The tasks of the page, including tombstones.
+     * @param pageSize The limit of the query.
+     */
+    private static TaskPage decodePage(DataSnapshot snapshot, int pageSize) {
+        List<TaskEntry> tasks = new ArrayList<>(pageSize);
+        String firstKey = null;
+        String lastKey = null;
+        int count = 0;
+
+        for (DataSnapshot child : snapshot.getChildren()) {
+            if (firstKey == null) {
+                firstKey = child.getKey();
+            }
+            lastKey = child.getKey();
+            count++;
+
+            if (isTombstone(child)) {
+                continue;
+            }
+            try {
+                tasks.add(decode(child));
+            } catch (IllegalArgumentException e) {
+                // The page still counts the node, so paging goes on past it
+                Log.e(TAG, "Failed to decode task " + child.getKey(), e);
+            }
+        }
+
+        // Pages read by priority never hold deleted tasks, so their ends are tasks
+        int firstPriority = tasks.isEmpty() ? 0 : tasks.get(0).getPriority();
+        int lastPriority = tasks.isEmpty() ? 0 : tasks.get(tasks.size() - 1).getPriority();
+        return new TaskPage(tasks, firstKey, lastKey, firstPriority, lastPriority, count < pageSize);
+    }
+
+    /**
+     * Helper method to decode the task stored in a snapshot. The snapshot must not be a tombstone.
+     */
+    private static TaskEntry decode(DataSnapshot snapshot) {
+        return TaskCodec.decode(snapshot.getKey(), name -> snapshot.child(name).getValue());
+    }
+
+    /**
+     * Helper method to decode the task stored in the data of a transaction. The data must not be
+     * a tombstone.
+     */
+    private static TaskEntry decode(String key, MutableData data) {
+        return TaskCodec.decode(key, name -> data.child(name).getValue());
+    }
+
+    /**
+     * Helper method to check if a snapshot holds the tombstone of a deleted task.
+     */
+    private static boolean isTombstone(DataSnapshot snapshot) {
+        return TaskCodec.isTombstone(name -> snapshot.child(name).getValue());
+    }
+
+    /**
+     * Helper method to check if the data of a transaction holds the tombstone of a deleted task.
+     */
+    private static boolean isTombstone(MutableData data) {
+        return TaskCodec.isTombstone(name -> data.child(name).getValue());
+    }
+
+    /**
+     * Helper method to read the change time stored in a snapshot, 0 for tasks saved before change
+     * times were added.
+     */
+    private static long decodeUpdatedAt(DataSnapshot snapshot) {
+        return TaskCodec.updatedAt(name -> snapshot.child(name).getValue());
+    }
+
+    /**
+     * Helper method to report the result of a write to the given listener.
+     */
+    private static DatabaseReference.CompletionListener completionOf(WriteListener listener) {
+        return (error, ref) -> {
+            if (error == null) {
+                listener.onWriteComplete();
+            } else {
+                Log.e(TAG, "Failed to write data", error.toException());
+                listener.onWriteFailed(toWriteException(error));
+            }
+        };
+    }
+
+    /**
+     * Applies the changes of a sync query to a cache and keeps track of the sync mark.
+     */
+    private static class DeltaSync implements ChildEventListener {
+
+        /**
+         * Member variable for the query the listener is attached to
+         */
+        private final Query mQuery;
+
+        /**
+         * Member variable for the cache that receives the changes
+         */
+        private final TaskCache mCache;
+
+        /**
+         * Member variable for the listener of the sync
+         */
+        private final SyncListener mListener;
+
+        /**
+         * Member variable for the newest change time applied to the cache
+         */
+        private long mSyncMark;
+
+        /**
+         * Member variable for the sync mark that was last reported
+         */
+        private long mReportedSyncMark;
+
+        /**
+         * True once the changes that were there when the sync started are applied
+         */
+        private boolean mInitialSyncComplete;
+
+        DeltaSync(Query query, TaskCache cache, long syncMark, SyncListener listener) {
+            mQuery = query;
+            mCache = cache;
+            mSyncMark = syncMark;
+            mReportedSyncMark = syncMark;
+            mListener = listener;
+        }
+
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            apply(snapshot);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            apply(snapshot);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            // The tombstone itself was purged, the task is gone either way
+            mCache.remove(snapshot.getKey());
+            mListener.onTaskDeleted(snapshot.getKey());
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            // The query is ordered by change time while the list is ordered by key, and the new
+            // values of a moved task already arrived as a change
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            // Failed to read value
+            Log.e(TAG, "Failed to sync data", error.toException());
+            mListener.onSyncFailed(error.toException());
+        }
+
+        /**
+         * Marks the initial sync as complete and reports the sync mark it reached.
+         */
+        void completeInitialSync() {
+            mInitialSyncComplete = true;
+            mListener.onInitialSyncComplete();
+            reportSyncMark();
+        }
+
+        /**
+         * Helper method to apply a new or changed task to the cache and move the sync mark
+         * forward. During the initial sync the mark is only reported once, at the end.
+         */
+        private void apply(DataSnapshot snapshot) {
+            if (isTombstone(snapshot)) {
+                mCache.remove(snapshot.getKey());
+                mListener.onTaskDeleted(snapshot.getKey());
+            } else {
+                TaskEntry task = decode(snapshot);
+                mCache.put(task);
+                mListener.onTaskChanged(task);
+            }
+
+            mSyncMark = Math.max(mSyncMark, decodeUpdatedAt(snapshot));
+            if (mInitialSyncComplete) {
+                reportSyncMark();
+            }
+        }
+
+        /**
+         * Helper method to report the sync mark if it moved forward.
+         */
+        private void reportSyncMark() {
+            if (mSyncMark > mReportedSyncMark) {
+                mReportedSyncMark = mSyncMark;
+                mListener.onSyncMarkChanged(mSyncMark);
+            }
+        }
+    }
+
+    /**
+     * Collects the results of the writes of a split batch into a single result.
+     */
+    private static class BatchResult implements WriteListener {
+
+        /**
+         * Member variable for the number of writes that did not complete yet
+         */
+        private int mRemaining;
+
+        /**
+         * Member variable for the listener of the whole batch, null once it is notified
+         */
+        private WriteListener mListener;
+
+        BatchResult(int writes, WriteListener listener) {
+            mRemaining = writes;
+            mListener = listener;
+        }
+
+        @Override
+        public void onWriteComplete() {
+            mRemaining--;
+            if (mRemaining == 0 && mListener != null) {
+                mListener.onWriteComplete();
+                mListener = null;
+            }
+        }
+
+        @Override
+        public void onWriteFailed(Exception exception) {
+            if (mListener != null) {
+                mListener.onWriteFailed(exception);
+                mListener = null;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskList;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link TaskListIndex} in the remote database, under the 'Lists' node. The node only holds
+ * the name of every list, so it stays small however many tasks the lists have.
+ */
+public class RemoteTaskListIndex implements TaskListIndex {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = RemoteTaskListIndex.class.getSimpleName();
+
+    /**
+     * Name of the stored value that holds the name of a list
+     */
+    private static final String FIELD_NAME = "name";
+
+    /**
+     * Generator of the ids of new lists, the same kind of keys as the tasks have
+     */
+    private static final TaskIdGenerator ID_GENERATOR = new TaskIdGenerator();
+
+    /**
+     * Member variable for the reference of the index
+     */
+    private final DatabaseReference mListsReference;
+
+    /**
+     * Constructor to initialize the reference of the index
+     */
+    public RemoteTaskListIndex() {
+        mListsReference = FirebaseDatabase.getInstance().getReference(ReadWriteDB.LISTS_NODE);
+    }
+
+    @Override
+    public String newListId() {
+        return ID_GENERATOR.nextKey();
+    }
+
+    @Override
+    public void addList(TaskList list, TaskStore.WriteListener listener) {
+        mListsReference.child(list.getId()).setValue(list.toMap(), (error, ref) -> {
+            if (error == null) {
+                listener.onWriteComplete();
+            } else {
+                Log.e(TAG, "Failed to add list", error.toException());
+                listener.onWriteFailed(error.toException());
+            }
+        });
+    }
+
+    @Override
+    public TaskStore.Registration observeLists(ListsListener listener) {
+        Query query = mListsReference.orderByKey();
+        ValueEventListener valueListener = query.addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                List<TaskList> lists = new ArrayList<>();
+                lists.add(new TaskList(DEFAULT_LIST_ID, ""));
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    if (!DEFAULT_LIST_ID.equals(child.getKey())) {
+                        Object name = child.child(FIELD_NAME).getValue();
+                        lists.add(new TaskList(child.getKey(), name == null ? "" : TaskCodec.toText(name)));
+                    }
+                }
+                listener.onListsChanged(lists);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Failed to read lists", error.toException());
+            }
+        });
+        return () -> query.removeEventListener(valueListener);
+    }
+}
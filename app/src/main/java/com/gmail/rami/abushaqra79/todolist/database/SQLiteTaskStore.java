@@ -0,0 +1,310 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.gmail.rami.abushaqra79.todolist.database.TaskContract.ArchivedTasks;
+import com.gmail.rami.abushaqra79.todolist.database.TaskContract.Tasks;
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TaskStore} that keeps the tasks only on this device, in their own SQLite database
+ * next to the local copy of the remote tasks. The disk work runs on the same background thread as
+ * {@link LocalTaskStore}, and results are delivered on the main thread. Nobody else writes to the
+ * database, so a sync only has to pass on the changes made through this store.
+ */
+public class SQLiteTaskStore implements TaskStore {
+
+    /**
+     * Name of the database file
+     */
+    private static final String DATABASE_NAME = "local_tasks.db";
+
+    /**
+     * Member variable for the database helper
+     */
+    private final TaskDbHelper mDbHelper;
+
+    /**
+     * Member variable for delivering results on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for the generator of the keys of new tasks
+     */
+    private final TaskIdGenerator mIdGenerator = new TaskIdGenerator();
+
+    /**
+     * Member variable for the counters of the versioned updates
+     */
+    private final TransactionStats mTransactionStats = new TransactionStats();
+
+    /**
+     * Member variable for the syncs that receive every change, only used on the main thread
+     */
+    private final List<Sync> mSyncs = new ArrayList<>();
+
+    /**
+     * Member variable for the change time of the last change, only used on the main thread
+     */
+    private long mLastChangeTime;
+
+    /**
+     * Constructor for the store of a list, every list has its own database file.
+     *
+     * @param context The current Context
+     * @param listId The id of the list, see {@link TaskListIndex}.
+     */
+    public SQLiteTaskStore(Context context, String listId) {
+        mDbHelper = new TaskDbHelper(context, listId.equals(TaskListIndex.DEFAULT_LIST_ID)
+                ? DATABASE_NAME : "local_tasks_" + listId + ".db");
+    }
+
+    /**
+     * The tasks are only on this device.
+     */
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public String newTaskKey() {
+        return mIdGenerator.nextKey();
+    }
+
+    @Override
+    public void addTask(TaskEntry task, WriteListener listener) {
+        LocalTaskStore.DISK_EXECUTOR.execute(() -> {
+            mDbHelper.getWritableDatabase().insertWithOnConflict(Tasks.TABLE_NAME, null,
+                    LocalTaskStore.toValues(task), SQLiteDatabase.CONFLICT_REPLACE);
+            mMainHandler.post(() -> {
+                notifyChanged(task);
+                listener.onWriteComplete();
+            });
+        });
+    }
+
+    @Override
+    public void updateSelectedTask(TaskEntry base, TaskEntry edited, WriteListener listener) {
+        LocalTaskStore.DISK_EXECUTOR.execute(() -> {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            TaskEntry stored = null;
+            Exception failure = null;
+
+            db.beginTransaction();
+            try {
+                TaskEntry current = readTask(db, edited.getKey());
+                TaskEntry merged = edited;
+                if (current == null) {
+                    failure = new TaskConflictException("Task was deleted");
+                } else if (current.getVersion() != base.getVersion()) {
+                    mTransactionStats.recordConflict();
+                    merged = TaskMerge.mergeChanges(base, edited, current);
+                    if (merged == null) {
+                        mTransactionStats.recordRejected();
+                        failure = new TaskConflictException("Task was changed on another device");
+                    }
+                }
+
+                if (failure == null) {
+                    stored = new TaskEntry(current.getKey(), merged.getDescription(),
+                            merged.getPriority(), current.getVersion() + 1);
+                    db.insertWithOnConflict(Tasks.TABLE_NAME, null, LocalTaskStore.toValues(stored),
+                            SQLiteDatabase.CONFLICT_REPLACE);
+                    db.setTransactionSuccessful();
+                }
+            } finally {
+                db.endTransaction();
+            }
+
+            TaskEntry result = stored;
+            Exception error = failure;
+            mMainHandler.post(() -> {
+                if (error != null) {
+                    listener.onWriteFailed(error);
+                } else {
+                    notifyChanged(result);
+                    listener.onWriteComplete();
+                }
+            });
+        });
+    }
+
+    @Override
+    public TransactionStats getTransactionStats() {
+        return mTransactionStats;
+    }
+
+    /**
+     * Writes all the changes of the batch in one transaction. Completed tasks are moved to the
+     * archive table.
+     */
+    @Override
+    public void commitBatch(TaskBatch batch, WriteListener listener) {
+        LocalTaskStore.DISK_EXECUTOR.execute(() -> {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            List<TaskEntry> changed = new ArrayList<>();
+            List<String> deleted = new ArrayList<>();
+
+            db.beginTransaction();
+            try {
+                batch.accept(new TaskBatch.Visitor() {
+                    @Override
+                    public void onDelete(String key) {
+                        if (db.delete(Tasks.TABLE_NAME, Tasks.COLUMN_KEY + " = ?", new String[]{key}) > 0) {
+                            deleted.add(key);
+                        }
+                    }
+
+                    @Override
+                    public void onComplete(String key, Map<String, Object> archived) {
+                        db.insertWithOnConflict(ArchivedTasks.TABLE_NAME, null,
+                                LocalTaskStore.toValues(TaskBatch.toTask(key, archived)),
+                                SQLiteDatabase.CONFLICT_REPLACE);
+                        onDelete(key);
+                    }
+
+                    @Override
+                    public void onReplace(String key, Map<String, Object> values) {
+                        TaskEntry task = TaskBatch.toTask(key, values);
+                        db.insertWithOnConflict(Tasks.TABLE_NAME, null, LocalTaskStore.toValues(task),
+                                SQLiteDatabase.CONFLICT_REPLACE);
+                        changed.add(task);
+                    }
+                });
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            mMainHandler.post(() -> {
+                for (TaskEntry task : changed) {
+                    notifyChanged(task);
+                }
+                for (String key : deleted) {
+                    notifyDeleted(key);
+                }
+                listener.onWriteComplete();
+            });
+        });
+    }
+
+    @Override
+    public void readSelectedTask(String key, TaskListener listener) {
+        LocalTaskStore.DISK_EXECUTOR.execute(() -> {
+            TaskEntry task = readTask(mDbHelper.getReadableDatabase(), key);
+            mMainHandler.post(() -> listener.onTaskRead(task));
+        });
+    }
+
+    @Override
+    public TaskPager.PageSource pages(TaskFilter filter) {
+        return LocalTaskStore.pages(mDbHelper, mMainHandler, filter);
+    }
+
+    @Override
+    public TaskPager.PageSource archivedPages() {
+        return LocalTaskStore.pages(mDbHelper, mMainHandler, ArchivedTasks.TABLE_NAME, TaskFilter.ALL);
+    }
+
+    /**
+     * Passes on every change made through this store from now on. Changes made before are
+     * already in the pages that are read from the same database.
+     */
+    @Override
+    public Registration syncTasks(TaskCache cache, long syncMark, SyncListener listener) {
+        Sync sync = new Sync(cache, listener);
+        mSyncs.add(sync);
+
+        // Queued behind the writes that were made before, like the initial load of the other stores
+        LocalTaskStore.DISK_EXECUTOR.execute(() -> mMainHandler.post(listener::onInitialSyncComplete));
+        return () -> mSyncs.remove(sync);
+    }
+
+    /**
+     * The store is always available.
+     */
+    @Override
+    public Registration observeConnection(ConnectionListener listener) {
+        listener.onConnectionChanged(true);
+        return () -> {
+        };
+    }
+
+    @Override
+    public void readServerTime(ServerTimeListener listener) {
+        listener.onServerTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Helper method to tell the syncs about a new or changed task.
+     */
+    private void notifyChanged(TaskEntry task) {
+        long changeTime = nextChangeTime();
+        for (Sync sync : new ArrayList<>(mSyncs)) {
+            sync.mCache.put(task);
+            sync.mListener.onTaskChanged(task);
+            sync.mListener.onSyncMarkChanged(changeTime);
+        }
+    }
+
+    /**
+     * Helper method to tell the syncs about a deleted task.
+     */
+    private void notifyDeleted(String key) {
+        long changeTime = nextChangeTime();
+        for (Sync sync : new ArrayList<>(mSyncs)) {
+            sync.mCache.remove(key);
+            sync.mListener.onTaskDeleted(key);
+            sync.mListener.onSyncMarkChanged(changeTime);
+        }
+    }
+
+    /**
+     * Helper method to return a change time that is later than every earlier one.
+     */
+    private long nextChangeTime() {
+        mLastChangeTime = Math.max(mLastChangeTime + 1, System.currentTimeMillis());
+        return mLastChangeTime;
+    }
+
+    /**
+     * Helper method to read a single task, or null if it is not stored.
+     */
+    private static TaskEntry readTask(SQLiteDatabase db, String key) {
+        try (Cursor cursor = db.query(Tasks.TABLE_NAME, null, Tasks.COLUMN_KEY + " = ?",
+                new String[]{key}, null, null, null)) {
+            return cursor.moveToFirst() ? LocalTaskStore.readTask(cursor) : null;
+        }
+    }
+
+    /**
+     * A sync that receives every change of the store.
+     */
+    private static class Sync {
+
+        /**
+         * Member variable for the cache that receives the changes
+         */
+        private final TaskCache mCache;
+
+        /**
+         * Member variable for the listener of the sync
+         */
+        private final SyncListener mListener;
+
+        Sync(TaskCache cache, SyncListener listener) {
+            mCache = cache;
+            mListener = listener;
+        }
+    }
+}
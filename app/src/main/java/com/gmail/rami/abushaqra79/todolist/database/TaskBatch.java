@@ -0,0 +1,218 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of task deletes and updates that are committed together through
+ * {@link TaskStore#commitBatch(TaskBatch, TaskStore.WriteListener)}, as one multi-path write in
+ * the remote database. A later change of the same task replaces the earlier one, so a task is
+ * never written twice in the same batch. Every change writes the whole task, with its version,
+ * so a batch never changes single values behind the version check of an update. Every change
+ * also sets the change time of the task, and a delete leaves a tombstone, so other devices can
+ * sync only what changed. The values are kept in the compact format of {@link TaskCodec}.
+ *
+ * A completed task is moved to the archive of its list in the same write: it leaves a tombstone
+ * in the list, like a delete, and is stored in the archive with its completed flag set. So the
+ * list only ever holds the tasks that are still to be done.
+ */
+public class TaskBatch {
+
+    /**
+     * Member variable for the pending change of every task, in the order they were added
+     */
+    private final Map<String, Change> mChanges = new LinkedHashMap<>();
+
+    /**
+     * Member variable for the number of paths written by the batch
+     */
+    private int mSize;
+
+    /**
+     * Adds the deletion of a task to the batch.
+     *
+     * @param key The key of the task to be deleted.
+     * @return This batch, so calls can be chained.
+     */
+    public TaskBatch delete(String key) {
+        replace(key, new Change(true, TaskCodec.tombstone(), null));
+        return this;
+    }
+
+    /**
+     * Adds the completion of a task to the batch, which moves it from the list to the archive.
+     *
+     * @param task The completed task, with the values it is archived with.
+     * @return This batch, so calls can be chained.
+     */
+    public TaskBatch complete(TaskEntry task) {
+        replace(task.getKey(), new Change(true, TaskCodec.tombstone(), TaskCodec.encodeCompleted(task)));
+        return this;
+    }
+
+    /**
+     * Adds a task to the batch, replacing all the stored values of the task with its key.
+     *
+     * @param task The task to be written, it must have a key.
+     * @return This batch, so calls can be chained.
+     */
+    public TaskBatch update(TaskEntry task) {
+        replace(task.getKey(), new Change(false, TaskCodec.encode(task), null));
+        return this;
+    }
+
+    /**
+     * Returns the number of paths written by the batch.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns true if there is nothing to write.
+     */
+    public boolean isEmpty() {
+        return mChanges.isEmpty();
+    }
+
+    /**
+     * Passes every change of the batch to the visitor, in the order the changes were added, for
+     * stores that apply them one by one.
+     *
+     * @param visitor The visitor that applies the changes.
+     */
+    void accept(Visitor visitor) {
+        for (Map.Entry<String, Change> entry : mChanges.entrySet()) {
+            Change change = entry.getValue();
+            if (change.archived != null) {
+                visitor.onComplete(entry.getKey(), Collections.unmodifiableMap(change.archived));
+            } else if (change.deleted) {
+                visitor.onDelete(entry.getKey());
+            } else {
+                visitor.onReplace(entry.getKey(), Collections.unmodifiableMap(change.values));
+            }
+        }
+    }
+
+    /**
+     * Splits the batch into multi-path updates of about the given number of paths each, in the
+     * order the changes were added. All the paths of one task are kept in the same update, so a
+     * completed task is never in the list and the archive at once, or in neither.
+     *
+     * @param maxPaths The maximum number of paths in a single update.
+     * @param changeTime The value written as the change time of every task.
+     * @param tasksPath The path of the tasks node, ending with a slash.
+     * @param archivePath The path of the archive node, ending with a slash.
+     * @return The updates to be written, each one keyed by the path under the common parent of
+     *         both nodes.
+     */
+    List<Map<String, Object>> chunks(int maxPaths, Object changeTime, String tasksPath,
+                                     String archivePath) {
+        List<Map<String, Object>> chunks = new ArrayList<>();
+        Map<String, Object> chunk = new HashMap<>();
+
+        for (Map.Entry<String, Change> entry : mChanges.entrySet()) {
+            Change change = entry.getValue();
+            if (!chunk.isEmpty() && chunk.size() + change.size() > maxPaths) {
+                chunks.add(chunk);
+                chunk = new HashMap<>();
+            }
+
+            chunk.put(tasksPath + entry.getKey(), withChangeTime(change.values, changeTime));
+            if (change.archived != null) {
+                chunk.put(archivePath + entry.getKey(), withChangeTime(change.archived, changeTime));
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Builds a task from the values of a change passed to a {@link Visitor}.
+     *
+     * @param key The key of the task.
+     * @param values The values of the change.
+     * @return The task with the values of the change.
+     */
+    static TaskEntry toTask(String key, Map<String, Object> values) {
+        Object version = values.get(TaskCodec.COMPACT_VERSION);
+        return new TaskEntry(key, (String) values.get(TaskCodec.COMPACT_DESCRIPTION),
+                TaskCodec.priorityOf(((Number) values.get(TaskCodec.COMPACT_FLAGS)).longValue()),
+                version != null ? ((Number) version).longValue() : 0);
+    }
+
+    /**
+     * Helper method to copy the values of a whole task with the change time added.
+     */
+    private static Map<String, Object> withChangeTime(Map<String, Object> values, Object changeTime) {
+        Map<String, Object> copy = new HashMap<>(values);
+        copy.put(TaskCodec.COMPACT_UPDATED_AT, changeTime);
+        return copy;
+    }
+
+    /**
+     * Helper method to replace any pending change of a task.
+     */
+    private void replace(String key, Change change) {
+        Change previous = mChanges.put(key, change);
+        if (previous != null) {
+            mSize -= previous.size();
+        }
+        mSize += change.size();
+    }
+
+    /**
+     * Interface for applying the changes of a batch one by one
+     */
+    interface Visitor {
+        void onDelete(String key);
+
+        void onComplete(String key, Map<String, Object> archived);
+
+        void onReplace(String key, Map<String, Object> values);
+    }
+
+    /**
+     * The pending change of a single task.
+     */
+    private static class Change {
+
+        /**
+         * True if the task is deleted
+         */
+        final boolean deleted;
+
+        /**
+         * The values to be written, a tombstone if the task is deleted
+         */
+        final Map<String, Object> values;
+
+        /**
+         * The values to be written to the archive if the task is completed, null otherwise
+         */
+        final Map<String, Object> archived;
+
+        Change(boolean deleted, Map<String, Object> values, Map<String, Object> archived) {
+            this.deleted = deleted;
+            this.values = values;
+            this.archived = archived;
+        }
+
+        /**
+         * Returns the number of paths written by this change, including the archived task of a
+         * completion.
+         */
+        int size() {
+            return archived != null ? 2 : 1;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory store of tasks keyed by their database key, kept in the order of the current
+ * {@link TaskFilter}, which is the order of the tasks in the shard of the shown list unless the
+ * list is sorted by priority. The cache only holds the tasks of one list. Every change is reported
+ * to the registered listeners as a single item change, so the list never has to be rebuilt.
+ *
+ * The cache only holds the tasks that match the filter, and may hold only the part of the list
+ * that is shown. Tasks loaded from the local copy are marked stale until the remote database
+ * confirms them.
+ */
+public class TaskCache {
+
+    /**
+     * Member variable for the tasks mapped by their keys
+     */
+    private final Map<String, TaskEntry> mTasks = new HashMap<>();
+
+    /**
+     * Member variable for the keys of the tasks in display order
+     */
+    private final List<String> mKeys = new ArrayList<>();
+
+    /**
+     * Member variable for the keys of the tasks that are not confirmed by the remote database
+     */
+    private final Set<String> mStaleKeys = new HashSet<>();
+
+    /**
+     * Member variable for the listeners that are notified on every change
+     */
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    /**
+     * Member variable for the filter that decides which tasks are held, and in which order
+     */
+    private TaskFilter mFilter = TaskFilter.ALL;
+
+    /**
+     * Registers a listener to be notified of changes in the cache.
+     *
+     * @param listener The listener to be added.
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener that was added before.
+     *
+     * @param listener The listener to be removed.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Changes which tasks are held and their order. All the tasks are dropped, since they were
+     * read for the old filter, and listeners are not notified, so the caller refreshes any view
+     * of the cache.
+     *
+     * @param filter The new filter.
+     */
+    public void setFilter(TaskFilter filter) {
+        mFilter = filter;
+        mKeys.clear();
+        mTasks.clear();
+        mStaleKeys.clear();
+    }
+
+    /**
+     * Returns the filter that decides which tasks are held, and in which order.
+     */
+    public TaskFilter getFilter() {
+        return mFilter;
+    }
+
+    /**
+     * Adds a page of tasks from the local copy at their positions in the list. Tasks that are
+     * already in the cache, or do not match the filter, are skipped. Listeners are not notified, since
+     * the tasks are not changed, so the caller refreshes any view of the cache.
+     *
+     * @param tasks The locally saved tasks.
+     * @param stale True if the tasks are not confirmed by the remote database yet.
+     */
+    public void load(List<TaskEntry> tasks, boolean stale) {
+        for (TaskEntry task : tasks) {
+            if (mTasks.containsKey(task.getKey()) || !mFilter.matches(task)) {
+                continue;
+            }
+
+            mKeys.add(insertionPoint(task), task.getKey());
+            mTasks.put(task.getKey(), task);
+            if (stale) {
+                mStaleKeys.add(task.getKey());
+            }
+        }
+    }
+
+    /**
+     * Drops the tasks in the given range of the list from memory, when the part of the list
+     * they are in is no longer shown. The tasks still exist, so listeners are not notified, and
+     * the caller refreshes any view of the cache.
+     *
+     * @param from The first task of the range, or null to start at the first task.
+     * @param to The last task of the range, or null to end at the last task.
+     */
+    public void evict(TaskEntry from, TaskEntry to) {
+        Iterator<String> keys = mKeys.iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            TaskEntry task = mTasks.get(key);
+            if ((from == null || mFilter.compare(task, from) >= 0)
+                    && (to == null || mFilter.compare(task, to) <= 0)) {
+                keys.remove();
+                mTasks.remove(key);
+                mStaleKeys.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the task was loaded from the local copy and not confirmed since.
+     */
+    public boolean isStale(String key) {
+        return mStaleKeys.contains(key);
+    }
+
+    /**
+     * Marks all the tasks as confirmed, once the remote database has sent everything that
+     * changed since the local copy was saved.
+     */
+    public void confirmStale() {
+        mStaleKeys.clear();
+    }
+
+    /**
+     * Adds a task at its position in the list, or replaces the values of the task if it is
+     * already in the cache, moving it if its position changed. A task that does not match the
+     * filter is removed instead.
+     *
+     * @param task The new or changed task, it must have a key.
+     */
+    public void put(TaskEntry task) {
+        if (!mFilter.matches(task)) {
+            remove(task.getKey());
+            return;
+        }
+
+        TaskEntry current = mTasks.get(task.getKey());
+        if (current == null) {
+            int position = insertionPoint(task);
+            insert(task, position == 0 ? null : mKeys.get(position - 1));
+        } else if (mFilter.compare(current, task) == 0) {
+            update(task);
+        } else {
+            int fromPosition = mKeys.indexOf(task.getKey());
+            mKeys.remove(fromPosition);
+            mTasks.remove(task.getKey());
+            int toPosition = insertionPoint(task);
+            move(task, toPosition == 0 ? null : mKeys.get(toPosition - 1), fromPosition);
+        }
+    }
+
+    /**
+     * Inserts a new task after the task with the given key.
+     *
+     * @param task The task to be inserted, it must have a key.
+     * @param previousKey The key of the task that comes before it, or null if it is the first.
+     */
+    public void insert(TaskEntry task, String previousKey) {
+        if (mTasks.containsKey(task.getKey())) {
+            // The task is already known, so treat it as a change
+            update(task);
+            return;
+        }
+
+        int position = positionAfter(previousKey);
+        mKeys.add(position, task.getKey());
+        mTasks.put(task.getKey(), task);
+        mStaleKeys.remove(task.getKey());
+
+        for (Listener listener : mListeners) {
+            listener.onTaskInserted(position, task);
+        }
+    }
+
+    /**
+     * Replaces the values of an existing task without changing its position.
+     *
+     * @param task The new values of the task.
+     */
+    public void update(TaskEntry task) {
+        int position = mKeys.indexOf(task.getKey());
+        if (position < 0) {
+            return;
+        }
+
+        mTasks.put(task.getKey(), task);
+        mStaleKeys.remove(task.getKey());
+
+        for (Listener listener : mListeners) {
+            listener.onTaskChanged(position, task);
+        }
+    }
+
+    /**
+     * Removes the task with the given key.
+     *
+     * @param key The key of the task to be removed.
+     */
+    public void remove(String key) {
+        int position = mKeys.indexOf(key);
+        if (position < 0) {
+            return;
+        }
+
+        mKeys.remove(position);
+        TaskEntry task = mTasks.remove(key);
+        mStaleKeys.remove(key);
+
+        for (Listener listener : mListeners) {
+            listener.onTaskRemoved(position, task);
+        }
+    }
+
+    /**
+     * Moves an existing task so it comes after the task with the given key.
+     *
+     * @param task The new values of the moved task.
+     * @param previousKey The key of the task that comes before it, or null if it is the first.
+     */
+    public void move(TaskEntry task, String previousKey) {
+        int fromPosition = mKeys.indexOf(task.getKey());
+        if (fromPosition < 0) {
+            insert(task, previousKey);
+            return;
+        }
+
+        mKeys.remove(fromPosition);
+        move(task, previousKey, fromPosition);
+    }
+
+    /**
+     * Helper method to put a task that was taken out of the list at the given position back
+     * after the given key, and report the move.
+     */
+    private void move(TaskEntry task, String previousKey, int fromPosition) {
+        int toPosition = positionAfter(previousKey);
+        mKeys.add(toPosition, task.getKey());
+        mTasks.put(task.getKey(), task);
+        mStaleKeys.remove(task.getKey());
+
+        for (Listener listener : mListeners) {
+            listener.onTaskMoved(fromPosition, toPosition, task);
+        }
+    }
+
+    /**
+     * Returns the task with the given key, or null if it is not in the cache.
+     */
+    public TaskEntry get(String key) {
+        return mTasks.get(key);
+    }
+
+    /**
+     * Returns the task at the given position.
+     */
+    public TaskEntry getAt(int position) {
+        return mTasks.get(mKeys.get(position));
+    }
+
+    /**
+     * Returns the key of the task at the given position.
+     */
+    public String getKeyAt(int position) {
+        return mKeys.get(position);
+    }
+
+    /**
+     * Returns the number of tasks in the cache.
+     */
+    public int size() {
+        return mKeys.size();
+    }
+
+    /**
+     * Returns a read-only copy of the tasks in display order.
+     */
+    public List<TaskEntry> getTasks() {
+        List<TaskEntry> tasks = new ArrayList<>(mKeys.size());
+        for (String key : mKeys) {
+            tasks.add(mTasks.get(key));
+        }
+        return Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * Helper method to find the position of a new task in the order of the filter.
+     */
+    private int insertionPoint(TaskEntry task) {
+        int low = 0;
+        int high = mKeys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mFilter.compare(mTasks.get(mKeys.get(middle)), task) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares two keys in the order the remote database sorts them, old numeric keys first.
+     */
+    static int compareKeys(String first, String second) {
+        boolean firstNumeric = TaskIdGenerator.isNumericKey(first);
+        boolean secondNumeric = TaskIdGenerator.isNumericKey(second);
+        if (firstNumeric && secondNumeric) {
+            return Long.compare(Long.parseLong(first), Long.parseLong(second));
+        }
+        if (firstNumeric != secondNumeric) {
+            return firstNumeric ? -1 : 1;
+        }
+        return first.compareTo(second);
+    }
+
+    /**
+     * Helper method to find the position that comes right after the given key.
+     * An unknown key puts the task at the end of the list.
+     */
+    private int positionAfter(String previousKey) {
+        if (previousKey == null) {
+            return 0;
+        }
+
+        int previousPosition = mKeys.indexOf(previousKey);
+        if (previousPosition < 0) {
+            return mKeys.size();
+        }
+        return previousPosition + 1;
+    }
+
+    /**
+     * Interface to get notified about single task changes in the cache
+     */
+    public interface Listener {
+        void onTaskInserted(int position, TaskEntry task);
+
+        void onTaskChanged(int position, TaskEntry task);
+
+        void onTaskRemoved(int position, TaskEntry task);
+
+        void onTaskMoved(int fromPosition, int toPosition, TaskEntry task);
+    }
+}
@@ -0,0 +1,280 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes tasks into their stored values and decodes stored tasks into {@link TaskEntry}
+ * objects. The database client hands out numbers as Long, or Double when they were written with
+ * a fraction, so the values are read by their type instead of through reflection or by formatting
+ * them to text and parsing it again. Text is only parsed for tasks that were saved with their
+ * numbers as text. The codec does not depend on the database client, {@link ReadWriteDB} reads
+ * the stored values out of its snapshots.
+ *
+ * Tasks are stored in the compact format of schema {@link #SCHEMA_COMPACT}: one letter names, and
+ * the priority and flags of the task packed into one number. The names are sent for every task of
+ * every download, so they take a large part of it. Every task stores its schema, so tasks that are
+ * still in the first format, with the long names below, can be found and rewritten. Both formats
+ * are decoded, a task is in the compact format if it has the packed value, and the values it is
+ * missing are read under their long names, for tasks that were only partly written in it.
+ */
+public class TaskCodec {
+
+    /**
+     * Name of the stored value that holds the schema of a task, tasks without it are schema 1
+     */
+    static final String FIELD_SCHEMA = "s";
+
+    /**
+     * Schema of the compact format
+     */
+    static final int SCHEMA_COMPACT = 2;
+
+    /**
+     * Name of the compact value that holds the description of a task
+     */
+    static final String COMPACT_DESCRIPTION = "d";
+
+    /**
+     * Name of the compact value that holds the priority and flags of a task, see {@link #pack(int, int)}
+     */
+    static final String COMPACT_FLAGS = "f";
+
+    /**
+     * Name of the compact value that holds the version of a task
+     */
+    static final String COMPACT_VERSION = "v";
+
+    /**
+     * Name of the compact value that holds the server time of the last change of a task
+     */
+    static final String COMPACT_UPDATED_AT = "u";
+
+    /**
+     * Number of low bits of the packed value that hold the flags
+     */
+    static final int FLAG_BITS = 4;
+
+    /**
+     * Flag of a deleted task, whose tombstone has no priority
+     */
+    static final int FLAG_DELETED = 1;
+
+    /**
+     * Flag of a completed task, which is only stored in the archive of its list
+     */
+    static final int FLAG_COMPLETED = 2;
+
+    /**
+     * Name of the first format value that holds the description of a task, also used by the
+     * task files
+     */
+    static final String FIELD_DESCRIPTION = "description";
+
+    /**
+     * Name of the first format value that holds the priority of a task, also used by the task
+     * files
+     */
+    static final String FIELD_PRIORITY = "priority";
+
+    /**
+     * Name of the first format value that holds the version of a task
+     */
+    static final String FIELD_VERSION = "version";
+
+    /**
+     * Name of the first format value that holds the server time of the last change of a task
+     */
+    static final String FIELD_UPDATED_AT = "updatedAt";
+
+    /**
+     * Name of the first format value that marks a deleted task
+     */
+    static final String FIELD_DELETED = "deleted";
+
+    /**
+     * Constructor is private, the codec only has static methods.
+     */
+    private TaskCodec() {
+    }
+
+    /**
+     * Returns the compact values stored for a task. The change time is not part of them, it is
+     * set by the server.
+     *
+     * @param task The task to be stored.
+     * @return The stored values of the task.
+     */
+    static Map<String, Object> encode(TaskEntry task) {
+        Map<String, Object> values = new HashMap<>();
+        values.put(COMPACT_DESCRIPTION, task.getDescription());
+        values.put(COMPACT_FLAGS, pack(task.getPriority(), 0));
+        values.put(COMPACT_VERSION, task.getVersion());
+        values.put(FIELD_SCHEMA, SCHEMA_COMPACT);
+        return values;
+    }
+
+    /**
+     * Returns the compact values stored for a completed task in the archive of its list. The
+     * change time is not part of them, it is set by the server when the task is completed.
+     *
+     * @param task The completed task.
+     * @return The stored values of the task.
+     */
+    static Map<String, Object> encodeCompleted(TaskEntry task) {
+        Map<String, Object> values = encode(task);
+        values.put(COMPACT_FLAGS, pack(task.getPriority(), FLAG_COMPLETED));
+        return values;
+    }
+
+    /**
+     * Returns the compact values of the tombstone of a deleted task, without the change time.
+     */
+    static Map<String, Object> tombstone() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(COMPACT_FLAGS, (long) FLAG_DELETED);
+        values.put(FIELD_SCHEMA, SCHEMA_COMPACT);
+        return values;
+    }
+
+    /**
+     * Packs the priority and flags of a task into one number. The priority is stored one higher,
+     * so a tombstone, which has no priority, sorts before the tasks of every priority when the
+     * tasks are ordered by the packed value.
+     *
+     * @param priority The priority of the task.
+     * @param flags The flags of the task, like {@link #FLAG_DELETED}.
+     * @return The packed value.
+     */
+    static long pack(int priority, int flags) {
+        return ((long) (priority + 1) << FLAG_BITS) | flags;
+    }
+
+    /**
+     * Returns the highest packed value of a priority, with all the flags set.
+     */
+    static long packLast(int priority) {
+        return pack(priority, (1 << FLAG_BITS) - 1);
+    }
+
+    /**
+     * Returns the priority held in a packed value.
+     */
+    static int priorityOf(long packed) {
+        return (int) (packed >> FLAG_BITS) - 1;
+    }
+
+    /**
+     * Builds a task from its stored values in either format.
+     *
+     * @param key The key of the task.
+     * @param fields The stored values of the task, it must not be a tombstone.
+     * @return The task.
+     */
+    static TaskEntry decode(String key, Fields fields) {
+        Object flags = fields.get(COMPACT_FLAGS);
+        if (flags == null) {
+            return decode(key, fields.get(FIELD_DESCRIPTION), fields.get(FIELD_PRIORITY),
+                    fields.get(FIELD_VERSION), fields.get(FIELD_UPDATED_AT));
+        }
+
+        // A task of the first format that had single values written in the compact format
+        // keeps the others under their long names, until the migration rewrites it
+        Object description = fields.get(COMPACT_DESCRIPTION);
+        if (description == null) {
+            description = fields.get(FIELD_DESCRIPTION);
+        }
+        if (description == null) {
+            throw new IllegalArgumentException("Task " + key + " has no description");
+        }
+        Object version = fields.get(COMPACT_VERSION);
+        return new TaskEntry(key, toText(description), priorityOf(toLong(flags, 0)),
+                toLong(version != null ? version : fields.get(FIELD_VERSION), 0), updatedAt(fields));
+    }
+
+    /**
+     * Returns true if the stored values in either format are the tombstone of a deleted task.
+     */
+    static boolean isTombstone(Fields fields) {
+        Object flags = fields.get(COMPACT_FLAGS);
+        if (flags == null) {
+            return isDeleted(fields.get(FIELD_DELETED));
+        }
+        return (toLong(flags, 0) & FLAG_DELETED) != 0;
+    }
+
+    /**
+     * Returns the change time of the stored values in either format, 0 for tasks saved before
+     * change times were added.
+     */
+    static long updatedAt(Fields fields) {
+        Object updatedAt = fields.get(COMPACT_UPDATED_AT);
+        return toLong(updatedAt != null ? updatedAt : fields.get(FIELD_UPDATED_AT), 0);
+    }
+
+    /**
+     * Builds a task from its stored values in the first format. Tasks saved before versions or
+     * change times were added have 0 for them.
+     *
+     * @param key The key of the task.
+     * @param description The stored description, it must not be null.
+     * @param priority The stored priority, it must not be null.
+     * @param version The stored version, or null.
+     * @param updatedAt The stored change time, or null.
+     * @return The task.
+     */
+    static TaskEntry decode(String key, Object description, Object priority, Object version,
+                            Object updatedAt) {
+        if (description == null || priority == null) {
+            throw new IllegalArgumentException("Task " + key + " has no description or priority");
+        }
+        return new TaskEntry(key, toText(description), (int) toLong(priority, 0),
+                toLong(version, 0), toLong(updatedAt, 0));
+    }
+
+    /**
+     * Returns true if the stored deleted flag of the first format marks a tombstone.
+     */
+    static boolean isDeleted(Object deleted) {
+        return Boolean.TRUE.equals(deleted);
+    }
+
+    /**
+     * Helper method to read a stored number.
+     *
+     * @param value The stored value, a Long, a Double, text or a server time placeholder.
+     * @param missing The number used when nothing is stored.
+     */
+    static long toLong(Object value, long missing) {
+        if (value == null) {
+            return missing;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            return Long.parseLong((String) value);
+        }
+        if (value instanceof Map) {
+            // A server time placeholder of a local write that the server has not applied yet
+            return missing;
+        }
+        throw new IllegalArgumentException("Not a number: " + value.getClass().getSimpleName());
+    }
+
+    /**
+     * Helper method to read a stored text, which is already a String unless a number was stored.
+     */
+    static String toText(Object value) {
+        return value instanceof String ? (String) value : String.valueOf(value);
+    }
+
+    /**
+     * Interface for reading the stored values of a task by name, from a snapshot or a map
+     */
+    interface Fields {
+        Object get(String name);
+    }
+}
@@ -0,0 +1,22 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+/**
+ * Thrown when a task update can not be saved because the same values were changed differently
+ * on another device, or the task was deleted meanwhile.
+ */
+public class TaskConflictException extends Exception {
+
+    /**
+     * Version of the serialized form
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for the exception.
+     *
+     * @param message The reason of the conflict.
+     */
+    public TaskConflictException(String message) {
+        super(message);
+    }
+}
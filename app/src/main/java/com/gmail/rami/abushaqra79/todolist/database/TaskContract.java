@@ -0,0 +1,79 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.provider.BaseColumns;
+
+/**
+ * Names of the tables and columns of the local task database.
+ */
+public final class TaskContract {
+
+    /**
+     * Private constructor, this class only holds constants
+     */
+    private TaskContract() {
+    }
+
+    /**
+     * Table of the last known tasks, used to show the list before the remote database answers.
+     */
+    public static final class Tasks {
+
+        public static final String TABLE_NAME = "tasks";
+
+        /**
+         * Key of the task in the remote database, sorted the same way there and here
+         */
+        public static final String COLUMN_KEY = "task_key";
+
+        public static final String COLUMN_DESCRIPTION = "description";
+
+        public static final String COLUMN_PRIORITY = "priority";
+
+        public static final String COLUMN_VERSION = "version";
+
+        /**
+         * Index of the tasks by priority, then key
+         */
+        public static final String INDEX_PRIORITY = "tasks_priority";
+    }
+
+    /**
+     * Table of the completed tasks of a list that only lives on this device, with the same
+     * columns as {@link Tasks}.
+     */
+    public static final class ArchivedTasks {
+
+        public static final String TABLE_NAME = "archived_tasks";
+    }
+
+    /**
+     * Table of the changes that are not written to the remote database yet, in the order they
+     * were made.
+     */
+    public static final class PendingWrites implements BaseColumns {
+
+        public static final String TABLE_NAME = "pending_writes";
+
+        /**
+         * One of the PendingWrite.TYPE_ constants
+         */
+        public static final String COLUMN_TYPE = "type";
+
+        public static final String COLUMN_KEY = "task_key";
+
+        public static final String COLUMN_DESCRIPTION = "description";
+
+        public static final String COLUMN_PRIORITY = "priority";
+
+        public static final String COLUMN_VERSION = "version";
+
+        /**
+         * Values of the task before an update, used to merge it with changes made elsewhere
+         */
+        public static final String COLUMN_BASE_DESCRIPTION = "base_description";
+
+        public static final String COLUMN_BASE_PRIORITY = "base_priority";
+
+        public static final String COLUMN_BASE_VERSION = "base_version";
+    }
+}
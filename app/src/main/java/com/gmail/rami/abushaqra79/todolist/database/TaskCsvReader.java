@@ -0,0 +1,193 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads tasks from comma separated values, one record at a time. The first record names the
+ * columns, in any order. Values in double quotes may hold commas, line breaks and doubled quotes.
+ */
+public class TaskCsvReader implements TaskFileFormat.TaskReader {
+
+    /**
+     * Member variable for the text of the file
+     */
+    private final Reader mReader;
+
+    /**
+     * Member variable for the values of the record being read, reused for every record
+     */
+    private final List<String> mRecord = new ArrayList<>();
+
+    /**
+     * Member variable for the value being read, reused for every value
+     */
+    private final StringBuilder mValue = new StringBuilder();
+
+    /**
+     * Member variables for the positions of the columns, -1 if the file has no such column
+     */
+    private int mKeyColumn = -1;
+    private int mDescriptionColumn = -1;
+    private int mPriorityColumn = -1;
+
+    /**
+     * True once the header was read
+     */
+    private boolean mHeaderRead;
+
+    /**
+     * Member variable for a character that was read ahead, -2 if there is none
+     */
+    private int mPeeked = -2;
+
+    /**
+     * Constructor for the reader.
+     *
+     * @param in The file, in UTF-8.
+     */
+    public TaskCsvReader(InputStream in) throws IOException {
+        mReader = TaskFileFormat.openText(in);
+    }
+
+    @Override
+    public TaskEntry read() throws IOException {
+        if (!mHeaderRead) {
+            readHeader();
+        }
+
+        while (readRecord()) {
+            if (mRecord.size() == 1 && mRecord.get(0).isEmpty()) {
+                // An empty line
+                continue;
+            }
+            String key = value(mKeyColumn);
+            String description = value(mDescriptionColumn);
+            return new TaskEntry(key == null || key.isEmpty() ? null : key,
+                    description == null ? "" : description, parsePriority(value(mPriorityColumn)));
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    /**
+     * Helper method to read the names of the columns.
+     */
+    private void readHeader() throws IOException {
+        mHeaderRead = true;
+        if (!readRecord()) {
+            throw new IOException("The file is empty");
+        }
+        for (int i = 0; i < mRecord.size(); i++) {
+            String name = mRecord.get(i).trim();
+            if (name.equalsIgnoreCase(TaskFileFormat.FIELD_KEY)) {
+                mKeyColumn = i;
+            } else if (name.equalsIgnoreCase(TaskCodec.FIELD_DESCRIPTION)) {
+                mDescriptionColumn = i;
+            } else if (name.equalsIgnoreCase(TaskCodec.FIELD_PRIORITY)) {
+                mPriorityColumn = i;
+            }
+        }
+        if (mDescriptionColumn == -1) {
+            throw new IOException("The file has no " + TaskCodec.FIELD_DESCRIPTION + " column");
+        }
+    }
+
+    /**
+     * Helper method to read the values of the next record into mRecord.
+     *
+     * @return False at the end of the file.
+     */
+    private boolean readRecord() throws IOException {
+        mRecord.clear();
+        int c = next();
+        if (c == -1) {
+            return false;
+        }
+
+        mValue.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("A quoted value is not closed");
+                }
+                if (c == '"') {
+                    c = next();
+                    if (c != '"') {
+                        // The closing quote, the character after it is read as usual
+                        quoted = false;
+                        continue;
+                    }
+                }
+                mValue.append((char) c);
+            } else if (c == '"' && mValue.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                endValue();
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int after = next();
+                    if (after != '\n') {
+                        mPeeked = after;
+                    }
+                }
+                endValue();
+                return true;
+            } else {
+                mValue.append((char) c);
+            }
+            c = next();
+        }
+    }
+
+    /**
+     * Helper method to add the value being read to the record.
+     */
+    private void endValue() {
+        mRecord.add(mValue.toString());
+        mValue.setLength(0);
+    }
+
+    /**
+     * Helper method to read the next character, or -1 at the end of the file.
+     */
+    private int next() throws IOException {
+        if (mPeeked != -2) {
+            int c = mPeeked;
+            mPeeked = -2;
+            return c;
+        }
+        return mReader.read();
+    }
+
+    /**
+     * Helper method to return a value of the record, or null if the column is missing.
+     */
+    private String value(int column) {
+        return column >= 0 && column < mRecord.size() ? mRecord.get(column) : null;
+    }
+
+    /**
+     * Helper method to read a priority, 0 if it is missing or not a number.
+     */
+    private static int parsePriority(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes tasks as comma separated values, with a header line and a record per task. A value is
+ * put in double quotes when it holds a comma, a quote or a line break.
+ */
+public class TaskCsvWriter implements TaskFileFormat.TaskWriter {
+
+    /**
+     * Line break between records, as most spreadsheets write it
+     */
+    private static final String LINE_BREAK = "\r\n";
+
+    /**
+     * Member variable for the text of the file
+     */
+    private final Writer mWriter;
+
+    /**
+     * True once the header was written
+     */
+    private boolean mHeaderWritten;
+
+    /**
+     * Constructor for the writer.
+     *
+     * @param out The file, it is written in UTF-8.
+     */
+    public TaskCsvWriter(OutputStream out) {
+        mWriter = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(TaskEntry task) throws IOException {
+        writeHeader();
+        writeValue(task.getKey() == null ? "" : task.getKey());
+        mWriter.write(',');
+        writeValue(task.getDescription());
+        mWriter.write(',');
+        mWriter.write(Integer.toString(task.getPriority()));
+        mWriter.write(LINE_BREAK);
+    }
+
+    /**
+     * Writes the header if no task was written, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeHeader();
+        } finally {
+            mWriter.close();
+        }
+    }
+
+    /**
+     * Helper method to write the names of the columns before the first task.
+     */
+    private void writeHeader() throws IOException {
+        if (mHeaderWritten) {
+            return;
+        }
+        mHeaderWritten = true;
+        mWriter.write(TaskFileFormat.FIELD_KEY + "," + TaskCodec.FIELD_DESCRIPTION + ","
+                + TaskCodec.FIELD_PRIORITY + LINE_BREAK);
+    }
+
+    /**
+     * Helper method to write a text value, in quotes if it needs them.
+     */
+    private void writeValue(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            mWriter.write(value);
+            return;
+        }
+
+        mWriter.write('"');
+        mWriter.write(value.replace("\"", "\"\""));
+        mWriter.write('"');
+    }
+}
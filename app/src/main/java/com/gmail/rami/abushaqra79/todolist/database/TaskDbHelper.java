@@ -0,0 +1,93 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.gmail.rami.abushaqra79.todolist.database.TaskContract.ArchivedTasks;
+import com.gmail.rami.abushaqra79.todolist.database.TaskContract.PendingWrites;
+import com.gmail.rami.abushaqra79.todolist.database.TaskContract.Tasks;
+
+/**
+ * Creates and upgrades the local task database.
+ */
+public class TaskDbHelper extends SQLiteOpenHelper {
+
+    /**
+     * Name of the database file
+     */
+    private static final String DATABASE_NAME = "tasks.db";
+
+    /**
+     * Version of the database schema, increased on every schema change
+     */
+    private static final int DATABASE_VERSION = 3;
+
+    /**
+     * Constructor for the helper of the local copy.
+     *
+     * @param context The current Context
+     */
+    public TaskDbHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructor for the helper of a database file with the same schema.
+     *
+     * @param context The current Context
+     * @param databaseName The name of the database file.
+     */
+    public TaskDbHelper(Context context, String databaseName) {
+        super(context.getApplicationContext(), databaseName, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createTasksTable(db, Tasks.TABLE_NAME);
+
+        db.execSQL("CREATE TABLE " + PendingWrites.TABLE_NAME + " ("
+                + PendingWrites._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + PendingWrites.COLUMN_TYPE + " INTEGER NOT NULL, "
+                + PendingWrites.COLUMN_KEY + " TEXT NOT NULL, "
+                + PendingWrites.COLUMN_DESCRIPTION + " TEXT, "
+                + PendingWrites.COLUMN_PRIORITY + " INTEGER, "
+                + PendingWrites.COLUMN_VERSION + " INTEGER, "
+                + PendingWrites.COLUMN_BASE_DESCRIPTION + " TEXT, "
+                + PendingWrites.COLUMN_BASE_PRIORITY + " INTEGER, "
+                + PendingWrites.COLUMN_BASE_VERSION + " INTEGER)");
+
+        createPriorityIndex(db);
+        createTasksTable(db, ArchivedTasks.TABLE_NAME);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createPriorityIndex(db);
+        }
+        if (oldVersion < 3) {
+            createTasksTable(db, ArchivedTasks.TABLE_NAME);
+        }
+    }
+
+    /**
+     * Helper method to create a table with the columns of {@link Tasks}, for the tasks of the
+     * list or of its archive.
+     */
+    private static void createTasksTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " ("
+                + Tasks.COLUMN_KEY + " TEXT PRIMARY KEY, "
+                + Tasks.COLUMN_DESCRIPTION + " TEXT NOT NULL, "
+                + Tasks.COLUMN_PRIORITY + " INTEGER NOT NULL, "
+                + Tasks.COLUMN_VERSION + " INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    /**
+     * Helper method to index the tasks by priority, for lists that are filtered or sorted by it.
+     */
+    private static void createPriorityIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + Tasks.INDEX_PRIORITY + " ON " + Tasks.TABLE_NAME + " ("
+                + Tasks.COLUMN_PRIORITY + ", " + Tasks.COLUMN_KEY + ")");
+    }
+}
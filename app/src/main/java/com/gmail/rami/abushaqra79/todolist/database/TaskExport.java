@@ -0,0 +1,176 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Exports all the tasks of a {@link TaskStore} to a JSON or CSV file. The tasks are read a page
+ * at a time in key order, and every page is written to the file on a background thread before
+ * the next one is read, so memory use does not grow with the size of the list.
+ */
+public class TaskExport {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = TaskExport.class.getSimpleName();
+
+    /**
+     * Number of tasks read from the store and written at a time
+     */
+    private static final int PAGE_SIZE = 500;
+
+    /**
+     * Member variable for the pages of all the tasks
+     */
+    private final TaskPager.PageSource mSource;
+
+    /**
+     * Member variable for the writer of the file
+     */
+    private final TaskFileFormat.TaskWriter mWriter;
+
+    /**
+     * Member variable for the listener of the export
+     */
+    private final Listener mListener;
+
+    /**
+     * Member variable for delivering the progress on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for the number of tasks that were written
+     */
+    private int mExported;
+
+    /**
+     * True once the export is cancelled or failed, only used on the main thread
+     */
+    private boolean mCancelled;
+
+    /**
+     * Constructor for the export.
+     *
+     * @param taskStore The store the tasks are read from.
+     * @param out The file, it is closed when the export ends.
+     * @param format One of the TaskFileFormat.FORMAT_ constants.
+     * @param listener The listener of the export.
+     */
+    public TaskExport(TaskStore taskStore, OutputStream out, int format, Listener listener) {
+        mSource = taskStore.pages(TaskFilter.ALL);
+        mWriter = TaskFileFormat.newWriter(out, format);
+        mListener = listener;
+    }
+
+    /**
+     * Starts the export.
+     */
+    public void start() {
+        loadPageAfter(null);
+    }
+
+    /**
+     * Stops the export after the page that is being written, and closes the file as it is.
+     * Nothing more is reported.
+     */
+    public void cancel() {
+        if (!mCancelled) {
+            mCancelled = true;
+            TaskFileFormat.FILE_EXECUTOR.execute(this::close);
+        }
+    }
+
+    /**
+     * Helper method to read the next page and write it.
+     */
+    private void loadPageAfter(TaskPage previousPage) {
+        mSource.loadPageAfter(previousPage, PAGE_SIZE, new TaskPager.PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                if (!mCancelled) {
+                    TaskFileFormat.FILE_EXECUTOR.execute(() -> write(page));
+                }
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                fail(exception);
+            }
+        });
+    }
+
+    /**
+     * Helper method to write a page on the file thread, then go on with the next one on the
+     * main thread.
+     */
+    private void write(TaskPage page) {
+        boolean end = page.isLast() || page.isEmpty();
+        try {
+            for (TaskEntry task : page.getTasks()) {
+                mWriter.write(task);
+            }
+            if (end) {
+                mWriter.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            mMainHandler.post(() -> fail(e));
+            return;
+        }
+
+        mMainHandler.post(() -> {
+            if (mCancelled) {
+                return;
+            }
+            mExported += page.getTasks().size();
+            if (end) {
+                mCancelled = true;
+                mListener.onExportComplete(mExported);
+            } else {
+                mListener.onExportProgress(mExported);
+                loadPageAfter(page);
+            }
+        });
+    }
+
+    /**
+     * Helper method to end the export with an error.
+     */
+    private void fail(Exception exception) {
+        if (mCancelled) {
+            return;
+        }
+        Log.e(TAG, "Export failed after " + mExported + " tasks", exception);
+        cancel();
+        mListener.onExportFailed(exception);
+    }
+
+    /**
+     * Helper method to close the file on the file thread.
+     */
+    private void close() {
+        try {
+            mWriter.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing the exported file", e);
+        }
+    }
+
+    /**
+     * Interface to get notified about the progress of an export, on the main thread
+     */
+    public interface Listener {
+        void onExportProgress(int exported);
+
+        void onExportComplete(int exported);
+
+        void onExportFailed(Exception exception);
+    }
+}
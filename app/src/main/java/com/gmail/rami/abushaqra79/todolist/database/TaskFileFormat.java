@@ -0,0 +1,149 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The file formats the task list is imported from and exported to. Both formats are read and
+ * written one task at a time, so a file of any size only needs memory for a single task.
+ *
+ * A JSON file is an array of objects, and a CSV file has a header line that names the columns.
+ * Every task has a description and a priority from 1 to 3, and may have a key. Other values are
+ * ignored.
+ */
+public final class TaskFileFormat {
+
+    /**
+     * Format of a JSON array of tasks
+     */
+    public static final int FORMAT_JSON = 1;
+
+    /**
+     * Format of comma separated values with a header line
+     */
+    public static final int FORMAT_CSV = 2;
+
+    /**
+     * Name of the value that holds the key of a task
+     */
+    static final String FIELD_KEY = "key";
+
+    /**
+     * Background thread for reading and writing files, so a slow file does not hold up the disk
+     * work of the local database
+     */
+    static final Executor FILE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * The byte order mark some editors put at the start of a UTF-8 file
+     */
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    /**
+     * Constructor is private, the class only has static methods.
+     */
+    private TaskFileFormat() {
+    }
+
+    /**
+     * Finds the format of a file from its first character, a JSON file starts with an array.
+     * The stream is reset to where it was.
+     *
+     * @param in The file, it must support mark and reset.
+     * @return One of the FORMAT_ constants.
+     */
+    public static int detect(InputStream in) throws IOException {
+        in.mark(64);
+        try {
+            int b;
+            do {
+                b = in.read();
+            } while (b == ' ' || b == '\t' || b == '\r' || b == '\n' || isByteOrderMark(b, in));
+            return b == '[' ? FORMAT_JSON : FORMAT_CSV;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Returns a reader of the tasks of a file.
+     *
+     * @param in The file.
+     * @param format One of the FORMAT_ constants.
+     */
+    public static TaskReader newReader(InputStream in, int format) throws IOException {
+        return format == FORMAT_JSON ? new TaskJsonReader(in) : new TaskCsvReader(in);
+    }
+
+    /**
+     * Returns a writer of tasks to a file.
+     *
+     * @param out The file.
+     * @param format One of the FORMAT_ constants.
+     */
+    public static TaskWriter newWriter(OutputStream out, int format) {
+        return format == FORMAT_JSON ? new TaskJsonWriter(out) : new TaskCsvWriter(out);
+    }
+
+    /**
+     * Returns the suggested name of an exported file.
+     *
+     * @param format One of the FORMAT_ constants.
+     */
+    public static String fileName(int format) {
+        return format == FORMAT_JSON ? "tasks.json" : "tasks.csv";
+    }
+
+    /**
+     * Returns the text of a file in UTF-8, without the byte order mark if it has one.
+     *
+     * @param in The file.
+     */
+    static Reader openText(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.mark(1);
+        if (reader.read() != BYTE_ORDER_MARK) {
+            reader.reset();
+        }
+        return reader;
+    }
+
+    /**
+     * Helper method to check if a byte starts the UTF-8 byte order mark, and skip the rest of it.
+     */
+    private static boolean isByteOrderMark(int b, InputStream in) throws IOException {
+        if (b != 0xEF) {
+            return false;
+        }
+        in.skip(2);
+        return true;
+    }
+
+    /**
+     * Interface for reading the tasks of a file one by one
+     */
+    public interface TaskReader extends Closeable {
+        /**
+         * Returns the next task of the file, or null at its end. The task has no key if the file
+         * has none for it, and its priority is 0 if it is missing or not a number.
+         */
+        TaskEntry read() throws IOException;
+    }
+
+    /**
+     * Interface for writing tasks to a file one by one, the file is complete once it is closed
+     */
+    public interface TaskWriter extends Closeable {
+        void write(TaskEntry task) throws IOException;
+    }
+}
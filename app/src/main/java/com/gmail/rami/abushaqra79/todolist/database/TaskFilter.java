@@ -0,0 +1,92 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.Comparator;
+
+/**
+ * Which tasks are shown and in which order. The list is either in key order, which is the order
+ * the tasks were added in, or sorted by priority from high to low, optionally limited to a single
+ * priority. Both orders are served by indexed queries, so only the matching tasks are read.
+ */
+public class TaskFilter implements Comparator<TaskEntry> {
+
+    /**
+     * Priority value that matches every priority
+     */
+    public static final int ANY_PRIORITY = -1;
+
+    /**
+     * All the tasks in the order they were added
+     */
+    public static final TaskFilter ALL = new TaskFilter(false, ANY_PRIORITY);
+
+    /**
+     * All the tasks sorted by priority, from high to low
+     */
+    public static final TaskFilter SORTED_BY_PRIORITY = new TaskFilter(true, ANY_PRIORITY);
+
+    /**
+     * True if the tasks are sorted by priority
+     */
+    private final boolean mSortedByPriority;
+
+    /**
+     * Member variable for the only priority that is shown, or ANY_PRIORITY
+     */
+    private final int mPriority;
+
+    /**
+     * Constructor for a filter.
+     *
+     * @param sortedByPriority True if the tasks are sorted by priority.
+     * @param priority The only priority that is shown, or ANY_PRIORITY.
+     */
+    private TaskFilter(boolean sortedByPriority, int priority) {
+        mSortedByPriority = sortedByPriority;
+        mPriority = priority;
+    }
+
+    /**
+     * Returns a filter that only shows the tasks with the given priority, in the order they
+     * were added.
+     *
+     * @param priority The priority to be shown.
+     */
+    public static TaskFilter withPriority(int priority) {
+        return new TaskFilter(true, priority);
+    }
+
+    /**
+     * Returns true if the tasks are sorted by priority, including when a single priority is shown.
+     */
+    public boolean isSortedByPriority() {
+        return mSortedByPriority;
+    }
+
+    /**
+     * Returns the only priority that is shown, or ANY_PRIORITY.
+     */
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Returns true if the task is shown by this filter.
+     */
+    public boolean matches(TaskEntry task) {
+        return mPriority == ANY_PRIORITY || task.getPriority() == mPriority;
+    }
+
+    /**
+     * Compares two tasks in the order they are shown, which is also the order the database
+     * sorts them in for the query of this filter.
+     */
+    @Override
+    public int compare(TaskEntry first, TaskEntry second) {
+        if (mSortedByPriority && first.getPriority() != second.getPriority()) {
+            return first.getPriority() < second.getPriority() ? -1 : 1;
+        }
+        return TaskCache.compareKeys(first.getKey(), second.getKey());
+    }
+}
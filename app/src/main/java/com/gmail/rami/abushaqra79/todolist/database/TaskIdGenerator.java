@@ -0,0 +1,166 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Generates keys for new tasks without reading or locking anything in the database.
+ *
+ * A key is 8 characters of the creation time followed by 12 random characters, using the same
+ * alphabet and layout as the keys made by Firebase push(). Keys therefore sort by creation time,
+ * and two clients adding at the same moment only collide if they also pick the same 72 random
+ * bits. Keys made by the same generator within the same millisecond increase the random part by
+ * one, so they are unique and ordered as well.
+ */
+public class TaskIdGenerator {
+
+    /**
+     * The characters used in keys, in the order the database sorts them
+     */
+    private static final String KEY_CHARS =
+            "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Number of characters that hold the creation time
+     */
+    private static final int TIME_LENGTH = 8;
+
+    /**
+     * Number of characters that hold the random part
+     */
+    private static final int RANDOM_LENGTH = 12;
+
+    /**
+     * Member variable for the source of the current time
+     */
+    private final Clock mClock;
+
+    /**
+     * Member variable for the source of the random part
+     */
+    private final Random mRandom;
+
+    /**
+     * Member variable for the random part of the last key, as indexes into KEY_CHARS
+     */
+    private final int[] mLastRandom = new int[RANDOM_LENGTH];
+
+    /**
+     * Member variable for the time of the last key
+     */
+    private long mLastTime = -1;
+
+    /**
+     * Constructor for a generator that uses the system time.
+     */
+    public TaskIdGenerator() {
+        this(System::currentTimeMillis, new SecureRandom());
+    }
+
+    /**
+     * Constructor for a generator with the given time and random sources.
+     *
+     * @param clock The source of the current time in milliseconds.
+     * @param random The source of the random part of the keys.
+     */
+    public TaskIdGenerator(Clock clock, Random random) {
+        mClock = clock;
+        mRandom = random;
+    }
+
+    /**
+     * Generates a new key that sorts after every key this generator made before.
+     *
+     * @return The new key.
+     */
+    public synchronized String nextKey() {
+        // Never go back in time, so keys stay ordered even if the clock is set back
+        long time = Math.max(mClock.currentTimeMillis(), mLastTime);
+
+        if (time == mLastTime) {
+            // Same millisecond, increase the last random part by one
+            int i = RANDOM_LENGTH - 1;
+            while (i >= 0 && mLastRandom[i] == KEY_CHARS.length() - 1) {
+                mLastRandom[i] = 0;
+                i--;
+            }
+            if (i < 0) {
+                // All the keys of this millisecond are used, move to the next one
+                time++;
+                randomize();
+            } else {
+                mLastRandom[i]++;
+            }
+        } else {
+            randomize();
+        }
+        mLastTime = time;
+
+        StringBuilder key = new StringBuilder(TIME_LENGTH + RANDOM_LENGTH);
+        appendTime(key, time);
+        for (int index : mLastRandom) {
+            key.append(KEY_CHARS.charAt(index));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the key that an old numeric key is migrated to. The numeric key is used as the
+     * creation time with an empty random part, so migrated keys keep their order, sort before
+     * all generated keys, and are the same on every device that runs the migration.
+     *
+     * @param numericKey The old numeric key, zero or more.
+     * @return The migrated key.
+     */
+    public static String migratedKey(long numericKey) {
+        StringBuilder key = new StringBuilder(TIME_LENGTH + RANDOM_LENGTH);
+        appendTime(key, numericKey);
+        for (int i = 0; i < RANDOM_LENGTH; i++) {
+            key.append(KEY_CHARS.charAt(0));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns true if the key is an old numeric key, made by adding one to the last key.
+     */
+    public static boolean isNumericKey(String key) {
+        if (key.isEmpty() || key.length() > 10) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) < '0' || key.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return Long.parseLong(key) <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Helper method to append a time as 8 key characters, most significant first.
+     */
+    private static void appendTime(StringBuilder key, long time) {
+        char[] chars = new char[TIME_LENGTH];
+        for (int i = TIME_LENGTH - 1; i >= 0; i--) {
+            chars[i] = KEY_CHARS.charAt((int) (time % KEY_CHARS.length()));
+            time /= KEY_CHARS.length();
+        }
+        key.append(chars);
+    }
+
+    /**
+     * Helper method to pick a new random part.
+     */
+    private void randomize() {
+        for (int i = 0; i < RANDOM_LENGTH; i++) {
+            mLastRandom[i] = mRandom.nextInt(KEY_CHARS.length());
+        }
+    }
+
+    /**
+     * Interface for the source of the current time
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+}
@@ -0,0 +1,345 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports the tasks of a JSON or CSV file into a {@link TaskStore}. The file is read a chunk at a
+ * time on a background thread, and every chunk is written as one multi-path update before the
+ * next one is read, so memory use does not grow with the size of the file.
+ *
+ * The position in the file is reported after every chunk that was written, and an import can
+ * be started again from a reported position after it was cancelled or failed. Tasks that have a
+ * key keep it, so a chunk that is imported twice replaces its own tasks instead of adding them
+ * again. Tasks without a description or with a priority that is not 1, 2 or 3 are skipped.
+ */
+public class TaskImport {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = TaskImport.class.getSimpleName();
+
+    /**
+     * Number of tasks read from the file and written at a time, which is a single multi-path
+     * update since every new task is one path
+     */
+    private static final int CHUNK_SIZE = ReadWriteDB.MAX_BATCH_PATHS;
+
+    /**
+     * Member variable for the store the tasks are written to
+     */
+    private final TaskStore mTaskStore;
+
+    /**
+     * Member variable for the file, which counts the bytes read from it
+     */
+    private final CountingInputStream mInput;
+
+    /**
+     * Member variable for the size of the file in bytes, -1 if it is not known
+     */
+    private final long mTotalBytes;
+
+    /**
+     * Member variable for the number of tasks of the file that were imported before
+     */
+    private final long mStartPosition;
+
+    /**
+     * Member variable for the listener of the import
+     */
+    private final Listener mListener;
+
+    /**
+     * Member variable for delivering the chunks on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for the reader of the file, only used on the file thread
+     */
+    private TaskFileFormat.TaskReader mReader;
+
+    /**
+     * Member variable for the number of tasks of the file that were read and written
+     */
+    private long mPosition;
+
+    /**
+     * Member variables for the number of tasks that were written and skipped by this import
+     */
+    private int mImported;
+    private int mSkipped;
+
+    /**
+     * True once the import is cancelled, it is read on the file thread
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Constructor for the import.
+     *
+     * @param taskStore The store the tasks are written to.
+     * @param in The file, it is closed when the import ends.
+     * @param totalBytes The size of the file in bytes, -1 if it is not known.
+     * @param startPosition The position reported by an earlier import of the same file, or 0.
+     * @param listener The listener of the import.
+     */
+    public TaskImport(TaskStore taskStore, InputStream in, long totalBytes, long startPosition,
+                      Listener listener) {
+        mTaskStore = taskStore;
+        mInput = new CountingInputStream(new BufferedInputStream(in));
+        mTotalBytes = totalBytes;
+        mStartPosition = startPosition;
+        mPosition = startPosition;
+        mListener = listener;
+    }
+
+    /**
+     * Starts the import. The tasks before the start position are read again but not written.
+     */
+    public void start() {
+        TaskFileFormat.FILE_EXECUTOR.execute(() -> {
+            try {
+                mReader = TaskFileFormat.newReader(mInput, TaskFileFormat.detect(mInput));
+                for (long i = 0; i < mStartPosition; i++) {
+                    if (mReader.read() == null) {
+                        break;
+                    }
+                }
+                readChunk();
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        });
+    }
+
+    /**
+     * Stops the import after the chunk that is being written. Nothing more is reported.
+     */
+    public void cancel() {
+        mCancelled = true;
+        TaskFileFormat.FILE_EXECUTOR.execute(this::close);
+    }
+
+    /**
+     * Helper method to read the next chunk on the file thread and write it on the main thread.
+     */
+    private void readChunk() {
+        if (mCancelled) {
+            return;
+        }
+
+        List<TaskEntry> tasks = new ArrayList<>(CHUNK_SIZE);
+        int read = 0;
+        boolean end = false;
+        try {
+            while (read < CHUNK_SIZE) {
+                TaskEntry task = mReader.read();
+                if (task == null) {
+                    end = true;
+                    break;
+                }
+                read++;
+                if (isValid(task)) {
+                    tasks.add(task);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            return;
+        }
+
+        if (end) {
+            close();
+        }
+        int percent = mTotalBytes > 0 ? (int) Math.min(100, mInput.mCount * 100 / mTotalBytes) : -1;
+        int chunkSize = read;
+        boolean last = end;
+        mMainHandler.post(() -> write(tasks, chunkSize, last, percent));
+    }
+
+    /**
+     * Helper method to write a chunk as one batch, then go on with the next one.
+     */
+    private void write(List<TaskEntry> tasks, int read, boolean end, int percent) {
+        if (mCancelled) {
+            return;
+        }
+
+        TaskBatch batch = new TaskBatch();
+        for (TaskEntry task : tasks) {
+            String key = isValidKey(task.getKey()) ? task.getKey() : mTaskStore.newTaskKey();
+            batch.update(new TaskEntry(key, task.getDescription(), task.getPriority()));
+        }
+
+        TaskStore.WriteListener listener = new TaskStore.WriteListener() {
+            @Override
+            public void onWriteComplete() {
+                if (mCancelled) {
+                    return;
+                }
+                mPosition += read;
+                mImported += tasks.size();
+                mSkipped += read - tasks.size();
+                mListener.onImportProgress(mPosition, end ? 100 : percent);
+                if (end) {
+                    mListener.onImportComplete(mImported, mSkipped);
+                } else {
+                    TaskFileFormat.FILE_EXECUTOR.execute(TaskImport.this::readChunk);
+                }
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                fail(exception);
+            }
+        };
+
+        if (batch.isEmpty()) {
+            listener.onWriteComplete();
+        } else {
+            mTaskStore.commitBatch(batch, listener);
+        }
+    }
+
+    /**
+     * Helper method to end the import with an error, from any thread.
+     */
+    private void fail(Exception exception) {
+        Log.e(TAG, "Import failed at task " + mPosition, exception);
+        TaskFileFormat.FILE_EXECUTOR.execute(this::close);
+        mMainHandler.post(() -> {
+            if (!mCancelled) {
+                mCancelled = true;
+                mListener.onImportFailed(exception);
+            }
+        });
+    }
+
+    /**
+     * Helper method to close the file on the file thread.
+     */
+    private void close() {
+        try {
+            if (mReader != null) {
+                mReader.close();
+            } else {
+                mInput.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing the imported file", e);
+        }
+    }
+
+    /**
+     * Helper method to check if a task of the file can be imported.
+     */
+    private static boolean isValid(TaskEntry task) {
+        return !task.getDescription().trim().isEmpty()
+                && task.getPriority() >= 1 && task.getPriority() <= 3;
+    }
+
+    /**
+     * Helper method to check if a key of the file can be used in the database, which does not
+     * allow some characters in keys.
+     */
+    private static boolean isValidKey(String key) {
+        if (key == null || key.isEmpty() || key.length() > 768) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x20 || c == 0x7F || ".$#[]/".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An input stream that counts the bytes read from it, to report the progress.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        /**
+         * The number of bytes read, only used on the file thread
+         */
+        long mCount;
+
+        /**
+         * The count at the last mark
+         */
+        private long mMarkedCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            mMarkedCount = mCount;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            mCount = mMarkedCount;
+        }
+    }
+
+    /**
+     * Interface to get notified about the progress of an import, on the main thread
+     */
+    public interface Listener {
+        /**
+         * Called after every chunk that was written.
+         *
+         * @param position The number of tasks of the file that were read and written, an import
+         *                 of the same file can be started from it.
+         * @param percent The part of the file that was read, -1 if its size is not known.
+         */
+        void onImportProgress(long position, int percent);
+
+        void onImportComplete(int imported, int skipped);
+
+        void onImportFailed(Exception exception);
+    }
+}
@@ -0,0 +1,82 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads tasks from a JSON array of objects, one object at a time.
+ */
+public class TaskJsonReader implements TaskFileFormat.TaskReader {
+
+    /**
+     * Member variable for the tokens of the file
+     */
+    private final JsonReader mReader;
+
+    /**
+     * True once the start of the array was read
+     */
+    private boolean mStarted;
+
+    /**
+     * Constructor for the reader.
+     *
+     * @param in The file, in UTF-8.
+     */
+    public TaskJsonReader(InputStream in) throws IOException {
+        mReader = new JsonReader(TaskFileFormat.openText(in));
+    }
+
+    @Override
+    public TaskEntry read() throws IOException {
+        if (!mStarted) {
+            mStarted = true;
+            mReader.beginArray();
+        }
+        if (!mReader.hasNext()) {
+            return null;
+        }
+
+        String key = null;
+        String description = "";
+        int priority = 0;
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            if (mReader.peek() == JsonToken.NULL) {
+                mReader.skipValue();
+            } else if (name.equals(TaskFileFormat.FIELD_KEY)) {
+                key = mReader.nextString();
+            } else if (name.equals(TaskCodec.FIELD_DESCRIPTION)) {
+                description = mReader.nextString();
+            } else if (name.equals(TaskCodec.FIELD_PRIORITY)) {
+                priority = readPriority();
+            } else {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+        return new TaskEntry(key == null || key.isEmpty() ? null : key, description, priority);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    /**
+     * Helper method to read a priority, 0 if it is not a number.
+     */
+    private int readPriority() throws IOException {
+        try {
+            return mReader.nextInt();
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.util.JsonWriter;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes tasks as a JSON array of objects, one object at a time.
+ */
+public class TaskJsonWriter implements TaskFileFormat.TaskWriter {
+
+    /**
+     * Member variable for the tokens of the file
+     */
+    private final JsonWriter mWriter;
+
+    /**
+     * True once the start of the array was written
+     */
+    private boolean mStarted;
+
+    /**
+     * Constructor for the writer.
+     *
+     * @param out The file, it is written in UTF-8.
+     */
+    public TaskJsonWriter(OutputStream out) {
+        mWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void write(TaskEntry task) throws IOException {
+        start();
+        mWriter.beginObject();
+        if (task.getKey() != null) {
+            mWriter.name(TaskFileFormat.FIELD_KEY).value(task.getKey());
+        }
+        mWriter.name(TaskCodec.FIELD_DESCRIPTION).value(task.getDescription());
+        mWriter.name(TaskCodec.FIELD_PRIORITY).value(task.getPriority());
+        mWriter.endObject();
+    }
+
+    /**
+     * Ends the array and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            start();
+            mWriter.endArray();
+        } finally {
+            mWriter.close();
+        }
+    }
+
+    /**
+     * Helper method to start the array before the first task.
+     */
+    private void start() throws IOException {
+        if (!mStarted) {
+            mStarted = true;
+            mWriter.beginArray();
+        }
+    }
+}
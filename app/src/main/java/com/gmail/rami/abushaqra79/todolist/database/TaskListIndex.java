@@ -0,0 +1,50 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskList;
+
+import java.util.List;
+
+/**
+ * The index of the task lists. It only holds the id and name of every list, so all the lists can
+ * be shown without reading any of their tasks, which are kept apart in the shard of each list.
+ * The default list holds the tasks that were saved before there were several lists, and is always
+ * there even though it is not in the index.
+ */
+public interface TaskListIndex {
+
+    /**
+     * Id of the list that is shown unless the user picks another one
+     */
+    String DEFAULT_LIST_ID = "default";
+
+    /**
+     * Generates the id of a new list.
+     *
+     * @return The id for the new list.
+     */
+    String newListId();
+
+    /**
+     * Adds a new list to the index.
+     *
+     * @param list The list to be added, with an id from {@link #newListId()}.
+     * @param listener A listener that is notified when the write is completed or failed.
+     */
+    void addList(TaskList list, TaskStore.WriteListener listener);
+
+    /**
+     * Observes the lists of the index.
+     *
+     * @param listener A listener that receives all the lists on every change, in the order they
+     *                 were added, after the default list.
+     * @return The registration of the listener, to stop observing.
+     */
+    TaskStore.Registration observeLists(ListsListener listener);
+
+    /**
+     * Interface to receive the lists of the index
+     */
+    interface ListsListener {
+        void onListsChanged(List<TaskList> lists);
+    }
+}
@@ -0,0 +1,47 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.Objects;
+
+/**
+ * Merges two edits of the same task, for the versioned updates of every {@link TaskStore}.
+ */
+public final class TaskMerge {
+
+    /**
+     * Private constructor, this class only has static methods
+     */
+    private TaskMerge() {
+    }
+
+    /**
+     * Merges two edits of the same task that were both based on the same version. A value that
+     * only one side changed is taken from that side.
+     *
+     * @param base The task both edits started from.
+     * @param mine The local edit.
+     * @param theirs The newer stored task.
+     * @return The merged task with the version of the stored task, or null if both sides
+     * changed the same value differently.
+     */
+    static TaskEntry mergeChanges(TaskEntry base, TaskEntry mine, TaskEntry theirs) {
+        boolean myDescription = !Objects.equals(base.getDescription(), mine.getDescription());
+        boolean theirDescription = !Objects.equals(base.getDescription(), theirs.getDescription());
+        boolean myPriority = base.getPriority() != mine.getPriority();
+        boolean theirPriority = base.getPriority() != theirs.getPriority();
+
+        if (myDescription && theirDescription
+                && !Objects.equals(mine.getDescription(), theirs.getDescription())) {
+            return null;
+        }
+        if (myPriority && theirPriority && mine.getPriority() != theirs.getPriority()) {
+            return null;
+        }
+
+        return new TaskEntry(theirs.getKey(),
+                myDescription ? mine.getDescription() : theirs.getDescription(),
+                myPriority ? mine.getPriority() : theirs.getPriority(),
+                theirs.getVersion());
+    }
+}
@@ -0,0 +1,124 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of tasks in the order of a {@link TaskFilter}, read by a {@link TaskPager.PageSource}.
+ * The first and last values that were read are kept as the cursors of the pages around it.
+ */
+public class TaskPage {
+
+    /**
+     * Member variable for the tasks of the page, without deleted tasks
+     */
+    private final List<TaskEntry> mTasks;
+
+    /**
+     * Member variable for the first key that was read, which may belong to a deleted task
+     */
+    private final String mFirstKey;
+
+    /**
+     * Member variable for the last key that was read, which may belong to a deleted task
+     */
+    private final String mLastKey;
+
+    /**
+     * Member variable for the priority of the first task that was read, 0 if it is not known
+     */
+    private final int mFirstPriority;
+
+    /**
+     * Member variable for the priority of the last task that was read, 0 if it is not known
+     */
+    private final int mLastPriority;
+
+    /**
+     * True if there are no more tasks past this page in the direction it was read
+     */
+    private final boolean mLast;
+
+    /**
+     * Constructor for a page.
+     *
+     * @param tasks The tasks of the page, in key order.
+     * @param firstKey The first key that was read, or null if nothing was read.
+     * @param lastKey The last key that was read, or null if nothing was read.
+     * @param last True if there are no more tasks past this page in the direction it was read.
+     */
+    public TaskPage(List<TaskEntry> tasks, String firstKey, String lastKey, boolean last) {
+        this(tasks, firstKey, lastKey, 0, 0, last);
+    }
+
+    /**
+     * Constructor for a page that was read in priority order.
+     *
+     * @param tasks The tasks of the page, in priority order.
+     * @param firstKey The first key that was read, or null if nothing was read.
+     * @param lastKey The last key that was read, or null if nothing was read.
+     * @param firstPriority The priority of the first task that was read.
+     * @param lastPriority The priority of the last task that was read.
+     * @param last True if there are no more tasks past this page in the direction it was read.
+     */
+    public TaskPage(List<TaskEntry> tasks, String firstKey, String lastKey, int firstPriority,
+                    int lastPriority, boolean last) {
+        mTasks = Collections.unmodifiableList(tasks);
+        mFirstKey = firstKey;
+        mLastKey = lastKey;
+        mFirstPriority = firstPriority;
+        mLastPriority = lastPriority;
+        mLast = last;
+    }
+
+    /**
+     * Returns the tasks of the page, in the order they were read.
+     */
+    public List<TaskEntry> getTasks() {
+        return mTasks;
+    }
+
+    /**
+     * Returns the first key that was read, or null if nothing was read.
+     */
+    public String getFirstKey() {
+        return mFirstKey;
+    }
+
+    /**
+     * Returns the last key that was read, or null if nothing was read.
+     */
+    public String getLastKey() {
+        return mLastKey;
+    }
+
+    /**
+     * Returns the priority of the first task that was read, 0 if it is not known.
+     */
+    public int getFirstPriority() {
+        return mFirstPriority;
+    }
+
+    /**
+     * Returns the priority of the last task that was read, 0 if it is not known.
+     */
+    public int getLastPriority() {
+        return mLastPriority;
+    }
+
+    /**
+     * Returns true if there are no more tasks past this page in the direction it was read.
+     */
+    public boolean isLast() {
+        return mLast;
+    }
+
+    /**
+     * Returns true if nothing was read.
+     */
+    public boolean isEmpty() {
+        return mFirstKey == null;
+    }
+}
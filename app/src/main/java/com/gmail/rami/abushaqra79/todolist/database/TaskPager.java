@@ -0,0 +1,235 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Loads a list of tasks in pages, so only the part of the list the user is looking at has to
+ * be read. Pages are loaded forwards as the user scrolls towards the end, and at most
+ * a fixed number of pages is kept. When that number is exceeded, the page furthest from the one
+ * just loaded is dropped, and loaded again from its source if the user scrolls back to it.
+ */
+public class TaskPager {
+
+    /**
+     * Member variable for the source of the pages
+     */
+    private final PageSource mSource;
+
+    /**
+     * Member variable for the listener that receives loaded and dropped pages
+     */
+    private final Listener mListener;
+
+    /**
+     * Member variable for the number of tasks read per page
+     */
+    private final int mPageSize;
+
+    /**
+     * Member variable for the maximum number of pages that are kept
+     */
+    private final int mMaxResidentPages;
+
+    /**
+     * Member variable for the kept pages, in list order
+     */
+    private final Deque<TaskPage> mPages = new ArrayDeque<>();
+
+    /**
+     * True while a page is being read
+     */
+    private boolean mLoading;
+
+    /**
+     * True if there may be tasks after the last kept page
+     */
+    private boolean mHasMoreAfter = true;
+
+    /**
+     * True if pages before the first kept page were dropped
+     */
+    private boolean mHasMoreBefore;
+
+    /**
+     * True once the pager is no longer used, pages that are read after that are ignored
+     */
+    private boolean mCancelled;
+
+    /**
+     * Constructor for the pager.
+     *
+     * @param source The source of the pages.
+     * @param pageSize The number of tasks read per page.
+     * @param maxResidentPages The maximum number of pages that are kept, at least 2.
+     * @param listener The listener that receives loaded and dropped pages.
+     */
+    public TaskPager(PageSource source, int pageSize, int maxResidentPages, Listener listener) {
+        if (pageSize < 1 || maxResidentPages < 2) {
+            throw new IllegalArgumentException("pageSize must be at least 1 and maxResidentPages at least 2");
+        }
+        mSource = source;
+        mPageSize = pageSize;
+        mMaxResidentPages = maxResidentPages;
+        mListener = listener;
+    }
+
+    /**
+     * Loads the page after the last kept page, unless a page is being read already or the end
+     * of the list was reached.
+     */
+    public void loadNextPage() {
+        if (mLoading || !mHasMoreAfter || mCancelled) {
+            return;
+        }
+
+        mLoading = true;
+        mSource.loadPageAfter(mPages.peekLast(), mPageSize, new PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                mLoading = false;
+                if (mCancelled) {
+                    return;
+                }
+                if (page.isEmpty()) {
+                    mHasMoreAfter = false;
+                    return;
+                }
+
+                mPages.addLast(page);
+                mHasMoreAfter = !page.isLast();
+                mListener.onPageLoaded(page);
+
+                if (mPages.size() > mMaxResidentPages) {
+                    mHasMoreBefore = true;
+                    mListener.onPageDropped(mPages.removeFirst(), true);
+                }
+
+                // A page of deleted tasks adds nothing to scroll through, so go on reading
+                if (page.getTasks().isEmpty()) {
+                    loadNextPage();
+                }
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                mLoading = false;
+                if (!mCancelled) {
+                    mListener.onPageFailed(exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the page before the first kept page again, if it was dropped and no page is being
+     * read already.
+     */
+    public void loadPreviousPage() {
+        if (mLoading || !mHasMoreBefore || mPages.isEmpty() || mCancelled) {
+            return;
+        }
+
+        mLoading = true;
+        mSource.loadPageBefore(mPages.peekFirst(), mPageSize, new PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                mLoading = false;
+                if (mCancelled) {
+                    return;
+                }
+                if (page.isEmpty()) {
+                    mHasMoreBefore = false;
+                    return;
+                }
+
+                mPages.addFirst(page);
+                mHasMoreBefore = !page.isLast();
+                mListener.onPageLoaded(page);
+
+                if (mPages.size() > mMaxResidentPages) {
+                    mHasMoreAfter = true;
+                    mListener.onPageDropped(mPages.removeLast(), false);
+                }
+
+                if (page.getTasks().isEmpty()) {
+                    loadPreviousPage();
+                }
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                mLoading = false;
+                if (!mCancelled) {
+                    mListener.onPageFailed(exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the pager, when the list is loaded again with a different source. A page that is
+     * being read is ignored when it arrives.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Returns true if there may be tasks after the last kept page.
+     */
+    public boolean hasMoreAfter() {
+        return mHasMoreAfter;
+    }
+
+    /**
+     * Returns true if pages before the first kept page were dropped.
+     */
+    public boolean hasMoreBefore() {
+        return mHasMoreBefore;
+    }
+
+    /**
+     * Returns true while a page is being read.
+     */
+    public boolean isLoading() {
+        return mLoading;
+    }
+
+    /**
+     * Returns the number of pages that are kept.
+     */
+    public int getResidentPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * Interface for reading pages of tasks in the order of a filter. The page after null is the
+     * first page.
+     */
+    public interface PageSource {
+        void loadPageAfter(TaskPage previousPage, int pageSize, PageCallback callback);
+
+        void loadPageBefore(TaskPage nextPage, int pageSize, PageCallback callback);
+    }
+
+    /**
+     * Interface to receive a page that was read, on the main thread
+     */
+    public interface PageCallback {
+        void onPageLoaded(TaskPage page);
+
+        void onPageFailed(Exception exception);
+    }
+
+    /**
+     * Interface to get notified when pages are loaded or dropped
+     */
+    public interface Listener {
+        void onPageLoaded(TaskPage page);
+
+        void onPageDropped(TaskPage page, boolean fromStart);
+
+        void onPageFailed(Exception exception);
+    }
+}
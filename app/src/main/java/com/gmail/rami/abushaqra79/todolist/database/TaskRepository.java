@@ -0,0 +1,731 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The state of the shown list, kept apart from the activity so it outlives a rotation: the
+ * store, the local copy with its queue of writes, the loaded tasks, the search index, and the
+ * sync with the database. The list is loaded once, when the repository is created, and the
+ * activity that is created again only shows what is already in memory.
+ *
+ * The local copy of a remote list is read in pages in the background, and the progress is saved,
+ * so a copy that was not completed goes on from there the next time. The list is paged from the
+ * local copy once it is complete.
+ *
+ * The sync, the copying and the network monitor only run while the repository is attached, so
+ * nothing is downloaded while the app is in the background. Attaching again resumes the sync from the
+ * newest change time it applied. Writes are still sent while detached, like the ones flushed
+ * when the app goes to the background.
+ */
+public class TaskRepository {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = TaskRepository.class.getSimpleName();
+
+    /**
+     * Number of tasks read per page
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Maximum number of pages kept in memory, the pages furthest from the shown part are dropped
+     */
+    private static final int MAX_RESIDENT_PAGES = 5;
+
+    /**
+     * Number of tasks read per page while the search index is loaded
+     */
+    private static final int SEARCH_LOAD_PAGE_SIZE = 500;
+
+    /**
+     * Number of tasks read per page while the local copy is filled
+     */
+    private static final int COPY_PAGE_SIZE = 500;
+
+    /**
+     * Member variable for the id of the list
+     */
+    private final String mListId;
+
+    /**
+     * Member variable for the store the tasks are read from and written to
+     */
+    private final TaskStore mTaskStore;
+
+    /**
+     * Member variable for the local copy of the tasks and the queue of pending writes
+     */
+    private final LocalTaskStore mLocalStore;
+
+    /**
+     * Member variable for the queue that writes the changes to the database
+     */
+    private final WriteBehindQueue mWriteQueue;
+
+    /**
+     * In-memory store of the tasks, kept in sync with the database
+     */
+    private final TaskCache mTaskCache = new TaskCache();
+
+    /**
+     * Member variable for the index of the words of all the tasks, not only the loaded ones
+     */
+    private final TaskSearchIndex mSearchIndex = new TaskSearchIndex();
+
+    /**
+     * Member variable for observing the connection of the store, which is local to the client
+     */
+    private final TaskStore.Registration mConnectionRegistration;
+
+    /**
+     * Member variable for the monitor of the network, null if the store is not remote
+     */
+    private ConnectivityMonitor mConnectivityMonitor;
+
+    /**
+     * Member variable for the listener of the shown list, null while no list is shown
+     */
+    private Listener mListener;
+
+    /**
+     * True while the repository is attached, see {@link #attach()}
+     */
+    private boolean mAttached;
+
+    /**
+     * True once the repository is closed
+     */
+    private boolean mClosed;
+
+    /**
+     * Member variable for the running sync of the list, null while it is not running
+     */
+    private TaskStore.Registration mSyncRegistration;
+
+    /**
+     * True once the sync mark is known, so the sync can be started
+     */
+    private boolean mSyncReady;
+
+    /**
+     * True if the sync failed, so it is started again when the network comes back
+     */
+    private boolean mSyncFailed;
+
+    /**
+     * Member variable for the pager that loads the list as it is scrolled
+     */
+    private TaskPager mPager;
+
+    /**
+     * True if a local copy of the tasks is kept, which is only needed for a remote store
+     */
+    private final boolean mKeepLocalCopy;
+
+    /**
+     * True if the tasks are paged from the local copy, false if they are read from the database
+     * because there is no complete local copy yet
+     */
+    private boolean mPagingLocally;
+
+    /**
+     * True once the local copy holds every task, so the list can be paged from it
+     */
+    private boolean mLocalCopyComplete;
+
+    /**
+     * Member variable for the last key read into the local copy, an empty string if none was
+     * read yet
+     */
+    private String mCopiedKey = "";
+
+    /**
+     * True while a page is read into the local copy
+     */
+    private boolean mCopying;
+
+    /**
+     * Member variable for the keys the sync changed or deleted while a page was read into the
+     * local copy, which the page must not overwrite
+     */
+    private final Set<String> mSyncedWhileCopying = new HashSet<>();
+
+    /**
+     * True once the changes since the local copy was saved are applied
+     */
+    private boolean mInitialSyncComplete;
+
+    /**
+     * True until the first page is loaded or the sync is done, whichever comes first
+     */
+    private boolean mLoading = true;
+
+    /**
+     * Member variable for the newest change time applied to the cache
+     */
+    private long mSyncMark;
+
+    /**
+     * True once loading the search index started
+     */
+    private boolean mSearchIndexLoading;
+
+    /**
+     * Constructor for the repository of a list, which starts loading it right away. The sync
+     * only starts once the repository is attached.
+     *
+     * @param context The application Context, which the repository may outlive an activity with.
+     * @param listId The id of the list, see {@link TaskListIndex}.
+     * @param filter The filter of the list, see {@link #setFilter(TaskFilter)}.
+     */
+    public TaskRepository(Context context, String listId, TaskFilter filter) {
+        mListId = listId;
+        mTaskStore = TaskStores.create(context, listId);
+        mKeepLocalCopy = mTaskStore.isRemote();
+        mTaskCache.setFilter(filter);
+
+        // Changes are saved locally first, and written to the database while it is connected
+        mLocalStore = new LocalTaskStore(context, listId);
+        mWriteQueue = new WriteBehindQueue(mLocalStore, mTaskStore, this::onWriteRejected);
+        mConnectionRegistration = mTaskStore.observeConnection(connected -> mWriteQueue.setOnline(connected));
+
+        // A remote store needs the network, which is watched while the repository is attached,
+        // and its tombstones are removed later by a background job
+        if (mTaskStore.isRemote()) {
+            mConnectivityMonitor = new ConnectivityMonitor(context, this::onNetworkChanged);
+            TombstonePurgeWorker.schedule(context);
+        }
+
+        if (mKeepLocalCopy) {
+            mLocalStore.mirror(mTaskCache);
+        }
+        retrieveTasks();
+    }
+
+    /**
+     * Sets the listener of the shown list. It is cleared when the activity that shows the list
+     * is destroyed, so the repository never holds on to it.
+     *
+     * @param listener The listener, or null to clear it.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Returns the id of the list.
+     */
+    public String getListId() {
+        return mListId;
+    }
+
+    /**
+     * Returns the store the tasks are read from and written to.
+     */
+    public TaskStore getTaskStore() {
+        return mTaskStore;
+    }
+
+    /**
+     * Returns the queue that writes the changes to the database.
+     */
+    public WriteBehindQueue getWriteQueue() {
+        return mWriteQueue;
+    }
+
+    /**
+     * Returns the loaded tasks of the list.
+     */
+    public TaskCache getTaskCache() {
+        return mTaskCache;
+    }
+
+    /**
+     * Returns the index of the words of all the tasks.
+     */
+    public TaskSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
+    /**
+     * Returns true until the first page is loaded or the sync is done.
+     */
+    public boolean isLoading() {
+        return mLoading;
+    }
+
+    /**
+     * Returns true once the changes since the local copy was saved are applied.
+     */
+    public boolean isInitialSyncComplete() {
+        return mInitialSyncComplete;
+    }
+
+    /**
+     * Starts the sync and the network monitor. The sync goes on from the newest change it
+     * applied before it was detached, so only the changes made meanwhile are downloaded.
+     */
+    public void attach() {
+        if (mAttached || mClosed) {
+            return;
+        }
+        mAttached = true;
+
+        if (mConnectivityMonitor != null) {
+            mConnectivityMonitor.start();
+        }
+        if (mSyncReady) {
+            syncTasks(mSyncMark);
+            copyTasks();
+        }
+    }
+
+    /**
+     * Stops the sync and the network monitor, when the list is no longer shown. The counters of
+     * the versioned updates so far are logged.
+     */
+    public void detach() {
+        if (!mAttached) {
+            return;
+        }
+        mAttached = false;
+
+        TransactionStats stats = mTaskStore.getTransactionStats();
+        Log.d(TAG, "Updates of list " + mListId + ": " + stats.getConflicts() + " conflict(s), "
+                + stats.getRejected() + " rejected, " + stats.getRetries() + " retried");
+
+        if (mSyncRegistration != null) {
+            mSyncRegistration.remove();
+            mSyncRegistration = null;
+        }
+        if (mConnectivityMonitor != null) {
+            mConnectivityMonitor.stop();
+        }
+    }
+
+    /**
+     * Stops everything for good, when the list is no longer needed. The held changes are saved,
+     * and written the next time the list is shown.
+     */
+    public void close() {
+        detach();
+        mClosed = true;
+        mListener = null;
+        mConnectionRegistration.remove();
+        if (mPager != null) {
+            mPager.cancel();
+        }
+        mWriteQueue.flush();
+    }
+
+    /**
+     * Changes which tasks are loaded and their order, and reads them again.
+     *
+     * @param filter The new filter.
+     */
+    public void setFilter(TaskFilter filter) {
+        mTaskCache.setFilter(filter);
+        startPaging();
+    }
+
+    /**
+     * Returns a source that reads the tasks matching the filter a page at a time, from the local
+     * copy if it is complete, or from the database.
+     *
+     * @param filter The filter of the pages.
+     * @return The source of the pages.
+     */
+    public TaskPager.PageSource pages(TaskFilter filter) {
+        return mPagingLocally ? mLocalStore.pages(filter) : mTaskStore.pages(filter);
+    }
+
+    /**
+     * Loads the page after the loaded part of the list, if there is one.
+     */
+    public void loadNextPage() {
+        if (mPager != null) {
+            mPager.loadNextPage();
+        }
+    }
+
+    /**
+     * Loads the page before the loaded part of the list, if there is one.
+     */
+    public void loadPreviousPage() {
+        if (mPager != null) {
+            mPager.loadPreviousPage();
+        }
+    }
+
+    /**
+     * Starts loading the search index, unless it is loaded already. The index is filled a page
+     * at a time, and the listener is told as it fills up.
+     */
+    public void loadSearchIndex() {
+        if (!mSearchIndexLoading) {
+            mSearchIndexLoading = true;
+            loadSearchIndex(pages(TaskFilter.ALL), null);
+        }
+    }
+
+    /**
+     * This method is called to retrieve the data. The list is loaded a page at a time as it is
+     * scrolled, from the tasks saved on the device without waiting for the network, or from the
+     * database while the local copy is not complete. Then only the changed tasks are applied to
+     * the cache by the database sync.
+     */
+    private void retrieveTasks() {
+        mLocalStore.loadSyncMark(savedSyncMark -> mLocalStore.loadCopiedKey(copiedKey -> {
+            // Tombstones older than the retention are purged, so the deletes since such an old
+            // sync mark may be gone, and the list is read again
+            long syncMark = System.currentTimeMillis() - savedSyncMark
+                    > TombstonePurgeWorker.TOMBSTONE_RETENTION_MILLIS ? 0 : savedSyncMark;
+            mPagingLocally = mKeepLocalCopy && syncMark > 0 && copiedKey == null;
+            mLocalCopyComplete = mPagingLocally;
+            startPaging();
+            if (syncMark > 0) {
+                // Only the changes since the local copy was saved are needed, and the rest of a
+                // copy that is not complete is read in the background
+                mCopiedKey = copiedKey == null ? "" : copiedKey;
+                onSyncMarkKnown(syncMark);
+            } else {
+                // There is no local copy that can be synced, so it is read again from the start,
+                // and changes from now on are synced as they come
+                mLocalStore.clearTasks();
+                mTaskStore.readServerTime(this::onSyncMarkKnown);
+            }
+        }));
+    }
+
+    /**
+     * Helper method to keep the time the sync starts from, and start it and the copying if the
+     * repository is attached.
+     */
+    private void onSyncMarkKnown(long syncMark) {
+        if (mClosed) {
+            return;
+        }
+        mSyncMark = syncMark;
+        mSyncReady = true;
+        if (mKeepLocalCopy) {
+            // The progress goes first, so a copy that was cleared is never taken as complete
+            mLocalStore.saveCopiedKey(mLocalCopyComplete ? null : mCopiedKey);
+            mLocalStore.saveSyncMark(syncMark);
+        }
+        if (mAttached) {
+            syncTasks(syncMark);
+            copyTasks();
+        }
+    }
+
+    /**
+     * This method is called to read the rest of the local copy from the database a page at a
+     * time, after the last key read into it. The progress is saved with every page, and the
+     * sync keeps the part that was read up to date meanwhile.
+     */
+    private void copyTasks() {
+        if (!mKeepLocalCopy || mLocalCopyComplete || mCopying || !mAttached || mClosed) {
+            return;
+        }
+        mCopying = true;
+        mSyncedWhileCopying.clear();
+
+        TaskPage previousPage = mCopiedKey.isEmpty() ? null
+                : new TaskPage(Collections.emptyList(), mCopiedKey, mCopiedKey, false);
+        TaskPager.PageSource source = mTaskStore.pages(TaskFilter.ALL);
+        source.loadPageAfter(previousPage, COPY_PAGE_SIZE, new TaskPager.PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                mCopying = false;
+                if (mClosed) {
+                    return;
+                }
+                // The sync is newer than the page for the tasks it changed meanwhile
+                for (TaskEntry task : page.getTasks()) {
+                    if (!mSyncedWhileCopying.contains(task.getKey())) {
+                        mLocalStore.saveTask(task);
+                    }
+                }
+                mSyncedWhileCopying.clear();
+                if (page.isLast()) {
+                    // The pages that are read from now on come from the complete local copy
+                    mLocalCopyComplete = true;
+                    mPagingLocally = true;
+                    mLocalStore.saveCopiedKey(null);
+                } else {
+                    mCopiedKey = page.getLastKey();
+                    mLocalStore.saveCopiedKey(mCopiedKey);
+                    copyTasks();
+                }
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                // Copying goes on when the network comes back, or the next time the list is shown
+                Log.e(TAG, "Failed to copy the list", exception);
+                mCopying = false;
+                mSyncedWhileCopying.clear();
+            }
+        });
+    }
+
+    /**
+     * This method is called to start loading the list a page at a time, with the filter of the
+     * cache. The pages are read from the local copy, or from the database if there is no
+     * complete local copy.
+     */
+    private void startPaging() {
+        if (mPager != null) {
+            mPager.cancel();
+        }
+
+        // The pager keeps its source, even if the local copy is completed meanwhile
+        boolean pagingLocally = mPagingLocally;
+        TaskFilter filter = mTaskCache.getFilter();
+        mPager = new TaskPager(pages(filter), PAGE_SIZE, MAX_RESIDENT_PAGES, new TaskPager.Listener() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                if (pagingLocally) {
+                    mTaskCache.load(page.getTasks(), !mInitialSyncComplete);
+                } else {
+                    for (TaskEntry task : page.getTasks()) {
+                        mTaskCache.put(task);
+                    }
+                }
+                onLoadStateChanged();
+            }
+
+            @Override
+            public void onPageDropped(TaskPage page, boolean fromStart) {
+                List<TaskEntry> tasks = page.getTasks();
+                if (tasks.isEmpty()) {
+                    return;
+                }
+
+                if (fromStart) {
+                    mTaskCache.evict(null, tasks.get(tasks.size() - 1));
+                } else {
+                    mTaskCache.evict(tasks.get(0), null);
+                }
+                onLoadStateChanged();
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                Log.e(TAG, "Failed to load a page of the list", exception);
+                onLoadStateChanged();
+            }
+        });
+        mPager.loadNextPage();
+    }
+
+    /**
+     * This method is called to keep the cache in sync with the database once the saved tasks
+     * are shown. Only the tasks that changed since the given time are downloaded.
+     *
+     * @param syncMark The newest change time in the local copy, or the time paging started.
+     */
+    private void syncTasks(long syncMark) {
+        if (mSyncRegistration != null) {
+            mSyncRegistration.remove();
+        }
+        mSyncFailed = false;
+        mSyncRegistration = mTaskStore.syncTasks(mTaskCache, syncMark, new TaskStore.SyncListener() {
+            @Override
+            public void onInitialSyncComplete() {
+                // Deletes arrived as tombstones, so the other saved tasks are up to date
+                mInitialSyncComplete = true;
+                mTaskCache.confirmStale();
+                onLoadStateChanged();
+            }
+
+            @Override
+            public void onSyncMarkChanged(long newSyncMark) {
+                mSyncMark = newSyncMark;
+                // The changes are saved to the local copy, also to the part that is not read yet
+                if (mKeepLocalCopy) {
+                    mLocalStore.saveSyncMark(newSyncMark);
+                }
+            }
+
+            @Override
+            public void onTaskChanged(TaskEntry task) {
+                // The task may not match the filter, or be in a part of the list that is not loaded
+                if (mKeepLocalCopy) {
+                    mLocalStore.saveTask(task);
+                    keepSyncedKey(task.getKey());
+                }
+                mSearchIndex.put(task);
+                if (mListener != null) {
+                    mListener.onSearchIndexChanged();
+                }
+            }
+
+            @Override
+            public void onTaskDeleted(String key) {
+                // The task may be in a part of the list that is not loaded
+                if (mKeepLocalCopy) {
+                    mLocalStore.deleteTask(key);
+                    keepSyncedKey(key);
+                }
+                mSearchIndex.remove(key);
+                if (mListener != null) {
+                    mListener.onTaskDeleted(key);
+                }
+            }
+
+            @Override
+            public void onSyncFailed(Exception exception) {
+                Log.e(TAG, "Failed to sync the list", exception);
+                mSyncFailed = true;
+                onLoadStateChanged();
+            }
+        });
+    }
+
+    /**
+     * Helper method to keep a key the sync changed while a page is read into the local copy.
+     */
+    private void keepSyncedKey(String key) {
+        if (mCopying) {
+            mSyncedWhileCopying.add(key);
+        }
+    }
+
+    /**
+     * Helper method to tell the listener that pages were loaded or dropped, or that loading or
+     * syncing the list is done.
+     */
+    private void onLoadStateChanged() {
+        mLoading = false;
+        if (mListener != null) {
+            mListener.onLoadStateChanged();
+        }
+    }
+
+    /**
+     * This method is called when the network of the device changes. When the network comes back,
+     * a sync that failed meanwhile is started again, and the queued changes are written.
+     *
+     * @param state One of the ConnectivityMonitor.NETWORK_ constants.
+     */
+    private void onNetworkChanged(int state) {
+        mWriteQueue.setNetworkState(state);
+        if (state != ConnectivityMonitor.NETWORK_NONE && mSyncFailed && mAttached) {
+            syncTasks(mSyncMark);
+        }
+        if (state != ConnectivityMonitor.NETWORK_NONE && mSyncReady) {
+            copyTasks();
+        }
+        if (mListener != null) {
+            mListener.onNetworkChanged(state);
+        }
+    }
+
+    /**
+     * Helper method to add the tasks after the given page to the search index, a page at a time.
+     * Changes that arrive meanwhile are applied to the index right away, and win over the pages.
+     */
+    private void loadSearchIndex(TaskPager.PageSource source, TaskPage previousPage) {
+        source.loadPageAfter(previousPage, SEARCH_LOAD_PAGE_SIZE, new TaskPager.PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                if (mClosed) {
+                    return;
+                }
+                mSearchIndex.load(page.getTasks());
+                if (page.isLast()) {
+                    mSearchIndex.finishLoad();
+                } else {
+                    loadSearchIndex(source, page);
+                }
+                if (mListener != null) {
+                    mListener.onSearchIndexChanged();
+                }
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                // Loading starts again the next time the list is searched
+                Log.e(TAG, "Failed to load the search index", exception);
+                mSearchIndexLoading = false;
+            }
+        });
+    }
+
+    /**
+     * Called when the database refuses a queued change, to undo it in the list. An update is
+     * only undone if no newer values arrived from the database meanwhile.
+     *
+     * @param write The refused change.
+     * @param exception The reason it was refused.
+     */
+    private void onWriteRejected(PendingWrite write, Exception exception) {
+        TaskEntry current = mTaskCache.get(write.getKey());
+        TaskEntry indexed = mSearchIndex.get(write.getKey());
+
+        switch (write.getType()) {
+            case PendingWrite.TYPE_ADD:
+                mTaskCache.remove(write.getKey());
+                mSearchIndex.remove(write.getKey());
+                break;
+            case PendingWrite.TYPE_UPDATE:
+                if (hasWrittenValues(current, write)) {
+                    mTaskCache.update(write.getBase());
+                }
+                if (hasWrittenValues(indexed, write)) {
+                    mSearchIndex.put(write.getBase());
+                }
+                break;
+            case PendingWrite.TYPE_DELETE:
+            case PendingWrite.TYPE_COMPLETE:
+                if (current == null) {
+                    mTaskCache.put(write.getTask());
+                }
+                if (indexed == null) {
+                    mSearchIndex.put(write.getTask());
+                }
+                break;
+        }
+        if (mListener != null) {
+            mListener.onWriteRejected(write, exception);
+        }
+    }
+
+    /**
+     * Helper method to check if a task still has the values of a refused update, so no newer
+     * values arrived since.
+     */
+    private static boolean hasWrittenValues(TaskEntry task, PendingWrite write) {
+        return task != null && task.getVersion() == write.getTask().getVersion()
+                && Objects.equals(task.getDescription(), write.getTask().getDescription())
+                && task.getPriority() == write.getTask().getPriority();
+    }
+
+    /**
+     * Interface to update the shown list when the state of the repository changes. Changes of
+     * single loaded tasks are observed on the cache.
+     */
+    public interface Listener {
+        void onLoadStateChanged();
+
+        void onSearchIndexChanged();
+
+        void onTaskDeleted(String key);
+
+        void onNetworkChanged(int state);
+
+        void onWriteRejected(PendingWrite write, Exception exception);
+    }
+}
@@ -0,0 +1,364 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An in-memory index of the words in the task descriptions, for searching the whole list while
+ * only a few pages of it are loaded. The index is kept up to date one task at a time, as tasks
+ * are added, changed or deleted, so a search never has to go through every description.
+ *
+ * Words are compared without case and accents, and Arabic words without their diacritics, so
+ * the different forms of alef, yeh and teh marbuta match each other. Every word of a query
+ * matches the words that start with it, so results are shown while the user is typing.
+ */
+public class TaskSearchIndex {
+
+    /**
+     * The tatweel, which only stretches Arabic words
+     */
+    private static final char TATWEEL = 'ـ';
+
+    /**
+     * Arabic letters that are written in more than one way, and the form they are indexed as
+     */
+    private static final char ALEF = 'ا';
+    private static final char ALEF_WASLA = 'ٱ';
+    private static final char YEH = 'ي';
+    private static final char ALEF_MAKSURA = 'ى';
+    private static final char HEH = 'ه';
+    private static final char TEH_MARBUTA = 'ة';
+
+    /**
+     * Number of indexed words a query word may match for a task to be looked up in their keys,
+     * above that the words of the task are compared instead
+     */
+    private static final int MAX_LOOKUP_WORDS = 4;
+
+    /**
+     * Member variable for the keys of the tasks that contain each word, in word order
+     */
+    private final NavigableMap<String, Set<String>> mKeysByWord = new TreeMap<>();
+
+    /**
+     * Member variable for the indexed tasks mapped by their keys
+     */
+    private final Map<String, TaskEntry> mTasks = new HashMap<>();
+
+    /**
+     * Member variable for the words of every indexed task
+     */
+    private final Map<String, String[]> mWords = new HashMap<>();
+
+    /**
+     * Member variable for the keys of the tasks removed while the index is being loaded, so a
+     * page that was read before the removal does not bring them back
+     */
+    private final Set<String> mRemovedKeys = new HashSet<>();
+
+    /**
+     * True until the initial load of the index is finished
+     */
+    private boolean mLoading = true;
+
+    /**
+     * Adds a page of the initial load. Tasks that are already in the index, or were removed
+     * since the load started, are skipped, since the change that was applied is newer.
+     *
+     * @param tasks The tasks of the page.
+     */
+    public void load(List<TaskEntry> tasks) {
+        for (TaskEntry task : tasks) {
+            if (!mTasks.containsKey(task.getKey()) && !mRemovedKeys.contains(task.getKey())) {
+                put(task);
+            }
+        }
+    }
+
+    /**
+     * Marks the initial load as finished. From now on, the index only changes through
+     * {@link #put(TaskEntry)} and {@link #remove(String)}.
+     */
+    public void finishLoad() {
+        mLoading = false;
+        mRemovedKeys.clear();
+    }
+
+    /**
+     * Returns true once the initial load is finished.
+     */
+    public boolean isLoaded() {
+        return !mLoading;
+    }
+
+    /**
+     * Adds a task, or replaces the indexed values of the task with the same key.
+     *
+     * @param task The new or changed task, it must have a key.
+     */
+    public void put(TaskEntry task) {
+        String key = task.getKey();
+        TaskEntry current = mTasks.put(key, task);
+        mRemovedKeys.remove(key);
+        if (current != null && current.getDescription().equals(task.getDescription())) {
+            // Only other values changed, so the words are the same
+            return;
+        }
+
+        if (current != null) {
+            removeWords(key);
+        }
+        String[] words = tokenize(task.getDescription());
+        mWords.put(key, words);
+        for (String word : words) {
+            Set<String> keys = mKeysByWord.get(word);
+            if (keys == null) {
+                keys = new HashSet<>();
+                mKeysByWord.put(word, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Removes the task with the given key.
+     *
+     * @param key The key of the task to be removed.
+     */
+    public void remove(String key) {
+        if (mLoading) {
+            mRemovedKeys.add(key);
+        }
+        if (mTasks.remove(key) != null) {
+            removeWords(key);
+        }
+    }
+
+    /**
+     * Returns the indexed task with the given key, or null if it is not in the index.
+     */
+    public TaskEntry get(String key) {
+        return mTasks.get(key);
+    }
+
+    /**
+     * Returns the number of indexed tasks.
+     */
+    public int size() {
+        return mTasks.size();
+    }
+
+    /**
+     * Finds the tasks that have a word starting with every word of the query. The tasks of the
+     * query word that matches the fewest tasks are checked against the other query words, so the
+     * search only goes through a small part of the index. Only the first matches in list order
+     * are kept while searching, so a common word does not sort every task.
+     *
+     * @param query The text the user typed.
+     * @param limit The maximum number of tasks returned.
+     * @return The first matching tasks in list order, empty if the query has no words.
+     */
+    public List<TaskEntry> search(String query, int limit) {
+        String[] terms = tokenize(query);
+        if (terms.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Term[] matches = new Term[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            matches[i] = new Term(terms[i], wordsStartingWith(terms[i]).values());
+        }
+        Arrays.sort(matches, (first, second) -> Integer.compare(first.mSize, second.mSize));
+
+        // The last of the kept matches in list order is on top, so it is the one replaced
+        PriorityQueue<String> firstKeys = new PriorityQueue<>(limit,
+                (first, second) -> TaskCache.compareKeys(second, first));
+        // A task can have more than one word that starts with the rarest term
+        Set<String> checked = matches[0].mKeys.size() > 1 ? new HashSet<>() : null;
+        for (Set<String> keys : matches[0].mKeys) {
+            for (String key : keys) {
+                if (firstKeys.size() == limit && TaskCache.compareKeys(key, firstKeys.peek()) >= 0) {
+                    continue;
+                }
+                if ((checked != null && !checked.add(key)) || !matchesOthers(key, matches)) {
+                    continue;
+                }
+                firstKeys.add(key);
+                if (firstKeys.size() > limit) {
+                    firstKeys.poll();
+                }
+            }
+        }
+
+        List<TaskEntry> results = new ArrayList<>(firstKeys.size());
+        for (String key : firstKeys) {
+            results.add(mTasks.get(key));
+        }
+        results.sort((first, second) -> TaskCache.compareKeys(first.getKey(), second.getKey()));
+        return results;
+    }
+
+    /**
+     * Splits a text into the words it is indexed by. Accents and Arabic diacritics are dropped,
+     * Arabic letters with more than one form are written in one of them, all digits become
+     * ASCII digits, and letters become lower case.
+     *
+     * @param text The description of a task, or a query.
+     * @return The distinct words of the text, in the order they appear.
+     */
+    static String[] tokenize(String text) {
+        // The decomposed form has accents and hamzas as separate marks
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        Set<String> words = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == TATWEEL) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(fold(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Helper method to write a letter or digit in the form it is indexed as.
+     */
+    private static char fold(char c) {
+        if (Character.isDigit(c)) {
+            return (char) ('0' + Character.digit(c, 10));
+        }
+        switch (c) {
+            case ALEF_WASLA:
+                return ALEF;
+            case ALEF_MAKSURA:
+                return YEH;
+            case TEH_MARBUTA:
+                return HEH;
+            default:
+                return Character.toLowerCase(c);
+        }
+    }
+
+    /**
+     * Helper method to return the indexed words that start with the given prefix.
+     */
+    private NavigableMap<String, Set<String>> wordsStartingWith(String prefix) {
+        return mKeysByWord.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Helper method to check if a task has a word starting with every term but the first.
+     */
+    private boolean matchesOthers(String key, Term[] terms) {
+        String[] words = null;
+        for (int i = 1; i < terms.length; i++) {
+            Term term = terms[i];
+            if (term.mKeys.size() <= MAX_LOOKUP_WORDS) {
+                if (!term.contains(key)) {
+                    return false;
+                }
+            } else {
+                // Looking the task up in the keys of many words costs more than its own words
+                if (words == null) {
+                    words = mWords.get(key);
+                }
+                if (!startsAnyWord(term.mText, words)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to check if the term is the start of one of the words.
+     */
+    private static boolean startsAnyWord(String term, String[] words) {
+        for (String word : words) {
+            if (word.startsWith(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to remove a task from the keys of its words, and words no task has anymore.
+     */
+    private void removeWords(String key) {
+        for (String word : mWords.remove(key)) {
+            Set<String> keys = mKeysByWord.get(word);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                mKeysByWord.remove(word);
+            }
+        }
+    }
+
+    /**
+     * A word of a query and the keys of the tasks it matches.
+     */
+    private static class Term {
+
+        /**
+         * The word of the query
+         */
+        final String mText;
+
+        /**
+         * The keys of the tasks of every indexed word that starts with the query word, copied
+         * out of the index since its views find their range again on every use
+         */
+        final List<Set<String>> mKeys;
+
+        /**
+         * The number of keys, counting a task once for every word it matches
+         */
+        final int mSize;
+
+        Term(String text, Collection<Set<String>> keys) {
+            mText = text;
+            mKeys = new ArrayList<>(keys);
+            int size = 0;
+            for (Set<String> wordKeys : mKeys) {
+                size += wordKeys.size();
+            }
+            mSize = size;
+        }
+
+        /**
+         * Returns true if the task with the given key has a word starting with the term.
+         */
+        boolean contains(String key) {
+            for (Set<String> wordKeys : mKeys) {
+                if (wordKeys.contains(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
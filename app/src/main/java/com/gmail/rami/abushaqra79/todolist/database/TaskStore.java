@@ -0,0 +1,166 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+/**
+ * A place the tasks list is stored in. The app only talks to its tasks through this interface,
+ * so the remote database can be swapped for a local one, for example to measure the data path
+ * without a network. The backend is chosen once at startup by {@link TaskStores}.
+ *
+ * Listeners are called on the thread the app uses for the list, which is the main thread on a
+ * device. A store may call them before the method that was given the listener returns.
+ */
+public interface TaskStore {
+
+    /**
+     * Returns true if the store is shared with other devices. The app then keeps a local copy
+     * of the tasks, so the list can be shown before the store answers.
+     */
+    boolean isRemote();
+
+    /**
+     * Generates the key of a new task, sorting after the tasks added before it.
+     *
+     * @return The key for the new task.
+     */
+    String newTaskKey();
+
+    /**
+     * Adds a new task, or replaces the task with the same key.
+     *
+     * @param task The task to be added, it must have a key.
+     * @param listener A listener that is notified when the write is completed or failed.
+     */
+    void addTask(TaskEntry task, WriteListener listener);
+
+    /**
+     * Updates a task if its stored version is still the version of the edited task. Otherwise
+     * the changes of both are merged when they touch different values, and the update fails with
+     * a {@link TaskConflictException} when they don't, or when the task was deleted.
+     *
+     * @param base The task as it was before it was edited.
+     * @param edited The new values of the task.
+     * @param listener A listener that is notified when the write is completed or failed.
+     */
+    void updateSelectedTask(TaskEntry base, TaskEntry edited, WriteListener listener);
+
+    /**
+     * Returns the counters of the versioned updates made through
+     * {@link #updateSelectedTask(TaskEntry, TaskEntry, WriteListener)}.
+     */
+    TransactionStats getTransactionStats();
+
+    /**
+     * Writes all the deletes, completions and updates of a batch. Completed tasks are moved to
+     * the archive of the list, and are removed from the list like deleted tasks.
+     *
+     * @param batch The changes to be written.
+     * @param listener A listener that is notified once, when the batch is completed or failed.
+     */
+    void commitBatch(TaskBatch batch, WriteListener listener);
+
+    /**
+     * Reads a single task.
+     *
+     * @param key The key of the task.
+     * @param listener A listener that receives the task, or null if it does not exist.
+     */
+    void readSelectedTask(String key, TaskListener listener);
+
+    /**
+     * Returns a source that reads the tasks that match the filter, a page at a time in the order
+     * of the filter.
+     *
+     * @param filter The filter of the list.
+     * @return The source of the pages.
+     */
+    TaskPager.PageSource pages(TaskFilter filter);
+
+    /**
+     * Returns a source that reads the completed tasks of the list, a page at a time in key order.
+     * They are not part of the list, so they are never synced.
+     *
+     * @return The source of the pages.
+     */
+    TaskPager.PageSource archivedPages();
+
+    /**
+     * Keeps the given cache in sync with the stored tasks. The changes made since the given
+     * sync mark are applied first, and then every change as it is made.
+     *
+     * @param cache The cache that receives the changes.
+     * @param syncMark The newest change time that is already known, or 0 for a full sync.
+     * @param listener A listener that is notified about the state of the sync.
+     * @return The registration of the sync, to stop it.
+     */
+    Registration syncTasks(TaskCache cache, long syncMark, SyncListener listener);
+
+    /**
+     * Observes whether the store can be written to right now.
+     *
+     * @param listener A listener that is notified on every change of the connection.
+     * @return The registration of the listener, to stop observing.
+     */
+    Registration observeConnection(ConnectionListener listener);
+
+    /**
+     * Reads the current time of the store, which the change times of the tasks are based on.
+     *
+     * @param listener A listener that receives the time in milliseconds.
+     */
+    void readServerTime(ServerTimeListener listener);
+
+    /**
+     * Interface for a listener or sync that was attached to a store
+     */
+    interface Registration {
+        void remove();
+    }
+
+    /**
+     * Interface to get notified when a write to the store is completed or failed
+     */
+    interface WriteListener {
+        void onWriteComplete();
+
+        void onWriteFailed(Exception exception);
+    }
+
+    /**
+     * Interface to receive a task that was read from the store
+     */
+    interface TaskListener {
+        void onTaskRead(TaskEntry task);
+
+        void onReadFailed(Exception exception);
+    }
+
+    /**
+     * Interface to get notified when the connection to the store changes
+     */
+    interface ConnectionListener {
+        void onConnectionChanged(boolean connected);
+    }
+
+    /**
+     * Interface to receive the current time of the store
+     */
+    interface ServerTimeListener {
+        void onServerTime(long serverTime);
+    }
+
+    /**
+     * Interface to get notified about the state of a tasks sync
+     */
+    interface SyncListener {
+        void onInitialSyncComplete();
+
+        void onSyncMarkChanged(long syncMark);
+
+        void onTaskChanged(TaskEntry task);
+
+        void onTaskDeleted(String key);
+
+        void onSyncFailed(Exception exception);
+    }
+}
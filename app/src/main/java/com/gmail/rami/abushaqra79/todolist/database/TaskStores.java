@@ -0,0 +1,133 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.gmail.rami.abushaqra79.todolist.BuildConfig;
+
+/**
+ * Creates the {@link TaskStore} the app runs against. The backend is set at build time with the
+ * taskStore Gradle property, for example -PtaskStore=memory, and is the remote database unless
+ * it is set.
+ */
+public final class TaskStores {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = TaskStores.class.getSimpleName();
+
+    /**
+     * Name of the backend that stores the tasks in the remote database
+     */
+    public static final String FIREBASE = "firebase";
+
+    /**
+     * Name of the backend that stores the tasks in a SQLite database on the device
+     */
+    public static final String SQLITE = "sqlite";
+
+    /**
+     * Name of the backend that keeps the tasks in memory until the app is closed
+     */
+    public static final String MEMORY = "memory";
+
+    /**
+     * Private constructor, this class only has static methods
+     */
+    private TaskStores() {
+    }
+
+    /**
+     * Creates the store of a list in the backend the app was built with.
+     *
+     * @param context The current Context
+     * @param listId The id of the list, see {@link TaskListIndex}.
+     * @return The new store.
+     */
+    public static TaskStore create(Context context, String listId) {
+        return create(context, BuildConfig.TASK_STORE, listId);
+    }
+
+    /**
+     * Creates the store of a list in a backend.
+     *
+     * @param context The current Context
+     * @param backend One of FIREBASE, SQLITE or MEMORY.
+     * @param listId The id of the list, see {@link TaskListIndex}.
+     * @return The new store.
+     */
+    public static TaskStore create(Context context, String backend, String listId) {
+        switch (backend) {
+            case SQLITE:
+                return new SQLiteTaskStore(context, listId);
+            case MEMORY:
+                // The store only lives as long as the list is shown
+                return new InMemoryTaskStore();
+            case FIREBASE:
+                return createRemoteStore(listId);
+            default:
+                throw new IllegalArgumentException("Unknown task store: " + backend);
+        }
+    }
+
+    /**
+     * Creates the index of the lists of the backend the app was built with.
+     *
+     * @param context The current Context
+     * @return The new index.
+     */
+    public static TaskListIndex createListIndex(Context context) {
+        return BuildConfig.TASK_STORE.equals(FIREBASE) ? new RemoteTaskListIndex()
+                : new LocalTaskListIndex(context);
+    }
+
+    /**
+     * Helper method to create the store of a list in the remote database. For the default list,
+     * the tasks of the old single node are moved to its shard, and tasks that still use numeric
+     * keys are moved to time-ordered keys. Then the tasks of every list that are still in the
+     * first format are rewritten in the compact one. None of them writes anything once done.
+     */
+    private static TaskStore createRemoteStore(String listId) {
+        ReadWriteDB readWriteDB = new ReadWriteDB(listId);
+        TaskStore.WriteListener formatListener = new TaskStore.WriteListener() {
+            @Override
+            public void onWriteComplete() {
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                Log.e(TAG, "Failed to migrate the stored format of tasks", exception);
+            }
+        };
+        if (!listId.equals(TaskListIndex.DEFAULT_LIST_ID)) {
+            readWriteDB.migrateWireFormat(formatListener);
+            return readWriteDB;
+        }
+
+        // The format is only migrated after the keys, so it never writes back a moved task
+        TaskStore.WriteListener keysListener = new TaskStore.WriteListener() {
+            @Override
+            public void onWriteComplete() {
+                readWriteDB.migrateWireFormat(formatListener);
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                Log.e(TAG, "Failed to migrate task keys", exception);
+            }
+        };
+        ReadWriteDB.migrateLegacyTasks(new TaskStore.WriteListener() {
+            @Override
+            public void onWriteComplete() {
+                readWriteDB.migrateNumericKeys(keysListener);
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                Log.e(TAG, "Failed to move tasks to the default list", exception);
+            }
+        });
+        return readWriteDB;
+    }
+}
@@ -0,0 +1,157 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskList;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A background job that removes old tombstones from the shards of all the lists in the remote
+ * database. Deleting tasks only leaves tombstones, which are small and written in one batch
+ * while the user waits, and they are removed here later, in large chunks, while the device is
+ * idle and charging on an unmetered network.
+ */
+public class TombstonePurgeWorker extends Worker {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = TombstonePurgeWorker.class.getSimpleName();
+
+    /**
+     * How long a tombstone is kept, so devices that were offline meanwhile still sync the delete
+     */
+    public static final long TOMBSTONE_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    /**
+     * Unique name of the scheduled job
+     */
+    private static final String WORK_NAME = "purge_tombstones";
+
+    /**
+     * Number of days between two runs of the job
+     */
+    private static final long PURGE_INTERVAL_DAYS = 1;
+
+    /**
+     * Time the job waits for the purge, within the time the system gives a job
+     */
+    private static final long PURGE_TIMEOUT_MINUTES = 9;
+
+    /**
+     * Member variable for the failure of the purge, null if it did not fail
+     */
+    private volatile Exception mFailure;
+
+    /**
+     * Constructor for the job, called by the system.
+     *
+     * @param context The application Context
+     * @param params The parameters of the job.
+     */
+    public TombstonePurgeWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the job to run once a day while the device is idle and charging. A job that is
+     * already scheduled is kept as it is.
+     *
+     * @param context The current Context
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(TombstonePurgeWorker.class,
+                PURGE_INTERVAL_DAYS, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Purges the lists one after the other, and waits for them on the thread of the job. The
+     * database client calls back on the main thread.
+     */
+    @NonNull
+    @Override
+    public Result doWork() {
+        long deletedBefore = System.currentTimeMillis() - TOMBSTONE_RETENTION_MILLIS;
+        CountDownLatch done = new CountDownLatch(1);
+
+        TaskListIndex listIndex = new RemoteTaskListIndex();
+        TaskStore.Registration[] registration = new TaskStore.Registration[1];
+        registration[0] = listIndex.observeLists(new TaskListIndex.ListsListener() {
+            /**
+             * True once the lists were read, later changes are left to the next run
+             */
+            private boolean mRead;
+
+            @Override
+            public void onListsChanged(List<TaskList> lists) {
+                if (mRead) {
+                    return;
+                }
+                mRead = true;
+                purgeLists(lists.iterator(), deletedBefore, done);
+            }
+        });
+
+        try {
+            if (!done.await(PURGE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                // What was purged stays purged, the next run goes on with the rest
+                return Result.retry();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        } finally {
+            if (registration[0] != null) {
+                registration[0].remove();
+            }
+        }
+        return mFailure == null ? Result.success() : Result.retry();
+    }
+
+    /**
+     * Helper method to purge the next list, and the ones after it once it is done.
+     */
+    private void purgeLists(Iterator<TaskList> lists, long deletedBefore, CountDownLatch done) {
+        if (!lists.hasNext() || isStopped()) {
+            done.countDown();
+            return;
+        }
+
+        new ReadWriteDB(lists.next().getId()).purgeTombstones(deletedBefore, new TaskStore.WriteListener() {
+            @Override
+            public void onWriteComplete() {
+                purgeLists(lists, deletedBefore, done);
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                Log.e(TAG, "Failed to purge tombstones", exception);
+                mFailure = exception;
+                done.countDown();
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the versioned task updates made by a {@link TaskStore}. Only a remote store
+ * retries an update.
+ */
+public class TransactionStats {
+
+    /**
+     * Member variable for the number of updates that found a newer version in the database
+     */
+    private final AtomicLong mConflicts = new AtomicLong();
+
+    /**
+     * Member variable for the number of conflicts that could not be merged and were rejected
+     */
+    private final AtomicLong mRejected = new AtomicLong();
+
+    /**
+     * Member variable for the number of times an update was attempted again
+     */
+    private final AtomicLong mRetries = new AtomicLong();
+
+    void recordConflict() {
+        mConflicts.incrementAndGet();
+    }
+
+    void recordRejected() {
+        mRejected.incrementAndGet();
+    }
+
+    void recordRetry() {
+        mRetries.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of updates that found a newer version in the database.
+     */
+    public long getConflicts() {
+        return mConflicts.get();
+    }
+
+    /**
+     * Returns the number of conflicts that could not be merged and were rejected.
+     */
+    public long getRejected() {
+        return mRejected.get();
+    }
+
+    /**
+     * Returns the number of times an update was attempted again, either by the database client
+     * against fresher data or after a failed attempt.
+     */
+    public long getRetries() {
+        return mRetries.get();
+    }
+}
@@ -0,0 +1,22 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+/**
+ * Thrown when a write could not reach the database, like on a lost connection, so it may succeed
+ * when it is sent again. Other write failures mean the database refused the write.
+ */
+public class TransientWriteException extends Exception {
+
+    /**
+     * Version of the serialized form
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for the exception.
+     *
+     * @param cause The failure reported by the database.
+     */
+    public TransientWriteException(Exception cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,391 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A durable queue of task changes in front of a {@link TaskStore}. Every change is saved to the
+ * local database first, and the queue is drained to the store in order while it is connected.
+ * Changes survive the app being closed before they are written. A write that fails on the way,
+ * like on a lost connection, stays in the queue and is sent again after a pause that grows with
+ * every failure in a row, see {@link WriteRetryPolicy}, only a write the store refuses is dropped. On a metered or poor network the queue is
+ * drained in smaller groups with a pause between them, so it does not hold the network.
+ *
+ * Changes are held in memory for a short window before they are saved, and the changes of the
+ * same task in that window are combined, so a task that is edited several times in a row is only
+ * written once. The window is flushed when the app goes to the background.
+ */
+public class WriteBehindQueue {
+
+    /**
+     * Constant for logging
+     */
+    private static final String TAG = WriteBehindQueue.class.getSimpleName();
+
+    /**
+     * Maximum number of pending writes loaded from the local database at a time
+     */
+    private static final int DRAIN_LIMIT = ReadWriteDB.MAX_BATCH_PATHS;
+
+    /**
+     * Maximum number of pending writes loaded at a time on a metered or poor network
+     */
+    private static final int CONSTRAINED_DRAIN_LIMIT = 50;
+
+    /**
+     * Pause between two groups of pending writes on a metered or poor network
+     */
+    private static final long CONSTRAINED_DRAIN_DELAY_MILLIS = 2000;
+
+    /**
+     * Time the queue waits for more changes before saving them
+     */
+    private static final long COALESCE_WINDOW_MILLIS = 500;
+
+    /**
+     * Maximum wait for more changes, in windows since the first change that is held, so
+     * changes that keep coming are still saved
+     */
+    private static final int MAX_COALESCE_WINDOWS = 4;
+
+    /**
+     * Member variable for the local database that holds the queue
+     */
+    private final LocalTaskStore mLocalStore;
+
+    /**
+     * Member variable for the store the changes are written to
+     */
+    private final TaskStore mTaskStore;
+
+    /**
+     * Member variable for the listener that is told about changes the store refused
+     */
+    private final Listener mListener;
+
+    /**
+     * Member variable for scheduling the next group after a pause
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Member variable for going on with the next group after a pause
+     */
+    private final Runnable mResumeDrain = this::resumeDrain;
+
+    /**
+     * Member variable for saving the held changes once the window is over
+     */
+    private final Runnable mFlush = this::flush;
+
+    /**
+     * Member variable for the changes held in memory during the window
+     */
+    private final WriteCoalescer mCoalescer = new WriteCoalescer();
+
+    /**
+     * Member variable for deciding what happens to writes that failed
+     */
+    private final WriteRetryPolicy mRetryPolicy = new WriteRetryPolicy();
+
+    /**
+     * Member variable for the uptime when the oldest held change was made, 0 when nothing is held
+     */
+    private long mFirstHeldAt;
+
+    /**
+     * True while the store is connected
+     */
+    private boolean mOnline;
+
+    /**
+     * Member variable for the state of the network, one of the ConnectivityMonitor.NETWORK_
+     * constants
+     */
+    private int mNetworkState = ConnectivityMonitor.NETWORK_UNCONSTRAINED;
+
+    /**
+     * True while pending writes are being sent, or the queue pauses between two groups
+     */
+    private boolean mDraining;
+
+    /**
+     * True while the queue pauses between two groups, or before sending a group again
+     */
+    private boolean mPaused;
+
+    /**
+     * Constructor for the queue.
+     *
+     * @param localStore The local database that holds the queue.
+     * @param taskStore The store the changes are written to.
+     * @param listener The listener that is told about changes the store refused.
+     */
+    public WriteBehindQueue(LocalTaskStore localStore, TaskStore taskStore, Listener listener) {
+        mLocalStore = localStore;
+        mTaskStore = taskStore;
+        mListener = listener;
+    }
+
+    /**
+     * Queues a new task.
+     */
+    public void add(TaskEntry task) {
+        hold(PendingWrite.add(task));
+    }
+
+    /**
+     * Queues an update of a task.
+     *
+     * @param base The task as it was before it was edited.
+     * @param task The new values of the task.
+     */
+    public void update(TaskEntry base, TaskEntry task) {
+        hold(PendingWrite.update(base, task));
+    }
+
+    /**
+     * Queues the deletion of tasks, and deletes them from the local copy.
+     *
+     * @param tasks The tasks to be deleted.
+     */
+    public void delete(List<TaskEntry> tasks) {
+        for (TaskEntry task : tasks) {
+            mCoalescer.add(PendingWrite.delete(task));
+            mLocalStore.deleteTask(task.getKey());
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Queues the completion of tasks, which moves them to the archive of the list, and deletes
+     * them from the local copy, which only holds the tasks that are still to be done.
+     *
+     * @param tasks The completed tasks.
+     */
+    public void complete(List<TaskEntry> tasks) {
+        for (TaskEntry task : tasks) {
+            mCoalescer.add(PendingWrite.complete(task));
+            mLocalStore.deleteTask(task.getKey());
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Saves the held changes to the queue right away, and drains it. The number of writes that
+     * were saved by combining changes so far is logged.
+     */
+    public void flush() {
+        mHandler.removeCallbacks(mFlush);
+        mFirstHeldAt = 0;
+        if (!mCoalescer.isEmpty()) {
+            enqueue(mCoalescer.drain());
+
+            CoalescingStats stats = mCoalescer.getStats();
+            Log.d(TAG, "Saved " + stats.getSaved() + " of " + stats.getReceived()
+                    + " write(s) by combining changes, in " + stats.getFlushes() + " flush(es)");
+        }
+    }
+
+    /**
+     * Tells the queue whether the store is connected. The queue is drained as soon as
+     * it is.
+     */
+    public void setOnline(boolean online) {
+        mOnline = online;
+        if (online) {
+            mRetryPolicy.reset();
+        }
+        drain();
+    }
+
+    /**
+     * Tells the queue about the state of the network. Nothing is sent without a network, and
+     * less at a time on a metered or poor one. A pause is cut short once the network is
+     * unconstrained.
+     *
+     * @param state One of the ConnectivityMonitor.NETWORK_ constants.
+     */
+    public void setNetworkState(int state) {
+        mNetworkState = state;
+        if (state != ConnectivityMonitor.NETWORK_NONE) {
+            mRetryPolicy.reset();
+        }
+        if (mPaused && state == ConnectivityMonitor.NETWORK_UNCONSTRAINED) {
+            mHandler.removeCallbacks(mResumeDrain);
+            resumeDrain();
+        } else {
+            drain();
+        }
+    }
+
+    /**
+     * Sends the pending writes to the store if it is connected and nothing is being
+     * sent already.
+     */
+    public void drain() {
+        if (!canSend() || mDraining) {
+            return;
+        }
+
+        mDraining = true;
+        mLocalStore.loadPendingWrites(mNetworkState == ConnectivityMonitor.NETWORK_CONSTRAINED
+                ? CONSTRAINED_DRAIN_LIMIT : DRAIN_LIMIT, this::send);
+    }
+
+    /**
+     * Helper method to hold a change until the window is over.
+     */
+    private void hold(PendingWrite write) {
+        mCoalescer.add(write);
+        scheduleFlush();
+    }
+
+    /**
+     * Helper method to restart the window after a change, unless the held changes have waited
+     * too long already.
+     */
+    private void scheduleFlush() {
+        if (mCoalescer.isEmpty()) {
+            flush();
+            return;
+        }
+
+        long now = SystemClock.uptimeMillis();
+        if (mFirstHeldAt == 0) {
+            mFirstHeldAt = now;
+        }
+        long deadline = mFirstHeldAt + MAX_COALESCE_WINDOWS * COALESCE_WINDOW_MILLIS;
+        mHandler.removeCallbacks(mFlush);
+        mHandler.postDelayed(mFlush, Math.max(0, Math.min(COALESCE_WINDOW_MILLIS, deadline - now)));
+    }
+
+    /**
+     * Helper method to save changes to the queue and drain it.
+     */
+    private void enqueue(List<PendingWrite> writes) {
+        mLocalStore.enqueue(writes, this::drain);
+    }
+
+    /**
+     * Helper method to send the first group of the loaded writes. New, deleted and completed
+     * tasks that follow each other are sent as one batch, updates are sent one by one because
+     * each one is a versioned transaction.
+     */
+    private void send(List<PendingWrite> writes) {
+        if (writes.isEmpty() || !canSend()) {
+            mDraining = false;
+            return;
+        }
+
+        List<PendingWrite> group = new ArrayList<>();
+        if (writes.get(0).getType() == PendingWrite.TYPE_UPDATE) {
+            group.add(writes.get(0));
+        } else {
+            for (PendingWrite write : writes) {
+                if (write.getType() == PendingWrite.TYPE_UPDATE) {
+                    break;
+                }
+                group.add(write);
+            }
+        }
+
+        TaskStore.WriteListener listener = new TaskStore.WriteListener() {
+            @Override
+            public void onWriteComplete() {
+                mRetryPolicy.reset();
+                finish(group);
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                long retryDelay = mRetryPolicy.onWriteFailed(exception);
+                if (retryDelay != WriteRetryPolicy.DROP) {
+                    // The writes stay queued, and are sent again after a pause, or once the store
+                    // or the network is back after too many failures in a row
+                    Log.e(TAG, "Kept " + group.size() + " pending write(s) to send again", exception);
+                    if (retryDelay == WriteRetryPolicy.WAIT) {
+                        mDraining = false;
+                    } else {
+                        mPaused = true;
+                        mHandler.postDelayed(mResumeDrain, retryDelay);
+                    }
+                    return;
+                }
+
+                // The write was refused, so it is dropped instead of blocking the queue
+                Log.e(TAG, "Dropped " + group.size() + " pending write(s)", exception);
+                for (PendingWrite write : group) {
+                    if (write.getType() == PendingWrite.TYPE_ADD) {
+                        mLocalStore.deleteTask(write.getKey());
+                    }
+                    mListener.onWriteRejected(write, exception);
+                }
+                finish(group);
+            }
+        };
+
+        if (group.size() == 1 && group.get(0).getType() == PendingWrite.TYPE_UPDATE) {
+            PendingWrite update = group.get(0);
+            mTaskStore.updateSelectedTask(update.getBase(), update.getTask(), listener);
+        } else {
+            TaskBatch batch = new TaskBatch();
+            for (PendingWrite write : group) {
+                if (write.getType() == PendingWrite.TYPE_ADD) {
+                    batch.update(write.getTask());
+                } else if (write.getType() == PendingWrite.TYPE_COMPLETE) {
+                    batch.complete(write.getTask());
+                } else {
+                    batch.delete(write.getKey());
+                }
+            }
+            mTaskStore.commitBatch(batch, listener);
+        }
+    }
+
+    /**
+     * Helper method to remove sent writes from the queue and go on with the next ones, after a
+     * pause on a metered or poor network.
+     */
+    private void finish(List<PendingWrite> group) {
+        mLocalStore.removePendingWrites(group, () -> {
+            if (mNetworkState == ConnectivityMonitor.NETWORK_CONSTRAINED) {
+                mPaused = true;
+                mHandler.postDelayed(mResumeDrain, CONSTRAINED_DRAIN_DELAY_MILLIS);
+            } else {
+                mDraining = false;
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Helper method to go on with the next group, or send the failed one again, after a pause.
+     */
+    private void resumeDrain() {
+        mPaused = false;
+        mDraining = false;
+        drain();
+    }
+
+    /**
+     * Helper method to check if writes can be sent right now.
+     */
+    private boolean canSend() {
+        return mOnline && mNetworkState != ConnectivityMonitor.NETWORK_NONE;
+    }
+
+    /**
+     * Interface to get notified when the store refuses a queued change
+     */
+    public interface Listener {
+        void onWriteRejected(PendingWrite write, Exception exception);
+    }
+}
@@ -0,0 +1,110 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines the changes of the same task that are made in a short time, so only the final state
+ * of every task is written. A new task that is edited is still written as a new task, with the
+ * last values, and a new task that is deleted again is not written at all. A task that is edited
+ * and then completed is archived with its last values.
+ */
+public class WriteCoalescer {
+
+    /**
+     * Member variable for the combined change of every task, in the order they were first made
+     */
+    private final Map<String, PendingWrite> mWrites = new LinkedHashMap<>();
+
+    /**
+     * Member variable for the counters of the combined changes
+     */
+    private final CoalescingStats mStats = new CoalescingStats();
+
+    /**
+     * Adds a change, combining it with the waiting change of the same task.
+     *
+     * @param write The new change.
+     */
+    public void add(PendingWrite write) {
+        mStats.recordReceived();
+
+        PendingWrite previous = mWrites.remove(write.getKey());
+        PendingWrite combined = previous == null ? write : combine(previous, write);
+        if (combined != null) {
+            mWrites.put(write.getKey(), combined);
+        }
+    }
+
+    /**
+     * Returns true if no change is waiting.
+     */
+    public boolean isEmpty() {
+        return mWrites.isEmpty();
+    }
+
+    /**
+     * Takes all the waiting changes. New and deleted tasks come first, so they can be written
+     * together in one batch, since every task has only one change left their order does not
+     * matter.
+     *
+     * @return The combined changes, one per task.
+     */
+    public List<PendingWrite> drain() {
+        List<PendingWrite> writes = new ArrayList<>(mWrites.size());
+        for (PendingWrite write : mWrites.values()) {
+            if (write.getType() != PendingWrite.TYPE_UPDATE) {
+                writes.add(write);
+            }
+        }
+        for (PendingWrite write : mWrites.values()) {
+            if (write.getType() == PendingWrite.TYPE_UPDATE) {
+                writes.add(write);
+            }
+        }
+        mWrites.clear();
+
+        mStats.recordFlush(writes.size());
+        return writes;
+    }
+
+    /**
+     * Returns the counters of the combined changes.
+     */
+    public CoalescingStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * Helper method to combine two changes of the same task.
+     *
+     * @param first The waiting change.
+     * @param next The newer change.
+     * @return The combined change, or null if nothing has to be written.
+     */
+    static PendingWrite combine(PendingWrite first, PendingWrite next) {
+        if (first.getType() == PendingWrite.TYPE_DELETE
+                || first.getType() == PendingWrite.TYPE_COMPLETE) {
+            // A deleted or completed task is no longer in the list, so it can not be changed anymore
+            return first;
+        } else if (first.getType() == PendingWrite.TYPE_ADD) {
+            switch (next.getType()) {
+                case PendingWrite.TYPE_UPDATE:
+                    return PendingWrite.add(next.getTask());
+                case PendingWrite.TYPE_DELETE:
+                    return null;
+            }
+        } else if (first.getType() == PendingWrite.TYPE_UPDATE) {
+            switch (next.getType()) {
+                case PendingWrite.TYPE_UPDATE:
+                    // Still based on the version the first edit started from
+                    return PendingWrite.update(first.getBase(), next.getTask());
+                case PendingWrite.TYPE_DELETE:
+                    return next;
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,79 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+/**
+ * Decides what the {@link WriteBehindQueue} does with a group of writes that failed. A write the
+ * store refused is dropped, since sending it again would fail again. A write that could not reach
+ * the store is kept, and sent again after a pause that doubles with every failure in a row. After
+ * a few failures in a row the queue stops trying on its own and waits until the store or the
+ * network comes back.
+ */
+public class WriteRetryPolicy {
+
+    /**
+     * Returned for a write that is dropped
+     */
+    public static final long DROP = -1;
+
+    /**
+     * Returned for a write that is kept until the store or the network comes back
+     */
+    public static final long WAIT = -2;
+
+    /**
+     * Pause before the first retry
+     */
+    static final long FIRST_RETRY_DELAY_MILLIS = 2000;
+
+    /**
+     * Longest pause before a retry
+     */
+    static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    /**
+     * Number of retries in a row before the queue waits for the store or the network
+     */
+    static final int MAX_RETRIES = 6;
+
+    /**
+     * Member variable for the number of retries since the last write that went through
+     */
+    private int mRetries;
+
+    /**
+     * Decides what happens to writes that failed.
+     *
+     * @param exception The reason the writes failed.
+     * @return {@link #DROP}, {@link #WAIT}, or the pause in milliseconds before they are sent again.
+     */
+    public long onWriteFailed(Exception exception) {
+        if (isRefused(exception)) {
+            return DROP;
+        }
+        if (mRetries >= MAX_RETRIES) {
+            return WAIT;
+        }
+
+        long delay = Math.min(MAX_RETRY_DELAY_MILLIS, FIRST_RETRY_DELAY_MILLIS << mRetries);
+        mRetries++;
+        return delay;
+    }
+
+    /**
+     * Starts counting the retries again, once a write went through or the store or the network
+     * came back.
+     */
+    public void reset() {
+        mRetries = 0;
+    }
+
+    /**
+     * Returns true if a write failed because the store refused it, like on a conflict or a
+     * missing permission. A write that could not reach the store fails with a
+     * {@link TransientWriteException}.
+     *
+     * @param exception The reason the write failed.
+     */
+    static boolean isRefused(Exception exception) {
+        return !(exception instanceof TransientWriteException);
+    }
+}
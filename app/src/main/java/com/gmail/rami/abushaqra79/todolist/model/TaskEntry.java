@@ -5,6 +5,11 @@ package com.gmail.rami.abushaqra79.todolist.model;
  */
 public class TaskEntry {
 
+    /**
+     * Member variable for the database key of the task, null if the task is not saved yet
+     */
+    private final String mKey;
+
     /**
      * Member variable for the description of the task
      */
@@ -16,14 +21,77 @@ public class TaskEntry {
     private final int mPriority;
 
     /**
-     * Constructor that initialize the fields.
+     * Member variable for the version of the task, increased by one on every saved update
+     */
+    private final long mVersion;
+
+    /**
+     * Member variable for the server time of the last saved change, 0 if it is not known
+     */
+    private final long mUpdatedAt;
+
+    /**
+     * Member variable for the stable id of the task, 0 until it is first asked for
+     */
+    private long mStableId;
+
+    /**
+     * Constructor that initialize the fields of a task that is not saved yet.
      *
      * @param description The description of the task.
      * @param priority The priority of the task.
      */
     public TaskEntry(String description, int priority) {
+        this(null, description, priority);
+    }
+
+    /**
+     * Constructor that initialize the fields.
+     *
+     * @param key The database key of the task.
+     * @param description The description of the task.
+     * @param priority The priority of the task.
+     */
+    public TaskEntry(String key, String description, int priority) {
+        this(key, description, priority, 0);
+    }
+
+    /**
+     * Constructor that initialize the fields, including the saved version.
+     *
+     * @param key The database key of the task.
+     * @param description The description of the task.
+     * @param priority The priority of the task.
+     * @param version The version of the task.
+     */
+    public TaskEntry(String key, String description, int priority, long version) {
+        this(key, description, priority, version, 0);
+    }
+
+    /**
+     * Constructor that initialize the fields, including the saved version and change time.
+     *
+     * @param key The database key of the task.
+     * @param description The description of the task.
+     * @param priority The priority of the task.
+     * @param version The version of the task.
+     * @param updatedAt The server time of the last saved change.
+     */
+    public TaskEntry(String key, String description, int priority, long version, long updatedAt) {
+        mKey = key;
         mDescription = description;
         mPriority = priority;
+        mVersion = version;
+        mUpdatedAt = updatedAt;
+    }
+
+    /**
+     * Getter method for task key.
+     *
+     * @return Key as a string, or null if the task is not saved yet.
+     */
+    public String getKey() {
+        return mKey;
     }
 
     /**
@@ -43,4 +111,41 @@ public class TaskEntry {
     public int getPriority() {
         return mPriority;
     }
-}
\ No newline at end of file
+
+    /**
+     * Getter method for task version.
+     *
+     * @return Version as a long.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Getter method for the server time of the last saved change.
+     *
+     * @return Time in milliseconds, or 0 if it is not known.
+     */
+    public long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+
+    /**
+     * Returns a number that identifies the task in a list, derived from its key, so the same task
+     * has the same id in every copy of it. It is a 64 bit FNV-1a hash of the key, which is only
+     * computed once per object, and two keys of a list practically never share it.
+     *
+     * @return The stable id, 0 if the task is not saved yet.
+     */
+    public long getStableId() {
+        if (mStableId == 0 && mKey != null) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < mKey.length(); i++) {
+                hash ^= mKey.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            mStableId = hash;
+        }
+        return mStableId;
+    }
+}
@@ -0,0 +1,60 @@
+package com.gmail.rami.abushaqra79.todolist.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A model class for a list of tasks, as it is kept in the index of lists.
+ */
+public class TaskList {
+
+    /**
+     * Member variable for the id of the list, which is also the key of its shard of tasks
+     */
+    private final String mId;
+
+    /**
+     * Member variable for the name of the list, empty for the default list
+     */
+    private final String mName;
+
+    /**
+     * Constructor that initialize the fields.
+     *
+     * @param id The id of the list.
+     * @param name The name of the list.
+     */
+    public TaskList(String id, String name) {
+        mId = id;
+        mName = name;
+    }
+
+    /**
+     * Getter method for list id.
+     *
+     * @return Id as a string.
+     */
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * Getter method for list name.
+     *
+     * @return Name as a string.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Converts the list to the map of values that is stored under its id in the index of lists.
+     *
+     * @return The stored values of the list.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("name", mName);
+        return values;
+    }
+}
@@ -0,0 +1,63 @@
+package com.gmail.rami.abushaqra79.todolist;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SelectionModelTest {
+
+    @Test
+    public void toggle_selectsAndUnselectsByKey() {
+        SelectionModel selection = new SelectionModel();
+
+        assertTrue(selection.toggle("-Na"));
+        assertTrue(selection.toggle("-Nb"));
+        assertFalse(selection.toggle("-Na"));
+
+        assertFalse(selection.isSelected("-Na"));
+        assertTrue(selection.isSelected("-Nb"));
+        assertFalse(selection.isEmpty());
+    }
+
+    @Test
+    public void selectAll_keepsTheTasksThatAreUnselectedAfterwards() {
+        SelectionModel selection = new SelectionModel();
+        selection.toggle("-Na");
+        selection.selectAll();
+        selection.toggle("-Nb");
+        selection.setSelected("-Nc", false);
+
+        assertTrue(selection.isSelected("-Na"));
+        assertTrue(selection.isSelected("-Nz"));
+        assertFalse(selection.isSelected("-Nb"));
+        assertFalse(selection.isSelected("-Nc"));
+        assertEquals(2, selection.getKeys().size());
+    }
+
+    @Test
+    public void invert_swapsTheSelectedTasks() {
+        SelectionModel selection = new SelectionModel();
+        selection.toggle("-Na");
+        selection.invert();
+
+        assertFalse(selection.isSelected("-Na"));
+        assertTrue(selection.isSelected("-Nb"));
+
+        selection.invert();
+        assertTrue(selection.isSelected("-Na"));
+        assertFalse(selection.isSelected("-Nb"));
+    }
+
+    @Test
+    public void drain_movesTheSelectionAndClearsIt() {
+        SelectionModel selection = new SelectionModel();
+        selection.toggle("-Nb");
+        selection.invert();
+        SelectionModel drained = selection.drain();
+
+        assertTrue(selection.isEmpty());
+        assertTrue(drained.isAllSelected());
+        assertFalse(drained.isSelected("-Nb"));
+        assertTrue(drained.isSelected("-Nc"));
+    }
+}
@@ -0,0 +1,184 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InMemoryTaskStoreTest {
+
+    private InMemoryTaskStore store;
+    private final List<String> results = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        long[] time = {1000};
+        store = new InMemoryTaskStore(() -> time[0]++);
+    }
+
+    @Test
+    public void update_withStaleVersion_mergesOrFails() {
+        TaskEntry base = new TaskEntry("-Na", "a", 1, 0);
+        store.addTask(base, listener());
+        store.updateSelectedTask(base, new TaskEntry("-Na", "a", 2, 0), listener());
+        store.updateSelectedTask(base, new TaskEntry("-Na", "b", 1, 0), listener());
+        store.updateSelectedTask(base, new TaskEntry("-Na", "a", 3, 0), listener());
+
+        assertEquals("[ok, ok, ok, failed]", results.toString());
+        TaskEntry stored = read("-Na");
+        assertEquals("b", stored.getDescription());
+        assertEquals(2, stored.getPriority());
+        assertEquals(2, stored.getVersion());
+        assertEquals(2, store.getTransactionStats().getConflicts());
+        assertEquals(1, store.getTransactionStats().getRejected());
+    }
+
+    @Test
+    public void commitBatch_appliesDeletesAndUpdates() {
+        store.addTask(new TaskEntry("-Na", "a", 1), listener());
+        store.commitBatch(new TaskBatch().delete("-Na").update(new TaskEntry("-Nb", "b", 2))
+                .update(new TaskEntry("-Nb", "b", 3)), listener());
+
+        assertNull(read("-Na"));
+        assertEquals(3, read("-Nb").getPriority());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void commitBatch_movesCompletedTasksToTheArchive() {
+        store.addTask(new TaskEntry("-Na", "a", 1), listener());
+        store.addTask(new TaskEntry("-Nb", "b", 2), listener());
+        store.commitBatch(new TaskBatch().complete(new TaskEntry("-Na", "a", 1)), listener());
+
+        assertNull(read("-Na"));
+        assertEquals(1, store.size());
+
+        List<TaskPage> pages = new ArrayList<>();
+        store.archivedPages().loadPageAfter(null, 10, pageCallback(pages));
+        assertEquals(1, pages.get(0).getTasks().size());
+        assertEquals("a", pages.get(0).getTasks().get(0).getDescription());
+        assertEquals(1, pages.get(0).getTasks().get(0).getPriority());
+        assertTrue(pages.get(0).isLast());
+    }
+
+    @Test
+    public void pages_followTheOrderOfTheFilter() {
+        TaskBatch batch = new TaskBatch();
+        for (int i = 0; i < 9; i++) {
+            batch.update(new TaskEntry("-N" + i, "task " + i, i % 3 + 1));
+        }
+        store.commitBatch(batch, listener());
+
+        TaskPage byKey = loadAfter(TaskFilter.ALL, null, 4);
+        assertEquals("-N0", byKey.getFirstKey());
+        assertEquals("-N3", byKey.getLastKey());
+        assertFalse(byKey.isLast());
+
+        TaskPage high = loadAfter(TaskFilter.withPriority(1), null, 2);
+        TaskPage moreHigh = loadAfter(TaskFilter.withPriority(1), high, 2);
+        assertEquals("-N0", high.getFirstKey());
+        assertEquals("-N3", high.getLastKey());
+        assertEquals(1, moreHigh.getTasks().size());
+        assertEquals("-N6", moreHigh.getFirstKey());
+        assertTrue(moreHigh.isLast());
+
+        TaskPage sorted = loadAfter(TaskFilter.SORTED_BY_PRIORITY, moreHigh, 3);
+        assertEquals("-N1", sorted.getFirstKey());
+        assertEquals(2, sorted.getFirstPriority());
+
+        List<TaskPage> before = new ArrayList<>();
+        store.pages(TaskFilter.SORTED_BY_PRIORITY).loadPageBefore(sorted, 2, pageCallback(before));
+        assertEquals("-N3", before.get(0).getFirstKey());
+        assertEquals("-N6", before.get(0).getLastKey());
+    }
+
+    @Test
+    public void sync_receivesChangesAfterTheMark() {
+        store.addTask(new TaskEntry("-Na", "a", 1), listener());
+        store.addTask(new TaskEntry("-Nb", "b", 1), listener());
+        TaskCache cache = new TaskCache();
+        List<String> events = new ArrayList<>();
+
+        store.syncTasks(cache, read("-Na").getUpdatedAt(), new TaskStore.SyncListener() {
+            @Override
+            public void onInitialSyncComplete() {
+                events.add("complete");
+            }
+
+            @Override
+            public void onSyncMarkChanged(long syncMark) {
+            }
+
+            @Override
+            public void onTaskChanged(TaskEntry task) {
+                events.add("changed " + task.getKey());
+            }
+
+            @Override
+            public void onTaskDeleted(String key) {
+                events.add("deleted " + key);
+            }
+
+            @Override
+            public void onSyncFailed(Exception exception) {
+            }
+        });
+        store.commitBatch(new TaskBatch().delete("-Nb"), listener());
+
+        assertEquals("[changed -Nb, complete, deleted -Nb]", events.toString());
+        assertEquals(0, cache.size());
+    }
+
+    private TaskEntry read(String key) {
+        TaskEntry[] task = new TaskEntry[1];
+        store.readSelectedTask(key, new TaskStore.TaskListener() {
+            @Override
+            public void onTaskRead(TaskEntry read) {
+                task[0] = read;
+            }
+
+            @Override
+            public void onReadFailed(Exception exception) {
+            }
+        });
+        return task[0];
+    }
+
+    private TaskPage loadAfter(TaskFilter filter, TaskPage previousPage, int pageSize) {
+        List<TaskPage> pages = new ArrayList<>();
+        store.pages(filter).loadPageAfter(previousPage, pageSize, pageCallback(pages));
+        return pages.get(0);
+    }
+
+    private static TaskPager.PageCallback pageCallback(List<TaskPage> pages) {
+        return new TaskPager.PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                pages.add(page);
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+            }
+        };
+    }
+
+    private TaskStore.WriteListener listener() {
+        return new TaskStore.WriteListener() {
+            @Override
+            public void onWriteComplete() {
+                results.add("ok");
+            }
+
+            @Override
+            public void onWriteFailed(Exception exception) {
+                results.add("failed");
+            }
+        };
+    }
+}
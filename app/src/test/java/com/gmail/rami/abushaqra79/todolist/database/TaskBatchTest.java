@@ -0,0 +1,103 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TaskBatchTest {
+
+    private static final Object CHANGE_TIME = 1000L;
+
+    private static final String ARCHIVE_PATH = "archive/";
+
+    @Test
+    public void deletes_areWrittenAsTombstones() {
+        TaskBatch batch = new TaskBatch().delete("1").delete("2");
+        List<Map<String, Object>> chunks = chunks(batch, ReadWriteDB.MAX_BATCH_PATHS);
+
+        assertEquals(1, chunks.size());
+        assertTombstone(chunks.get(0).get("1"));
+        assertEquals(2, batch.size());
+    }
+
+    @Test
+    public void delete_replacesEarlierUpdate() {
+        TaskBatch batch = new TaskBatch().update(new TaskEntry("1", "a", 1)).delete("1");
+        Map<String, Object> chunk = chunks(batch, ReadWriteDB.MAX_BATCH_PATHS).get(0);
+
+        assertEquals(1, chunk.size());
+        assertTombstone(chunk.get("1"));
+        assertEquals(1, batch.size());
+    }
+
+    @Test
+    public void update_writesWholeTaskWithVersion() {
+        TaskBatch batch = new TaskBatch().update(new TaskEntry("1", "a", 1)).update(new TaskEntry("1", "a", 3, 5));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> task = (Map<String, Object>) chunks(batch, ReadWriteDB.MAX_BATCH_PATHS).get(0).get("1");
+
+        assertEquals("a", task.get(TaskCodec.COMPACT_DESCRIPTION));
+        assertEquals(TaskCodec.pack(3, 0), task.get(TaskCodec.COMPACT_FLAGS));
+        assertEquals(5L, task.get(TaskCodec.COMPACT_VERSION));
+        assertEquals(CHANGE_TIME, task.get(TaskCodec.COMPACT_UPDATED_AT));
+        assertEquals(1, batch.size());
+    }
+
+    @Test
+    public void largeBatch_isSplitIntoChunks() {
+        TaskBatch batch = new TaskBatch();
+        for (int i = 0; i < 1201; i++) {
+            batch.delete(String.valueOf(i));
+        }
+        List<Map<String, Object>> chunks = chunks(batch, 500);
+
+        assertEquals(3, chunks.size());
+        assertEquals(500, chunks.get(0).size());
+        assertEquals(500, chunks.get(1).size());
+        assertEquals(201, chunks.get(2).size());
+    }
+
+    @Test
+    public void taskPaths_areNotSplitAcrossChunks() {
+        TaskBatch batch = new TaskBatch().delete("1").complete(new TaskEntry("2", "b", 1));
+        List<Map<String, Object>> chunks = chunks(batch, 2);
+
+        assertEquals(2, chunks.size());
+        assertEquals(1, chunks.get(0).size());
+        assertEquals(2, chunks.get(1).size());
+    }
+
+    @Test
+    public void complete_movesTaskToArchiveInTheSameChunk() {
+        TaskBatch batch = new TaskBatch().update(new TaskEntry("1", "a", 2))
+                .complete(new TaskEntry("1", "a", 2, 4));
+        Map<String, Object> chunk = batch.chunks(ReadWriteDB.MAX_BATCH_PATHS, CHANGE_TIME,
+                "tasks/", ARCHIVE_PATH).get(0);
+
+        assertEquals(2, chunk.size());
+        assertTombstone(chunk.get("tasks/1"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> archived = (Map<String, Object>) chunk.get(ARCHIVE_PATH + "1");
+        assertEquals("a", archived.get(TaskCodec.COMPACT_DESCRIPTION));
+        assertEquals(TaskCodec.pack(2, TaskCodec.FLAG_COMPLETED), archived.get(TaskCodec.COMPACT_FLAGS));
+        assertEquals(4L, archived.get(TaskCodec.COMPACT_VERSION));
+        assertEquals(CHANGE_TIME, archived.get(TaskCodec.COMPACT_UPDATED_AT));
+        assertEquals(2, batch.size());
+    }
+
+    private static List<Map<String, Object>> chunks(TaskBatch batch, int maxPaths) {
+        return batch.chunks(maxPaths, CHANGE_TIME, "", ARCHIVE_PATH);
+    }
+
+    private static void assertTombstone(Object value) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> tombstone = (Map<String, Object>) value;
+        assertTrue(TaskCodec.isTombstone(tombstone::get));
+        assertEquals(CHANGE_TIME, tombstone.get(TaskCodec.COMPACT_UPDATED_AT));
+    }
+}
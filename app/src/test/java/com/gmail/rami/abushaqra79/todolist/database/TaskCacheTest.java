@@ -0,0 +1,191 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TaskCacheTest {
+
+    private TaskCache cache;
+    private List<String> events;
+
+    @Before
+    public void setUp() {
+        cache = new TaskCache();
+        events = new ArrayList<>();
+        cache.addListener(new TaskCache.Listener() {
+            @Override
+            public void onTaskInserted(int position, TaskEntry task) {
+                events.add("insert " + position + " " + task.getKey());
+            }
+
+            @Override
+            public void onTaskChanged(int position, TaskEntry task) {
+                events.add("change " + position + " " + task.getKey());
+            }
+
+            @Override
+            public void onTaskRemoved(int position, TaskEntry task) {
+                events.add("remove " + position + " " + task.getKey());
+            }
+
+            @Override
+            public void onTaskMoved(int fromPosition, int toPosition, TaskEntry task) {
+                events.add("move " + fromPosition + " " + toPosition + " " + task.getKey());
+            }
+        });
+    }
+
+    @Test
+    public void insert_afterPreviousKey_keepsOrder() {
+        cache.insert(new TaskEntry("1", "a", 1), null);
+        cache.insert(new TaskEntry("3", "c", 1), "1");
+        cache.insert(new TaskEntry("2", "b", 1), "1");
+
+        assertEquals(3, cache.size());
+        assertEquals("1", cache.getKeyAt(0));
+        assertEquals("2", cache.getKeyAt(1));
+        assertEquals("3", cache.getKeyAt(2));
+        assertEquals("insert 1 2", events.get(2));
+    }
+
+    @Test
+    public void insert_existingKey_isReportedAsChange() {
+        cache.insert(new TaskEntry("1", "a", 1), null);
+        cache.insert(new TaskEntry("1", "b", 2), null);
+
+        assertEquals(1, cache.size());
+        assertEquals("b", cache.get("1").getDescription());
+        assertEquals("change 0 1", events.get(1));
+    }
+
+    @Test
+    public void update_keepsPosition() {
+        cache.insert(new TaskEntry("1", "a", 1), null);
+        cache.insert(new TaskEntry("2", "b", 1), "1");
+        cache.update(new TaskEntry("2", "changed", 3));
+
+        assertEquals("changed", cache.getAt(1).getDescription());
+        assertEquals("change 1 2", events.get(2));
+    }
+
+    @Test
+    public void remove_unknownKey_isIgnored() {
+        cache.insert(new TaskEntry("1", "a", 1), null);
+        cache.remove("9");
+        cache.remove("1");
+
+        assertEquals(0, cache.size());
+        assertEquals(2, events.size());
+        assertEquals("remove 0 1", events.get(1));
+    }
+
+    @Test
+    public void move_toFront() {
+        cache.insert(new TaskEntry("1", "a", 1), null);
+        cache.insert(new TaskEntry("2", "b", 1), "1");
+        cache.insert(new TaskEntry("3", "c", 1), "2");
+        cache.move(new TaskEntry("3", "c", 1), null);
+
+        assertEquals("3", cache.getKeyAt(0));
+        assertEquals("1", cache.getKeyAt(1));
+        assertEquals("2", cache.getKeyAt(2));
+        assertEquals("move 2 0 3", events.get(3));
+    }
+
+    @Test
+    public void put_insertsInKeyOrder() {
+        cache.put(new TaskEntry("-Nb", "b", 1));
+        cache.put(new TaskEntry("-Nd", "d", 1));
+        cache.put(new TaskEntry("-Na", "a", 1));
+        cache.put(new TaskEntry("-Nc", "c", 1));
+        cache.put(new TaskEntry("12", "old", 1));
+        cache.put(new TaskEntry("3", "older", 1));
+
+        assertEquals("3", cache.getKeyAt(0));
+        assertEquals("12", cache.getKeyAt(1));
+        assertEquals("-Na", cache.getKeyAt(2));
+        assertEquals("-Nb", cache.getKeyAt(3));
+        assertEquals("-Nc", cache.getKeyAt(4));
+        assertEquals("-Nd", cache.getKeyAt(5));
+    }
+
+    @Test
+    public void put_existingKey_isReportedAsChange() {
+        cache.put(new TaskEntry("-Na", "a", 1));
+        cache.put(new TaskEntry("-Na", "changed", 2));
+
+        assertEquals(1, cache.size());
+        assertEquals("change 0 -Na", events.get(1));
+    }
+
+    @Test
+    public void load_insertsInKeyOrderWithoutEvents() {
+        cache.put(new TaskEntry("-Nb", "b", 1));
+        List<TaskEntry> page = new ArrayList<>();
+        page.add(new TaskEntry("-Na", "a", 1));
+        page.add(new TaskEntry("-Nb", "old", 1));
+        page.add(new TaskEntry("-Nc", "c", 1));
+        cache.load(page, true);
+
+        assertEquals(3, cache.size());
+        assertEquals("-Na", cache.getKeyAt(0));
+        assertEquals("b", cache.getAt(1).getDescription());
+        assertTrue(cache.isStale("-Nc"));
+        assertFalse(cache.isStale("-Nb"));
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    public void evict_dropsKeyRangeWithoutEvents() {
+        cache.put(new TaskEntry("-Na", "a", 1));
+        cache.put(new TaskEntry("-Nb", "b", 1));
+        cache.put(new TaskEntry("-Nc", "c", 1));
+        cache.put(new TaskEntry("-Nd", "d", 1));
+        cache.evict(null, cache.get("-Nb"));
+
+        assertEquals(2, cache.size());
+        assertEquals("-Nc", cache.getKeyAt(0));
+        assertNull(cache.get("-Na"));
+
+        cache.evict(cache.get("-Nd"), null);
+        assertEquals(1, cache.size());
+        assertEquals(4, events.size());
+    }
+
+    @Test
+    public void setFilter_keepsOnlyMatchingTasksInPriorityOrder() {
+        cache.setFilter(TaskFilter.SORTED_BY_PRIORITY);
+        cache.put(new TaskEntry("-Na", "a", 3));
+        cache.put(new TaskEntry("-Nb", "b", 1));
+        cache.put(new TaskEntry("-Nc", "c", 2));
+
+        assertEquals("-Nb", cache.getKeyAt(0));
+        assertEquals("-Nc", cache.getKeyAt(1));
+        assertEquals("-Na", cache.getKeyAt(2));
+
+        cache.setFilter(TaskFilter.withPriority(2));
+        assertEquals(0, cache.size());
+        cache.put(new TaskEntry("-Nd", "d", 2));
+        cache.put(new TaskEntry("-Ne", "e", 1));
+        assertEquals(1, cache.size());
+
+        // A task that no longer matches the filter leaves the list
+        cache.put(new TaskEntry("-Nd", "d", 3));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void compareKeys_putsNumericKeysFirstInNumericOrder() {
+        assertTrue(TaskCache.compareKeys("9", "10") < 0);
+        assertTrue(TaskCache.compareKeys("10", "-Na") < 0);
+        assertTrue(TaskCache.compareKeys("-Nb", "-Na") > 0);
+        assertEquals(0, TaskCache.compareKeys("-Na", "-Na"));
+    }
+}
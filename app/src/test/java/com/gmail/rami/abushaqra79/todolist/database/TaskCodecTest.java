@@ -0,0 +1,109 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TaskCodecTest {
+
+    @Test
+    public void decode_readsTypedValues() {
+        TaskEntry task = TaskCodec.decode("-Na", "Buy milk", 2L, 5L, 1000L);
+
+        assertEquals("-Na", task.getKey());
+        assertEquals("Buy milk", task.getDescription());
+        assertEquals(2, task.getPriority());
+        assertEquals(5, task.getVersion());
+        assertEquals(1000, task.getUpdatedAt());
+    }
+
+    @Test
+    public void decode_missingVersionAndChangeTimeAreZero() {
+        TaskEntry task = TaskCodec.decode("-Na", "a", 1L, null, null);
+
+        assertEquals(0, task.getVersion());
+        assertEquals(0, task.getUpdatedAt());
+    }
+
+    @Test
+    public void decode_readsDoublesAndLegacyText() {
+        TaskEntry task = TaskCodec.decode("1", "a", 3.0, "7", Collections.singletonMap(".sv", "timestamp"));
+
+        assertEquals(3, task.getPriority());
+        assertEquals(7, task.getVersion());
+        assertEquals(0, task.getUpdatedAt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_withoutPriority_fails() {
+        TaskCodec.decode("-Na", "a", null, null, null);
+    }
+
+    @Test
+    public void isDeleted_onlyForTrue() {
+        assertTrue(TaskCodec.isDeleted(Boolean.TRUE));
+        assertFalse(TaskCodec.isDeleted(null));
+        assertFalse(TaskCodec.isDeleted(Boolean.FALSE));
+    }
+
+    @Test
+    public void encode_isDecodedWithTheSameValues() {
+        Map<String, Object> values = TaskCodec.encode(new TaskEntry("-Na", "Buy milk", 2, 5));
+        values.put(TaskCodec.COMPACT_UPDATED_AT, 1000L);
+        TaskEntry task = TaskCodec.decode("-Na", values::get);
+
+        assertEquals("Buy milk", task.getDescription());
+        assertEquals(2, task.getPriority());
+        assertEquals(5, task.getVersion());
+        assertEquals(1000, task.getUpdatedAt());
+        assertFalse(TaskCodec.isTombstone(values::get));
+    }
+
+    @Test
+    public void decode_readsTheFirstFormat() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(TaskCodec.FIELD_DESCRIPTION, "Buy milk");
+        values.put(TaskCodec.FIELD_PRIORITY, 3L);
+        values.put(TaskCodec.FIELD_UPDATED_AT, 1000L);
+        TaskEntry task = TaskCodec.decode("-Na", values::get);
+
+        assertEquals(3, task.getPriority());
+        assertEquals(0, task.getVersion());
+        assertEquals(1000, TaskCodec.updatedAt(values::get));
+
+        values.put(TaskCodec.FIELD_DELETED, true);
+        assertTrue(TaskCodec.isTombstone(values::get));
+    }
+
+    @Test
+    public void decode_readsTaskOfTheFirstFormatWithSingleCompactValues() {
+        // A new priority was written to a task that was still stored with the long names
+        Map<String, Object> values = new HashMap<>();
+        values.put(TaskCodec.FIELD_DESCRIPTION, "Buy milk");
+        values.put(TaskCodec.FIELD_PRIORITY, 1L);
+        values.put(TaskCodec.FIELD_VERSION, 4L);
+        values.put(TaskCodec.COMPACT_FLAGS, TaskCodec.pack(3, 0));
+        values.put(TaskCodec.COMPACT_UPDATED_AT, 2000L);
+
+        TaskEntry task = TaskCodec.decode("-Na", values::get);
+
+        assertEquals("Buy milk", task.getDescription());
+        assertEquals(3, task.getPriority());
+        assertEquals(4, task.getVersion());
+        assertEquals(2000, task.getUpdatedAt());
+    }
+
+    @Test
+    public void pack_ordersTombstonesBeforeEveryPriority() {
+        assertTrue(TaskCodec.FLAG_DELETED < TaskCodec.pack(0, 0));
+        assertTrue(TaskCodec.packLast(1) < TaskCodec.pack(2, 0));
+        assertEquals(3, TaskCodec.priorityOf(TaskCodec.pack(3, TaskCodec.FLAG_DELETED)));
+        assertTrue(TaskCodec.isTombstone(TaskCodec.tombstone()::get));
+    }
+}
@@ -0,0 +1,76 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TaskCsvTest {
+
+    @Test
+    public void writtenTasks_areReadBack() throws IOException {
+        TaskEntry plain = new TaskEntry("1", "buy milk", 2);
+        TaskEntry quoted = new TaskEntry("2", "call \"mom\", then\r\ndad", 1);
+        TaskEntry arabic = new TaskEntry(null, "اشترِ الخبز", 3);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TaskCsvWriter writer = new TaskCsvWriter(out)) {
+            writer.write(plain);
+            writer.write(quoted);
+            writer.write(arabic);
+        }
+
+        try (TaskCsvReader reader = new TaskCsvReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertTask(plain, reader.read());
+            assertTask(quoted, reader.read());
+            assertTask(arabic, reader.read());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    public void columns_areFoundByName() throws IOException {
+        String csv = "\uFEFFPriority,notes,Description\n3,x,pay rent\n\nhigh,,water plants";
+
+        try (TaskCsvReader reader = new TaskCsvReader(stream(csv))) {
+            assertTask(new TaskEntry(null, "pay rent", 3), reader.read());
+            // A priority that is not a number is read as 0, so the import skips it
+            assertTask(new TaskEntry(null, "water plants", 0), reader.read());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void fileWithoutDescriptionColumn_isRejected() throws IOException {
+        new TaskCsvReader(stream("key,priority\n1,2\n")).read();
+    }
+
+    @Test
+    public void format_isDetectedFromFirstCharacter() throws IOException {
+        InputStream json = new BufferedInputStream(stream("\uFEFF  [{\"description\":\"a\"}]"));
+        InputStream csv = new BufferedInputStream(stream("description,priority\n"));
+
+        assertEquals(TaskFileFormat.FORMAT_JSON, TaskFileFormat.detect(json));
+        assertEquals(TaskFileFormat.FORMAT_CSV, TaskFileFormat.detect(csv));
+        assertEquals('d', csv.read());
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertTask(TaskEntry expected, TaskEntry actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getPriority(), actual.getPriority());
+    }
+}
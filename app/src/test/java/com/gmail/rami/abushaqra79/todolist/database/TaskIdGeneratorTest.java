@@ -0,0 +1,129 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TaskIdGeneratorTest {
+
+    private static final int ADDERS = 16;
+    private static final int TASKS_PER_ADDER = 5000;
+
+    @Test
+    public void sharedGenerator_manySimultaneousAdders_loseNoWrites() throws Exception {
+        TaskIdGenerator generator = new TaskIdGenerator();
+        ConcurrentHashMap<String, Integer> node = new ConcurrentHashMap<>();
+
+        List<Boolean> ordered = runAdders(ADDERS, adder -> generator, node);
+
+        assertEquals(ADDERS * TASKS_PER_ADDER, node.size());
+        assertFalse(ordered.contains(false));
+    }
+
+    @Test
+    public void separateClients_sameMillisecond_loseNoWrites() throws Exception {
+        // Every client sees the same frozen clock, so only the random part tells keys apart
+        List<TaskIdGenerator> clients = new ArrayList<>();
+        for (int i = 0; i < ADDERS; i++) {
+            clients.add(new TaskIdGenerator(() -> 1_650_000_000_000L, new Random(i)));
+        }
+        ConcurrentHashMap<String, Integer> node = new ConcurrentHashMap<>();
+
+        List<Boolean> ordered = runAdders(ADDERS, clients::get, node);
+
+        assertEquals(ADDERS * TASKS_PER_ADDER, node.size());
+        assertFalse(ordered.contains(false));
+    }
+
+    @Test
+    public void keys_sortByCreationTime() {
+        long[] now = {1_000L};
+        TaskIdGenerator generator = new TaskIdGenerator(() -> now[0], new Random(7));
+
+        String first = generator.nextKey();
+        now[0] = 999L;
+        String clockSetBack = generator.nextKey();
+        now[0] = 5_000L;
+        String later = generator.nextKey();
+
+        assertEquals(20, first.length());
+        assertTrue(first.compareTo(clockSetBack) < 0);
+        assertTrue(clockSetBack.compareTo(later) < 0);
+    }
+
+    @Test
+    public void migratedKeys_keepOrderAndSortBeforeGeneratedKeys() {
+        String one = TaskIdGenerator.migratedKey(1);
+        String two = TaskIdGenerator.migratedKey(2);
+        String ten = TaskIdGenerator.migratedKey(10);
+        String generated = new TaskIdGenerator().nextKey();
+
+        assertTrue(one.compareTo(two) < 0);
+        assertTrue(two.compareTo(ten) < 0);
+        assertTrue(ten.compareTo(generated) < 0);
+        assertEquals(one, TaskIdGenerator.migratedKey(1));
+    }
+
+    @Test
+    public void numericKeys_areRecognized() {
+        assertTrue(TaskIdGenerator.isNumericKey("0"));
+        assertTrue(TaskIdGenerator.isNumericKey("2147483647"));
+        assertFalse(TaskIdGenerator.isNumericKey("2147483648"));
+        assertFalse(TaskIdGenerator.isNumericKey(""));
+        assertFalse(TaskIdGenerator.isNumericKey(TaskIdGenerator.migratedKey(3)));
+    }
+
+    /**
+     * Runs the adders at the same time, each writing its keys into the node with putIfAbsent,
+     * and returns for every adder whether its own keys came out in increasing order.
+     */
+    private List<Boolean> runAdders(int adders, GeneratorForAdder generators,
+                                    ConcurrentHashMap<String, Integer> node) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(adders);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (int i = 0; i < adders; i++) {
+            int adder = i;
+            results.add(executor.submit(() -> {
+                TaskIdGenerator generator = generators.get(adder);
+                start.await();
+                String previous = "";
+                boolean ordered = true;
+                for (int task = 0; task < TASKS_PER_ADDER; task++) {
+                    String key = generator.nextKey();
+                    if (node.putIfAbsent(key, adder) != null) {
+                        // Another adder wrote the same key, one of the writes is lost
+                        return false;
+                    }
+                    ordered &= previous.compareTo(key) < 0;
+                    previous = key;
+                }
+                return ordered;
+            }));
+        }
+
+        start.countDown();
+        List<Boolean> ordered = new ArrayList<>();
+        for (Future<Boolean> result : results) {
+            ordered.add(result.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        return ordered;
+    }
+
+    private interface GeneratorForAdder {
+        TaskIdGenerator get(int adder);
+    }
+}
@@ -0,0 +1,45 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TaskMergeTest {
+
+    private final TaskEntry base = new TaskEntry("1", "buy milk", 2, 4);
+
+    @Test
+    public void differentValuesChanged_areMerged() {
+        TaskEntry mine = new TaskEntry("1", "buy bread", 2, 4);
+        TaskEntry theirs = new TaskEntry("1", "buy milk", 1, 5);
+
+        TaskEntry merged = TaskMerge.mergeChanges(base, mine, theirs);
+
+        assertNotNull(merged);
+        assertEquals("buy bread", merged.getDescription());
+        assertEquals(1, merged.getPriority());
+        assertEquals(5, merged.getVersion());
+    }
+
+    @Test
+    public void sameValueChangedTheSameWay_isMerged() {
+        TaskEntry mine = new TaskEntry("1", "buy bread", 3, 4);
+        TaskEntry theirs = new TaskEntry("1", "buy bread", 2, 5);
+
+        TaskEntry merged = TaskMerge.mergeChanges(base, mine, theirs);
+
+        assertNotNull(merged);
+        assertEquals("buy bread", merged.getDescription());
+        assertEquals(3, merged.getPriority());
+    }
+
+    @Test
+    public void sameValueChangedDifferently_isRejected() {
+        TaskEntry mine = new TaskEntry("1", "buy bread", 2, 4);
+        TaskEntry theirs = new TaskEntry("1", "buy eggs", 2, 5);
+
+        assertNull(TaskMerge.mergeChanges(base, mine, theirs));
+    }
+}
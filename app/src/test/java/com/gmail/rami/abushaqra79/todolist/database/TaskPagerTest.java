@@ -0,0 +1,192 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TaskPagerTest {
+
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private TaskPager pager;
+
+    @Before
+    public void setUp() {
+        for (int i = 10; i < 30; i++) {
+            keys.add("k" + i);
+        }
+        pager = new TaskPager(new ListSource(), 5, 2, new TaskPager.Listener() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                events.add("load " + page.getFirstKey() + "-" + page.getLastKey());
+            }
+
+            @Override
+            public void onPageDropped(TaskPage page, boolean fromStart) {
+                events.add((fromStart ? "drop start " : "drop end ") + page.getFirstKey() + "-" + page.getLastKey());
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                events.add("failed");
+            }
+        });
+    }
+
+    @Test
+    public void loadNextPage_readsAfterLastKey() {
+        pager.loadNextPage();
+        pager.loadNextPage();
+
+        assertEquals("load k10-k14", events.get(0));
+        assertEquals("load k15-k19", events.get(1));
+        assertEquals(2, pager.getResidentPageCount());
+        assertFalse(pager.hasMoreBefore());
+    }
+
+    @Test
+    public void loadNextPage_dropsFirstPageOverCap() {
+        pager.loadNextPage();
+        pager.loadNextPage();
+        pager.loadNextPage();
+
+        assertEquals("drop start k10-k14", events.get(3));
+        assertEquals(2, pager.getResidentPageCount());
+        assertTrue(pager.hasMoreBefore());
+    }
+
+    @Test
+    public void loadPreviousPage_readsDroppedPageAndDropsLast() {
+        pager.loadNextPage();
+        pager.loadNextPage();
+        pager.loadNextPage();
+        pager.loadPreviousPage();
+
+        assertEquals("load k10-k14", events.get(4));
+        assertEquals("drop end k20-k24", events.get(5));
+        assertFalse(pager.hasMoreBefore());
+        assertTrue(pager.hasMoreAfter());
+    }
+
+    @Test
+    public void loadNextPage_stopsAtEnd() {
+        for (int i = 0; i < 10; i++) {
+            pager.loadNextPage();
+        }
+
+        assertFalse(pager.hasMoreAfter());
+        assertEquals("load k25-k29", events.get(events.size() - 2));
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    public void pageOfDeletedTasks_isSkipped() {
+        TaskPager skipping = new TaskPager(new TaskPager.PageSource() {
+            @Override
+            public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+                if (previousPage == null) {
+                    callback.onPageLoaded(new TaskPage(new ArrayList<>(), "a", "b", false));
+                } else {
+                    List<TaskEntry> tasks = new ArrayList<>();
+                    tasks.add(new TaskEntry("c", "c", 1));
+                    callback.onPageLoaded(new TaskPage(tasks, "c", "c", true));
+                }
+            }
+
+            @Override
+            public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+            }
+        }, 2, 2, new TaskPager.Listener() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                events.add("load " + page.getFirstKey());
+            }
+
+            @Override
+            public void onPageDropped(TaskPage page, boolean fromStart) {
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+            }
+        });
+        skipping.loadNextPage();
+
+        assertEquals(2, events.size());
+        assertEquals("load c", events.get(1));
+        assertFalse(skipping.hasMoreAfter());
+    }
+
+    /**
+     * A source that reads pages of the keys list right away.
+     */
+    private class ListSource implements TaskPager.PageSource {
+
+        @Override
+        public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+            int from = previousPage == null ? 0 : keys.indexOf(previousPage.getLastKey()) + 1;
+            int to = Math.min(keys.size(), from + pageSize);
+            callback.onPageLoaded(page(from, to, to == keys.size()));
+        }
+
+        @Override
+        public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+            int to = keys.indexOf(nextPage.getFirstKey());
+            int from = Math.max(0, to - pageSize);
+            callback.onPageLoaded(page(from, to, from == 0));
+        }
+
+        private TaskPage page(int from, int to, boolean last) {
+            List<TaskEntry> tasks = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                tasks.add(new TaskEntry(keys.get(i), "task", 1));
+            }
+            return tasks.isEmpty()
+                    ? new TaskPage(tasks, null, null, true)
+                    : new TaskPage(tasks, keys.get(from), keys.get(to - 1), last);
+        }
+    }
+
+    @Test
+    public void cancel_ignoresPagesAndStopsLoading() {
+        List<TaskPager.PageCallback> pending = new ArrayList<>();
+        TaskPager cancelled = new TaskPager(new TaskPager.PageSource() {
+            @Override
+            public void loadPageAfter(TaskPage previousPage, int pageSize, TaskPager.PageCallback callback) {
+                pending.add(callback);
+            }
+
+            @Override
+            public void loadPageBefore(TaskPage nextPage, int pageSize, TaskPager.PageCallback callback) {
+            }
+        }, 5, 2, new TaskPager.Listener() {
+            @Override
+            public void onPageLoaded(TaskPage page) {
+                events.add("load");
+            }
+
+            @Override
+            public void onPageDropped(TaskPage page, boolean fromStart) {
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+            }
+        });
+
+        cancelled.loadNextPage();
+        cancelled.cancel();
+        pending.get(0).onPageLoaded(new TaskPage(new ArrayList<>(), "a", "a", false));
+        cancelled.loadNextPage();
+
+        assertTrue(events.isEmpty());
+        assertEquals(1, pending.size());
+        assertEquals(0, cancelled.getResidentPageCount());
+    }
+}
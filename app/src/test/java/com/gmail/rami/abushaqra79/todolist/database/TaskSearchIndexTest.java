@@ -0,0 +1,90 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TaskSearchIndexTest {
+
+    @Test
+    public void tokenize_foldsCaseAccentsAndArabicForms() {
+        assertArrayEquals(new String[]{"cafe", "menu", "2"}, TaskSearchIndex.tokenize("Café, MENU #2 café"));
+        // Hamza forms of alef, teh marbuta, alef maksura, diacritics and tatweel
+        assertArrayEquals(TaskSearchIndex.tokenize("اشتري الحليب من المكتبه علي"),
+                TaskSearchIndex.tokenize("إشتَرِي الحلـــيب من المكتبة علىٰ"));
+        assertArrayEquals(new String[]{"123"}, TaskSearchIndex.tokenize("١٢٣"));
+        assertEquals(0, TaskSearchIndex.tokenize(" - ").length);
+    }
+
+    @Test
+    public void search_matchesEveryWordAsPrefix() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put(new TaskEntry("-Nc", "Buy milk", 1));
+        index.put(new TaskEntry("-Na", "Buy bread and milk", 2));
+        index.put(new TaskEntry("-Nb", "Call the bank", 3));
+        index.put(new TaskEntry("-Nd", "شراء الحليب", 1));
+
+        assertEquals(Arrays.asList("-Na", "-Nc"), keys(index.search("mil bu", 10)));
+        assertEquals(Collections.singletonList("-Na"), keys(index.search("BREAD milk", 10)));
+        assertEquals(Collections.singletonList("-Nd"), keys(index.search("الحل", 10)));
+        assertEquals(1, index.search("b", 1).size());
+        assertTrue(index.search("milky", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void search_returnsTheFirstMatchesInListOrder() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        for (int i = 9; i >= 0; i--) {
+            index.put(new TaskEntry("-N" + i, "task " + i + " word" + i, 1));
+        }
+
+        assertEquals(Arrays.asList("-N0", "-N1", "-N2"), keys(index.search("task", 3)));
+        assertEquals(Arrays.asList("-N0", "-N1"), keys(index.search("task wo", 2)));
+    }
+
+    @Test
+    public void putAndRemove_updateTheIndex() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put(new TaskEntry("-Na", "Buy milk", 1));
+        index.put(new TaskEntry("-Na", "Sell car", 2));
+
+        assertTrue(index.search("milk", 10).isEmpty());
+        assertEquals(2, index.search("car", 10).get(0).getPriority());
+
+        index.remove("-Na");
+        assertTrue(index.search("car", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void load_keepsChangesMadeWhileLoading() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put(new TaskEntry("-Na", "New text", 1));
+        index.remove("-Nb");
+
+        index.load(Arrays.asList(new TaskEntry("-Na", "Old text", 1), new TaskEntry("-Nb", "Deleted", 1),
+                new TaskEntry("-Nc", "Other", 1)));
+        index.finishLoad();
+
+        assertTrue(index.isLoaded());
+        assertEquals("New text", index.get("-Na").getDescription());
+        assertNull(index.get("-Nb"));
+        assertNotNull(index.get("-Nc"));
+    }
+
+    private static List<String> keys(List<TaskEntry> tasks) {
+        List<String> keys = new ArrayList<>();
+        for (TaskEntry task : tasks) {
+            keys.add(task.getKey());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,94 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WriteCoalescerTest {
+
+    private final WriteCoalescer coalescer = new WriteCoalescer();
+
+    @Test
+    public void editsOfSameTask_areWrittenOnceFromFirstBase() {
+        TaskEntry base = new TaskEntry("1", "buy milk", 2, 4);
+        TaskEntry first = new TaskEntry("1", "buy bread", 2, 4);
+        TaskEntry second = new TaskEntry("1", "buy bread", 1, 4);
+
+        coalescer.add(PendingWrite.update(base, first));
+        coalescer.add(PendingWrite.update(first, second));
+        List<PendingWrite> writes = coalescer.drain();
+
+        assertEquals(1, writes.size());
+        assertEquals(PendingWrite.TYPE_UPDATE, writes.get(0).getType());
+        assertSame(base, writes.get(0).getBase());
+        assertSame(second, writes.get(0).getTask());
+        assertEquals(1, coalescer.getStats().getSaved());
+    }
+
+    @Test
+    public void newTaskThatIsEdited_isAddedWithLastValues() {
+        TaskEntry added = new TaskEntry("1", "buy milk", 2);
+        TaskEntry edited = new TaskEntry("1", "buy bread", 3);
+
+        coalescer.add(PendingWrite.add(added));
+        coalescer.add(PendingWrite.update(added, edited));
+        List<PendingWrite> writes = coalescer.drain();
+
+        assertEquals(1, writes.size());
+        assertEquals(PendingWrite.TYPE_ADD, writes.get(0).getType());
+        assertSame(edited, writes.get(0).getTask());
+    }
+
+    @Test
+    public void newTaskThatIsDeleted_isNotWritten() {
+        TaskEntry added = new TaskEntry("1", "buy milk", 2);
+
+        coalescer.add(PendingWrite.add(added));
+        coalescer.add(PendingWrite.delete(added));
+
+        assertTrue(coalescer.isEmpty());
+        assertTrue(coalescer.drain().isEmpty());
+        assertEquals(2, coalescer.getStats().getSaved());
+    }
+
+    @Test
+    public void editedTaskThatIsCompleted_isArchivedWithLastValues() {
+        TaskEntry base = new TaskEntry("1", "buy milk", 2, 4);
+        TaskEntry edited = new TaskEntry("1", "buy bread", 2, 4);
+
+        coalescer.add(PendingWrite.update(base, edited));
+        coalescer.add(PendingWrite.complete(edited));
+        coalescer.add(PendingWrite.update(edited, new TaskEntry("1", "buy rice", 2, 4)));
+        List<PendingWrite> writes = coalescer.drain();
+
+        assertEquals(1, writes.size());
+        assertEquals(PendingWrite.TYPE_COMPLETE, writes.get(0).getType());
+        assertSame(edited, writes.get(0).getTask());
+    }
+
+    @Test
+    public void updates_comeAfterAddsAndDeletes() {
+        TaskEntry base = new TaskEntry("1", "buy milk", 2, 4);
+        TaskEntry edited = new TaskEntry("1", "buy bread", 2, 4);
+        TaskEntry deleted = new TaskEntry("2", "call mom", 1, 1);
+        TaskEntry added = new TaskEntry("3", "pay rent", 3);
+
+        coalescer.add(PendingWrite.update(base, edited));
+        coalescer.add(PendingWrite.delete(deleted));
+        coalescer.add(PendingWrite.update(edited, edited));
+        coalescer.add(PendingWrite.add(added));
+        List<PendingWrite> writes = coalescer.drain();
+
+        assertEquals(3, writes.size());
+        assertEquals("2", writes.get(0).getKey());
+        assertEquals("3", writes.get(1).getKey());
+        assertEquals("1", writes.get(2).getKey());
+        assertTrue(coalescer.isEmpty());
+        assertEquals(4, coalescer.getStats().getReceived());
+        assertEquals(3, coalescer.getStats().getWritten());
+    }
+}
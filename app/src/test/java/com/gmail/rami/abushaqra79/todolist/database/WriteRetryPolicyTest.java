@@ -0,0 +1,66 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WriteRetryPolicyTest {
+
+    private final WriteRetryPolicy policy = new WriteRetryPolicy();
+
+    private static TransientWriteException disconnected() {
+        return new TransientWriteException(new RuntimeException("disconnected"));
+    }
+
+    @Test
+    public void transientFailure_isSentAgainAfterPause() {
+        assertEquals(WriteRetryPolicy.FIRST_RETRY_DELAY_MILLIS, policy.onWriteFailed(disconnected()));
+    }
+
+    @Test
+    public void transientFailuresInARow_doubleThePauseUpToTheLongest() {
+        long expected = WriteRetryPolicy.FIRST_RETRY_DELAY_MILLIS;
+        for (int i = 0; i < WriteRetryPolicy.MAX_RETRIES; i++) {
+            assertEquals(expected, policy.onWriteFailed(disconnected()));
+            expected = Math.min(WriteRetryPolicy.MAX_RETRY_DELAY_MILLIS, expected * 2);
+        }
+    }
+
+    @Test
+    public void tooManyTransientFailures_waitForTheStoreOrNetwork() {
+        for (int i = 0; i < WriteRetryPolicy.MAX_RETRIES; i++) {
+            policy.onWriteFailed(disconnected());
+        }
+
+        assertEquals(WriteRetryPolicy.WAIT, policy.onWriteFailed(disconnected()));
+    }
+
+    @Test
+    public void reset_startsRetryingAgain() {
+        for (int i = 0; i < WriteRetryPolicy.MAX_RETRIES; i++) {
+            policy.onWriteFailed(disconnected());
+        }
+        policy.reset();
+
+        assertEquals(WriteRetryPolicy.FIRST_RETRY_DELAY_MILLIS, policy.onWriteFailed(disconnected()));
+    }
+
+    @Test
+    public void conflict_isDropped() {
+        assertEquals(WriteRetryPolicy.DROP, policy.onWriteFailed(new TaskConflictException("Task was deleted")));
+    }
+
+    @Test
+    public void otherFailure_isDropped() {
+        assertEquals(WriteRetryPolicy.DROP, policy.onWriteFailed(new RuntimeException("Permission denied")));
+    }
+
+    @Test
+    public void refusal_isDroppedEvenAfterTooManyRetries() {
+        for (int i = 0; i < WriteRetryPolicy.MAX_RETRIES; i++) {
+            policy.onWriteFailed(disconnected());
+        }
+
+        assertEquals(WriteRetryPolicy.DROP, policy.onWriteFailed(new TaskConflictException("Task was deleted")));
+    }
+}
@@ -0,0 +1,98 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the task lists the benchmarks run on. The lists are the same on every run, so results
+ * of different releases can be compared.
+ */
+final class BenchmarkTasks {
+
+    /**
+     * Seed of the random values of the tasks
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Words the descriptions are made of, in both languages of the app
+     */
+    private static final String[] WORDS = {
+            "buy", "milk", "bread", "call", "bank", "pay", "rent", "book", "flight", "clean",
+            "kitchen", "email", "report", "meeting", "doctor", "gym", "garden", "car", "repair",
+            "birthday", "اشتري", "حليب", "خبز", "اتصل", "البنك", "ادفع", "الإيجار", "احجز",
+            "رحلة", "نظف", "المطبخ", "تقرير", "اجتماع", "الطبيب", "الحديقة", "السيارة"
+    };
+
+    /**
+     * Number of words in a description
+     */
+    private static final int DESCRIPTION_WORDS = 4;
+
+    /**
+     * Time of the first task, all other tasks are added one millisecond apart
+     */
+    private static final long START_TIME = 1648000000000L;
+
+    /**
+     * Private constructor, this class only has static methods
+     */
+    private BenchmarkTasks() {
+    }
+
+    /**
+     * Builds a list of tasks in key order, with keys made the way the app makes them and
+     * priorities spread over all levels.
+     *
+     * @param size The number of tasks.
+     * @return The tasks, each with a key, a version and a change time.
+     */
+    static List<TaskEntry> create(int size) {
+        Random random = new Random(SEED);
+        long[] time = {START_TIME};
+        TaskIdGenerator generator = new TaskIdGenerator(() -> time[0]++, random);
+
+        List<TaskEntry> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder description = new StringBuilder();
+            for (int word = 0; word < DESCRIPTION_WORDS; word++) {
+                description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            description.append(i);
+            tasks.add(new TaskEntry(generator.nextKey(), description.toString(), random.nextInt(3) + 1,
+                    random.nextInt(5), START_TIME + i));
+        }
+        return tasks;
+    }
+
+    /**
+     * Builds a store that holds the given tasks.
+     */
+    static InMemoryTaskStore createStore(List<TaskEntry> tasks) {
+        long[] time = {START_TIME + tasks.size()};
+        InMemoryTaskStore store = new InMemoryTaskStore(() -> time[0]++);
+        TaskBatch batch = new TaskBatch();
+        for (TaskEntry task : tasks) {
+            batch.update(task);
+        }
+        store.commitBatch(batch, IGNORE_RESULT);
+        return store;
+    }
+
+    /**
+     * A write listener for benchmarks that only measure the write itself
+     */
+    static final TaskStore.WriteListener IGNORE_RESULT = new TaskStore.WriteListener() {
+        @Override
+        public void onWriteComplete() {
+        }
+
+        @Override
+        public void onWriteFailed(Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    };
+}
@@ -0,0 +1,104 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the writes of the app against a store that already holds a number of tasks. Every
+ * benchmark leaves the store at the same size, so the size stays what the parameter says.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InMemoryTaskStoreBenchmark {
+
+    /**
+     * Number of tasks deleted together, like a multi-select delete
+     */
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * The tasks the store was filled with, in key order
+     */
+    private List<TaskEntry> mTasks;
+
+    /**
+     * The store under test
+     */
+    private InMemoryTaskStore mStore;
+
+    /**
+     * The position of the next updated task
+     */
+    private int mNextUpdate;
+
+    @Setup
+    public void setUp() {
+        mTasks = BenchmarkTasks.create(size);
+        mStore = BenchmarkTasks.createStore(mTasks);
+    }
+
+    @Benchmark
+    public void addAndDeleteTask() {
+        String key = mStore.newTaskKey();
+        mStore.addTask(new TaskEntry(key, "New task", 2), BenchmarkTasks.IGNORE_RESULT);
+        mStore.commitBatch(new TaskBatch().delete(key), BenchmarkTasks.IGNORE_RESULT);
+    }
+
+    /**
+     * Changes the priority of a task through a versioned update, which also reorders the
+     * priority index.
+     */
+    @Benchmark
+    public void updateTask() {
+        String key = mTasks.get(mNextUpdate).getKey();
+        mNextUpdate = (mNextUpdate + 1) % size;
+
+        TaskEntry[] current = new TaskEntry[1];
+        mStore.readSelectedTask(key, new TaskStore.TaskListener() {
+            @Override
+            public void onTaskRead(TaskEntry task) {
+                current[0] = task;
+            }
+
+            @Override
+            public void onReadFailed(Exception exception) {
+            }
+        });
+        TaskEntry base = current[0];
+        mStore.updateSelectedTask(base, new TaskEntry(key, base.getDescription(),
+                base.getPriority() % 3 + 1, base.getVersion()), BenchmarkTasks.IGNORE_RESULT);
+    }
+
+    /**
+     * Deletes a run of tasks in one batch, and adds them back in a second one.
+     */
+    @Benchmark
+    public void commitBatches() {
+        TaskBatch deletes = new TaskBatch();
+        TaskBatch restores = new TaskBatch();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            TaskEntry task = mTasks.get((mNextUpdate + i) % size);
+            deletes.delete(task.getKey());
+            restores.update(task);
+        }
+        mNextUpdate = (mNextUpdate + BATCH_SIZE) % size;
+
+        mStore.commitBatch(deletes, BenchmarkTasks.IGNORE_RESULT);
+        mStore.commitBatch(restores, BenchmarkTasks.IGNORE_RESULT);
+    }
+}
@@ -0,0 +1,84 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures keeping the displayed list up to date: loading the local copy into the cache, applying
+ * the changes of a sync, and taking the list that is diffed against the shown one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskCacheBenchmark {
+
+    /**
+     * Number of changed tasks in a sync
+     */
+    private static final int CHANGES = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * The tasks, in key order
+     */
+    private List<TaskEntry> mTasks;
+
+    /**
+     * A cache that holds all the tasks, sorted by priority
+     */
+    private TaskCache mCache;
+
+    /**
+     * The position of the next changed task
+     */
+    private int mNextChange;
+
+    @Setup
+    public void setUp() {
+        mTasks = BenchmarkTasks.create(size);
+        mCache = new TaskCache();
+        mCache.setFilter(TaskFilter.SORTED_BY_PRIORITY);
+        mCache.load(mTasks, false);
+    }
+
+    @Benchmark
+    public TaskCache loadSortedByPriority() {
+        TaskCache cache = new TaskCache();
+        cache.setFilter(TaskFilter.SORTED_BY_PRIORITY);
+        cache.load(mTasks, false);
+        return cache;
+    }
+
+    /**
+     * Changes the priority of a run of tasks, which moves them in the list, and takes the list
+     * to be shown, like a sync followed by a refresh of the list.
+     */
+    @Benchmark
+    public List<TaskEntry> applySyncChanges() {
+        for (int i = 0; i < CHANGES; i++) {
+            TaskEntry current = mCache.get(mTasks.get(mNextChange).getKey());
+            mCache.put(new TaskEntry(current.getKey(), current.getDescription(),
+                    current.getPriority() % 3 + 1, current.getVersion() + 1, current.getUpdatedAt() + 1));
+            mNextChange = (mNextChange + 1) % size;
+        }
+        return mCache.getTasks();
+    }
+
+    @Benchmark
+    public List<TaskEntry> snapshot() {
+        return mCache.getTasks();
+    }
+}
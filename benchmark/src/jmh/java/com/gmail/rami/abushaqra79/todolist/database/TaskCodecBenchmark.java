@@ -0,0 +1,124 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding stored tasks into {@link TaskEntry} objects, from the values the database
+ * client hands out for a page or a full sync, in the first format and in the compact one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskCodecBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * The stored values of every task, numbers as Long like the client reads them
+     */
+    private Object[][] mStored;
+
+    /**
+     * The stored values of every task as an old client saved them, numbers as Double or text
+     */
+    private Object[][] mLegacyStored;
+
+    /**
+     * The values of every task as they are written in a batch
+     */
+    private Map<String, Object>[] mBatchValues;
+
+    /**
+     * The stored values of every task in the compact format, by name
+     */
+    private Map<String, Object>[] mCompactFields;
+
+    /**
+     * The stored values of every task in the first format, by name
+     */
+    private Map<String, Object>[] mFirstFormatFields;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        List<TaskEntry> tasks = BenchmarkTasks.create(size);
+        mStored = new Object[size][];
+        mLegacyStored = new Object[size][];
+        mBatchValues = new Map[size];
+        mCompactFields = new Map[size];
+        mFirstFormatFields = new Map[size];
+        for (int i = 0; i < size; i++) {
+            TaskEntry task = tasks.get(i);
+            mStored[i] = new Object[]{task.getKey(), task.getDescription(), (long) task.getPriority(),
+                    task.getVersion(), task.getUpdatedAt()};
+            mLegacyStored[i] = new Object[]{task.getKey(), task.getDescription(),
+                    (double) task.getPriority(), String.valueOf(task.getVersion()), null};
+            mBatchValues[i] = TaskCodec.encode(task);
+
+            mCompactFields[i] = TaskCodec.encode(task);
+            mCompactFields[i].put(TaskCodec.COMPACT_UPDATED_AT, task.getUpdatedAt());
+            mFirstFormatFields[i] = new HashMap<>();
+            mFirstFormatFields[i].put(TaskCodec.FIELD_DESCRIPTION, task.getDescription());
+            mFirstFormatFields[i].put(TaskCodec.FIELD_PRIORITY, (long) task.getPriority());
+            mFirstFormatFields[i].put(TaskCodec.FIELD_VERSION, task.getVersion());
+            mFirstFormatFields[i].put(TaskCodec.FIELD_UPDATED_AT, task.getUpdatedAt());
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        for (Object[] values : mStored) {
+            blackhole.consume(TaskCodec.decode((String) values[0], values[1], values[2], values[3], values[4]));
+        }
+    }
+
+    @Benchmark
+    public void decodeLegacy(Blackhole blackhole) {
+        for (Object[] values : mLegacyStored) {
+            blackhole.consume(TaskCodec.decode((String) values[0], values[1], values[2], values[3], values[4]));
+        }
+    }
+
+    @Benchmark
+    public void decodeBatchValues(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(TaskBatch.toTask((String) mStored[i][0], mBatchValues[i], null));
+        }
+    }
+
+    @Benchmark
+    public void decodeCompactFields(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> fields = mCompactFields[i];
+            if (!TaskCodec.isTombstone(fields::get)) {
+                blackhole.consume(TaskCodec.decode((String) mStored[i][0], fields::get));
+            }
+        }
+    }
+
+    @Benchmark
+    public void decodeFirstFormatFields(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> fields = mFirstFormatFields[i];
+            if (!TaskCodec.isTombstone(fields::get)) {
+                blackhole.consume(TaskCodec.decode((String) mStored[i][0], fields::get));
+            }
+        }
+    }
+}
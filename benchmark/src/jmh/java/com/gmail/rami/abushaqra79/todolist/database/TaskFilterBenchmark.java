@@ -0,0 +1,100 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures showing the tasks of one priority, by filtering the whole list in memory and by
+ * reading it page by page from the priority index of the store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskFilterBenchmark {
+
+    /**
+     * Number of tasks read per page, like the list in the app
+     */
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * The tasks, in key order
+     */
+    private List<TaskEntry> mTasks;
+
+    /**
+     * A store that holds the tasks
+     */
+    private InMemoryTaskStore mStore;
+
+    /**
+     * The filter of the high priority tasks
+     */
+    private final TaskFilter mHighPriority = TaskFilter.withPriority(1);
+
+    @Setup
+    public void setUp() {
+        mTasks = BenchmarkTasks.create(size);
+        mStore = BenchmarkTasks.createStore(mTasks);
+    }
+
+    @Benchmark
+    public List<TaskEntry> filterList() {
+        List<TaskEntry> matching = new ArrayList<>();
+        for (TaskEntry task : mTasks) {
+            if (mHighPriority.matches(task)) {
+                matching.add(task);
+            }
+        }
+        return matching;
+    }
+
+    @Benchmark
+    public List<TaskEntry> sortList() {
+        List<TaskEntry> sorted = new ArrayList<>(mTasks);
+        sorted.sort(TaskFilter.SORTED_BY_PRIORITY);
+        return sorted;
+    }
+
+    /**
+     * Reads all the high priority tasks from the store, a page at a time.
+     */
+    @Benchmark
+    public int readPages() {
+        TaskPager.PageSource source = mStore.pages(mHighPriority);
+        TaskPage[] page = new TaskPage[1];
+        TaskPager.PageCallback callback = new TaskPager.PageCallback() {
+            @Override
+            public void onPageLoaded(TaskPage loaded) {
+                page[0] = loaded;
+            }
+
+            @Override
+            public void onPageFailed(Exception exception) {
+                throw new IllegalStateException(exception);
+            }
+        };
+
+        int count = 0;
+        do {
+            source.loadPageAfter(page[0], PAGE_SIZE, callback);
+            count += page[0].getTasks().size();
+        } while (!page[0].isLast());
+        return count;
+    }
+}
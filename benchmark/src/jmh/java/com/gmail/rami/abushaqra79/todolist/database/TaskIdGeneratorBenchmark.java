@@ -0,0 +1,49 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures making the keys of new tasks, as many at once as an import of the list would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskIdGeneratorBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * The generator the app uses, with the system time and a secure random source
+     */
+    private TaskIdGenerator mGenerator;
+
+    @Setup
+    public void setUp() {
+        mGenerator = new TaskIdGenerator();
+    }
+
+    @Benchmark
+    public void nextKeys(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(mGenerator.nextKey());
+        }
+    }
+
+    @Benchmark
+    public void migratedKeys(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(TaskIdGenerator.migratedKey(i));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.gmail.rami.abushaqra79.todolist.database;
+
+import com.gmail.rami.abushaqra79.todolist.model.TaskEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures searching the task descriptions while the user types, and keeping the index up to
+ * date. A search should stay well under a millisecond at 50k tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskSearchIndexBenchmark {
+
+    /**
+     * Maximum number of results, like the list in the app
+     */
+    private static final int LIMIT = 200;
+
+    @Param({"1000", "10000", "50000", "100000"})
+    public int size;
+
+    /**
+     * The tasks, in key order
+     */
+    private List<TaskEntry> mTasks;
+
+    /**
+     * An index of all the tasks
+     */
+    private TaskSearchIndex mIndex;
+
+    /**
+     * The position of the next changed task
+     */
+    private int mNextChange;
+
+    @Setup
+    public void setUp() {
+        mTasks = BenchmarkTasks.create(size);
+        mIndex = new TaskSearchIndex();
+        mIndex.load(mTasks);
+        mIndex.finishLoad();
+    }
+
+    @Benchmark
+    public TaskSearchIndex build() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.load(mTasks);
+        index.finishLoad();
+        return index;
+    }
+
+    /**
+     * The first letter of a word, which matches most of the tasks.
+     */
+    @Benchmark
+    public List<TaskEntry> searchShortPrefix() {
+        return mIndex.search("b", LIMIT);
+    }
+
+    @Benchmark
+    public List<TaskEntry> searchWords() {
+        return mIndex.search("milk brea", LIMIT);
+    }
+
+    @Benchmark
+    public List<TaskEntry> searchArabicWords() {
+        return mIndex.search("حليب اشت", LIMIT);
+    }
+
+    /**
+     * Words that are common on their own but rare together, so most candidates are checked.
+     */
+    @Benchmark
+    public List<TaskEntry> searchRareCombination() {
+        return mIndex.search("buy milk bread call", LIMIT);
+    }
+
+    @Benchmark
+    public void changeDescription() {
+        TaskEntry task = mTasks.get(mNextChange);
+        mNextChange = (mNextChange + 1) % size;
+        mIndex.put(new TaskEntry(task.getKey(), task.getDescription() + " changed", task.getPriority()));
+        mIndex.put(task);
+    }
+}